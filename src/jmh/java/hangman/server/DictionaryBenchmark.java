@@ -0,0 +1,86 @@
+package hangman.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures picking a word out of a small and a huge mapped dictionary,
+ * for any word and for a difficulty bucket.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DictionaryBenchmark {
+
+    @Param({"1000", "2000000"})
+    public int size;
+
+    private Path wordList;
+    private Path dictionary;
+    private WordCatalog catalog;
+
+    /**
+     * Writes a word list of random words, packs it and builds the catalog
+     * @throws IOException if the files can't be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        wordList = Files.createTempFile("dictionary-benchmark", ".txt");
+        dictionary = Files.createTempFile("dictionary-benchmark", ".dict");
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(wordList, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < size; i++) {
+                int length = 3 + random.nextInt(12);
+                for (int j = 0; j < length; j++) {
+                    out.write('a' + random.nextInt(26));
+                }
+                out.newLine();
+            }
+        }
+        PackedDictionary.build(wordList, dictionary);
+        catalog = new WordCatalog(PackedDictionary.map(dictionary));
+    }
+
+    /**
+     * Deletes the word list and the dictionary
+     * @throws IOException if the files can't be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(wordList);
+        Files.deleteIfExists(dictionary);
+    }
+
+    /**
+     * @return a random word
+     */
+    @Benchmark
+    public String pickAny() {
+        return catalog.word(catalog.pick(Difficulty.ANY));
+    }
+
+    /**
+     * @return a random hard word
+     */
+    @Benchmark
+    public String pickHard() {
+        return catalog.word(catalog.pick(Difficulty.HARD));
+    }
+}
@@ -0,0 +1,193 @@
+package hangman.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares how fast a {@link Server} accepts players and sends them
+ * their first mask when the games run on a cached thread pool
+ * or on virtual threads.
+ * <br>
+ * For every mode an embedded server is started on a free port, with a temporary data directory holding
+ * a copy of the wordlist, so the toplist and the stats of the benchmark never end up in the real one.
+ * All clients connect at once, optionally some of them never send their username, and keep their
+ * connection open until every client got his first mask, so the server really has to hold all games
+ * at the same time. On a JVM without virtual threads only the thread pool is measured.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class ExecutorBenchmark {
+
+    private int clients;
+    private int silentClients;
+    private Path dataDir;
+
+    /**
+     * Initialize the benchmark
+     * @param clients the number of players connecting at the same time
+     * @param silentClients the number of additional players which never send their username
+     * @param dataDir the data directory of the embedded servers
+     */
+    public ExecutorBenchmark(int clients, int silentClients, Path dataDir) {
+        this.clients = clients;
+        this.silentClients = silentClients;
+        this.dataDir = dataDir;
+    }
+
+    /**
+     * Runs the benchmark against an embedded server in the given mode
+     * @param mode the mode of the server
+     * @return a line with accept rate and time to first mask percentiles
+     * @throws InterruptedException if the benchmark is interrupted
+     */
+    public String measure(ServerOptions.Mode mode) throws InterruptedException {
+        // the executors are measured without the limits of the admission control and the rate limiter
+        ServerOptions options = ServerOptions.parse(new String[]{"0", "--mode=" + mode.name().toLowerCase(),
+                "--data-dir=" + dataDir, "--max-games=0", "--max-handshakes=0", "--connection-rate=0", "--message-rate=0"});
+        Server server = new Server(options);
+        server.setConsole(false);
+        Thread serverThread = new Thread(server::run, "benchmark-server");
+        serverThread.start();
+        while (!server.isListening()) {
+            Thread.sleep(10);
+        }
+        int port = server.getPort();
+
+        ExecutorService clientThreads = Executors.newCachedThreadPool();
+        List<Socket> silent = new ArrayList<>();
+        for (int i = 0; i < silentClients; i++) {
+            try {
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress("localhost", port), 2000);
+                silent.add(socket);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        long[] connected = new long[clients];
+        long[] firstMask = new long[clients];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < clients; i++) {
+            int id = i;
+            clientThreads.execute(() -> {
+                try (Socket socket = new Socket()) {
+                    start.await();
+                    long begin = System.nanoTime();
+                    socket.connect(new InetSocketAddress("localhost", port), 10000);
+                    connected[id] = System.nanoTime();
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    out.println(Handshake.USERNAME + "bench" + id);
+                    in.readLine();
+                    firstMask[id] = System.nanoTime() - begin;
+                    done.countDown();
+                    release.await();
+                } catch (IOException | InterruptedException e) {
+                    firstMask[id] = -1;
+                    done.countDown();
+                }
+            });
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        release.countDown();
+
+        long lastConnect = startTime;
+        int failed = 0;
+        for (int i = 0; i < clients; i++) {
+            lastConnect = Math.max(lastConnect, connected[i]);
+            if (firstMask[i] < 0) failed++;
+        }
+        long[] sorted = Arrays.stream(firstMask).filter(t -> t >= 0).sorted().toArray();
+        double seconds = (lastConnect - startTime) / 1e9;
+
+        clientThreads.shutdown();
+        clientThreads.awaitTermination(10, TimeUnit.SECONDS);
+        for (Socket socket : silent) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        server.shutdown();
+        serverThread.join(5000);
+
+        return String.format("%-8s accepts/s=%10.0f  p50=%8.2fms  p99=%8.2fms  max=%8.2fms  failed=%d",
+                mode.name().toLowerCase(), clients / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0), failed);
+    }
+
+    /**
+     * @param sorted the sorted latencies in nanoseconds
+     * @param p the percentile between 0 and 1
+     * @return the latency at the given percentile in milliseconds
+     */
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return Double.NaN;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    /**
+     * @return true if this JVM can start virtual threads, they came with Java 21
+     */
+    private static boolean virtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the benchmark for the thread pool and, if the JVM has them, the virtual thread mode
+     * @param args optional in the format [clients, silentClients]
+     * @throws IOException if the data directory can't be created or deleted
+     * @throws InterruptedException if the benchmark is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int silent = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        List<ServerOptions.Mode> modes = new ArrayList<>(Arrays.asList(ServerOptions.Mode.THREADS, ServerOptions.Mode.VIRTUAL));
+        if (!virtualThreads()) {
+            modes.remove(ServerOptions.Mode.VIRTUAL);
+            System.out.println("virtual  skipped, this JVM (Java " + System.getProperty("java.version") + ") has no virtual threads");
+        }
+        Path dataDir = Files.createTempDirectory("hangman-executor");
+        List<String> results = new ArrayList<>();
+        try {
+            Files.copy(new ServerOptions(0).getWordsPath(), dataDir.resolve("words.txt"));
+            ExecutorBenchmark benchmark = new ExecutorBenchmark(clients, silent, dataDir);
+            for (ServerOptions.Mode mode : modes) {
+                benchmark.measure(mode); // warmup
+                results.add(benchmark.measure(mode));
+            }
+        } finally {
+            StartupBenchmark.delete(dataDir);
+        }
+        System.out.println(clients + " clients, " + silent + " silent clients");
+        for (String result : results) {
+            System.out.println(result);
+        }
+        System.exit(0);
+    }
+}
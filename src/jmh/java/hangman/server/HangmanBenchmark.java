@@ -0,0 +1,97 @@
+package hangman.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the game engine: a whole game, single guesses,
+ * the masked answer and the check if the game is won.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HangmanBenchmark {
+
+    /**
+     * The letters in the order a reasonable player guesses them
+     */
+    private static final String GUESSES = "ENIRSTADHULGOCMBFKWZPVJYXQ";
+
+    @Param({"5", "12", "24"})
+    public int length;
+
+    private String answer;
+    private Hangman halfRevealed;
+
+    /**
+     * Creates a random answer of the given length and a game in which half of the guesses are made
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append(GUESSES.charAt(random.nextInt(GUESSES.length())));
+        }
+        answer = word.toString();
+        halfRevealed = new Hangman(answer, GUESSES.length(), "bench", null);
+        for (int i = 0; i < GUESSES.length() / 2; i++) {
+            halfRevealed.guess(GUESSES.charAt(i));
+        }
+    }
+
+    /**
+     * @return whether the game was won, it always is
+     */
+    @Benchmark
+    public boolean playGame() {
+        Hangman hangman = new Hangman(answer, GUESSES.length(), "bench", null);
+        for (int i = 0; i < GUESSES.length() && !hangman.isWon(); i++) {
+            hangman.guess(GUESSES.charAt(i));
+        }
+        return hangman.isWon();
+    }
+
+    /**
+     * @return whether the letter was a hit
+     */
+    @Benchmark
+    public boolean guessHit() {
+        return halfRevealed.guess(GUESSES.charAt(0));
+    }
+
+    /**
+     * @return whether the letter was a hit
+     */
+    @Benchmark
+    public boolean guessMiss() {
+        return halfRevealed.guess('#');
+    }
+
+    /**
+     * @return the masked answer
+     */
+    @Benchmark
+    public String showObscuredAnswer() {
+        return halfRevealed.showObscuredAnswer();
+    }
+
+    /**
+     * @return whether the game is won
+     */
+    @Benchmark
+    public boolean isWon() {
+        return halfRevealed.isWon();
+    }
+}
@@ -0,0 +1,97 @@
+package hangman.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures {@link Hangman#addToHighscore()} of won games with 1 to 16 threads
+ * adding to the same {@link Leaderboard}. The scores are random, so most of them
+ * don't make it onto the list once it is full.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LeaderboardBenchmark {
+
+    private Path directory;
+    private Leaderboard leaderboard;
+
+    /**
+     * Creates an empty leaderboard in a temporary directory
+     * @throws IOException if the directory can't be created
+     */
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("leaderboard-benchmark");
+        leaderboard = new Leaderboard(new HighscoreJournal(directory.resolve("toplist.txt")), Leaderboard.SIZE, 1000);
+        leaderboard.load();
+    }
+
+    /**
+     * Closes the leaderboard and deletes its files
+     * @throws IOException if the files can't be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        leaderboard.close();
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Every benchmark thread is a different player
+     */
+    @State(Scope.Thread)
+    public static class Player {
+        private static final AtomicInteger ids = new AtomicInteger();
+        private String username = "player" + ids.incrementAndGet();
+    }
+
+    /**
+     * Wins a game with a random score and adds it to the highscore
+     * @param player the player of this thread
+     */
+    private void win(Player player) {
+        Hangman hangman = new Hangman("A", 1 + ThreadLocalRandom.current().nextInt(10), player.username, leaderboard);
+        hangman.guess('A');
+        hangman.addToHighscore();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addToHighscore1(Player player) {
+        win(player);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addToHighscore4(Player player) {
+        win(player);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void addToHighscore16(Player player) {
+        win(player);
+    }
+}
@@ -0,0 +1,116 @@
+package hangman.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hangman.Frames;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the protocol: parsing the handshake, encoding the answer
+ * to a guess and decoding the messages a client sends, as text lines and as frames.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProtocolBenchmark {
+
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private GameProtocol textProtocol;
+    private GameProtocol binaryProtocol;
+    private ByteBuffer guesses;
+    private ByteBuffer guessFrames;
+    private LineDecoder lineDecoder = new LineDecoder();
+    private FrameDecoder frameDecoder = new FrameDecoder();
+
+    /**
+     * Starts a game per protocol and prepares the bytes of 26 guesses as a client sends them
+     * @throws IOException never, the frames are written to memory
+     */
+    @Setup
+    public void setUp() throws IOException {
+        textProtocol = new GameProtocol(new Hangman("SILBERGUERTEL", 100, "bench", null), new TextReplies(out));
+        binaryProtocol = new GameProtocol(new Hangman("SILBERGUERTEL", 100, "bench", null), new BinaryReplies(out));
+        StringBuilder lines = new StringBuilder();
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (char c = 'a'; c <= 'z'; c++) {
+            lines.append(c).append("\r\n");
+            Frames.writeText(frames, Frames.GUESS, String.valueOf(c));
+        }
+        guesses = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        guessFrames = ByteBuffer.wrap(frames.toByteArray());
+    }
+
+    /**
+     * @return the parsed first line of a client
+     */
+    @Benchmark
+    public Handshake parseHandshake() {
+        return new Handshake("[USERNAME]moritz [DIFFICULTY]hard");
+    }
+
+    /**
+     * Handles a guess which doesn't change the game and encodes the answer as text lines
+     * @return the encoded lines
+     * @throws IOException never, the lines are written to memory
+     */
+    @Benchmark
+    public int encodeRound() throws IOException {
+        out.reset();
+        textProtocol.handle("x");
+        return out.size();
+    }
+
+    /**
+     * Handles a guess which doesn't change the game and encodes the answer as a single frame
+     * @return the encoded frame
+     * @throws IOException never, the frame is written to memory
+     */
+    @Benchmark
+    public int encodeRoundBinary() throws IOException {
+        out.reset();
+        binaryProtocol.handle("x");
+        return out.size();
+    }
+
+    /**
+     * Decodes 26 guesses
+     * @param blackhole consumes the decoded lines
+     * @throws IOException never, the lines are short
+     */
+    @Benchmark
+    public void decodeLines(Blackhole blackhole) throws IOException {
+        guesses.rewind();
+        String line;
+        while ((line = lineDecoder.next(guesses)) != null) {
+            blackhole.consume(line);
+        }
+    }
+
+    /**
+     * Decodes 26 guesses sent as frames
+     * @param blackhole consumes the decoded guesses
+     * @throws IOException never, the frames are valid
+     */
+    @Benchmark
+    public void decodeFrames(Blackhole blackhole) throws IOException {
+        guessFrames.rewind();
+        String guess;
+        while ((guess = frameDecoder.next(guessFrames)) != null) {
+            blackhole.consume(guess);
+        }
+    }
+}
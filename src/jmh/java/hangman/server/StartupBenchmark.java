@@ -0,0 +1,252 @@
+package hangman.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures how fast a new server is ready for players, which decides how quickly a cluster can scale out.
+ * <br>
+ * Every run starts the server in a new JVM, with a data directory of its own holding a copy of the wordlist.
+ * It reports the time from starting the process until the first connection is accepted and until the
+ * first player got his mask. Then the game is played to its end and the server is stopped with !exit.
+ * The runs share their data directory, so from the second run on the image of the wordlist is mapped.
+ * <br>
+ * So a run starts, plays and stops a server like a real node, which makes it the training run of the
+ * class data sharing archive as well: with <code>--java-opts=-XX:DumpLoadedClassList=classes.lst</code>
+ * the JVM lists every class it needed, see gradle appCds.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class StartupBenchmark {
+
+    /**
+     * Milliseconds a server may need to start, play and stop before the run fails
+     */
+    static final int TIMEOUT = 30000;
+
+    private int runs = 5;
+    private String script;
+    private String javaOpts = "";
+    private Path words = new ServerOptions(0).getWordsPath();
+
+    /**
+     * Starts the server of every run and prints its times
+     * @throws IOException if a server can't be started or doesn't answer
+     * @throws InterruptedException if waiting for a server is interrupted
+     */
+    public void run() throws IOException, InterruptedException {
+        Path dataDir = Files.createTempDirectory("hangman-startup");
+        long[] accepts = new long[runs];
+        long[] masks = new long[runs];
+        try {
+            Files.copy(words, dataDir.resolve("words.txt"));
+            for (int i = 0; i < runs; i++) {
+                long[] times = measure(dataDir);
+                accepts[i] = times[0];
+                masks[i] = times[1];
+                System.out.printf("run %d: first accept %.1f ms, first mask %.1f ms%n", i + 1, times[0] / 1e6, times[1] / 1e6);
+            }
+        } finally {
+            delete(dataDir);
+        }
+        Arrays.sort(accepts);
+        Arrays.sort(masks);
+        System.out.printf("first accept min=%.1fms median=%.1fms max=%.1fms%n",
+                accepts[0] / 1e6, accepts[runs / 2] / 1e6, accepts[runs - 1] / 1e6);
+        System.out.printf("first mask   min=%.1fms median=%.1fms max=%.1fms%n",
+                masks[0] / 1e6, masks[runs / 2] / 1e6, masks[runs - 1] / 1e6);
+    }
+
+    /**
+     * Starts a server, plays one game and stops the server again
+     * @param dataDir the data directory of the server
+     * @return the nanoseconds until the first accept and until the first mask
+     * @throws IOException if the server can't be started, doesn't answer or doesn't stop
+     * @throws InterruptedException if waiting for the server is interrupted
+     */
+    private long[] measure(Path dataDir) throws IOException, InterruptedException {
+        int port = freePort();
+        Path log = dataDir.resolve("server.log");
+        ProcessBuilder builder = new ProcessBuilder(command(port, dataDir));
+        builder.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.to(log.toFile()));
+        if (script != null) {
+            builder.environment().put("JAVA_OPTS", javaOpts);
+        }
+        long begin = System.nanoTime();
+        Process process = builder.start();
+        try {
+            long[] times = new long[2];
+            try (Socket socket = connect(process, port, begin)) {
+                times[0] = System.nanoTime() - begin;
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+                out.println("[USERNAME]startup");
+                if (in.readLine() == null) {
+                    throw new IOException("The server closed the connection before the first mask, see " + log);
+                }
+                times[1] = System.nanoTime() - begin;
+                out.println(GameProtocol.BATCH + "enisratdhulcgmobwfkzpv\u00fc\u00e4\u00dfj\u00f6yxq");
+                String line;
+                do {
+                    line = in.readLine();
+                } while (line != null && !line.equals(GameProtocol.EXIT));
+            }
+            OutputStream console = process.getOutputStream();
+            console.write("!exit\n".getBytes(StandardCharsets.UTF_8));
+            console.flush();
+            if (!process.waitFor(TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IOException("The server didn't stop, see " + log);
+            }
+            return times;
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * @param port the port the server listens on
+     * @param dataDir the data directory of the server
+     * @return the command line of the server, either the start script, which gets the options in JAVA_OPTS,
+     * or java with the options and the classpath of this JVM
+     */
+    private List<String> command(int port, Path dataDir) {
+        List<String> command = new ArrayList<>();
+        if (script != null) {
+            command.add(script);
+        } else {
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            for (String option : javaOpts.trim().split("\\s+")) {
+                if (!option.isEmpty()) {
+                    command.add(option);
+                }
+            }
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(Server.class.getName());
+        }
+        command.add(String.valueOf(port));
+        command.add("--data-dir=" + dataDir);
+        return command;
+    }
+
+    /**
+     * Connects to the server as soon as it listens
+     * @param process the process of the server
+     * @param port the port the server listens on
+     * @param begin when the process was started, from {@link System#nanoTime()}
+     * @return the connected socket
+     * @throws IOException if the server died or didn't listen within the {@link #TIMEOUT}
+     * @throws InterruptedException if waiting is interrupted
+     */
+    private static Socket connect(Process process, int port, long begin) throws IOException, InterruptedException {
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress("localhost", port));
+                socket.setSoTimeout(TIMEOUT);
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (!process.isAlive()) {
+                    throw new IOException("The server exited with " + process.exitValue());
+                }
+                if (System.nanoTime() - begin > TimeUnit.MILLISECONDS.toNanos(TIMEOUT)) {
+                    throw new IOException("The server didn't listen within " + TIMEOUT + " ms");
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    /**
+     * @return a port nobody listens on right now
+     * @throws IOException if no port can be bound
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Deletes the data directory with everything the servers wrote into it
+     * @param dir the directory
+     * @throws IOException if a file can't be deleted
+     */
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Sets a single option
+     * @param name the name of the option without the leading dashes
+     * @param value the value of the option
+     * @throws IllegalArgumentException if the option is unknown or the value is wrong
+     */
+    private void set(String name, String value) {
+        switch (name) {
+            case "runs":
+                runs = Integer.parseInt(value);
+                if (runs < 1) {
+                    throw new IllegalArgumentException("There has to be at least one run");
+                }
+                break;
+            case "script":
+                script = value;
+                break;
+            case "java-opts":
+                javaOpts = value;
+                break;
+            case "words":
+                words = Paths.get(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: --" + name);
+        }
+    }
+
+    /**
+     * Parses the options and runs the benchmark
+     * @param args in the format [--runs=n, --script=path, --java-opts=options, --words=path]
+     * @throws Exception if a run fails
+     */
+    public static void main(String[] args) throws Exception {
+        StartupBenchmark benchmark = new StartupBenchmark();
+        try {
+            for (String arg : args) {
+                int split = arg.indexOf('=');
+                if (!arg.startsWith("--") || split == -1) {
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+                benchmark.set(arg.substring(2, split), arg.substring(split + 1));
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: gradle startupBenchmark --args=\"[--runs=n] [--script=bin/hangman-server] [--java-opts=options] [--words=path]\"");
+            System.exit(1);
+        }
+        benchmark.run();
+    }
+}
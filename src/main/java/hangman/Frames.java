@@ -0,0 +1,200 @@
+package hangman;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary protocol a client can ask for with <code>[PROTOCOL]binary</code> in his handshake.
+ * <br>
+ * After the handshake line both sides only send frames:
+ * <pre>
+ * unsigned short length, byte opcode, payload (length - 1 bytes)
+ * </pre>
+ * The server answers every message with a single {@link #STATE} frame, which carries
+ * the remaining tries, the result and the masked answer, instead of several text lines.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class Frames {
+
+    /**
+     * The text line a server sends instead of a game if it is too busy, before it read the
+     * handshake and so in both protocols. It is followed by "retry after n ms". A binary client
+     * can tell it from a frame, because no frame may be longer than {@link #MAX_LENGTH} and so
+     * none starts with the byte '['.
+     */
+    public static final String BUSY = "[SERVER BUSY]";
+
+    /**
+     * The longest opcode and payload a frame may have, the same as a line of the text protocol.
+     * It is below 0x5B00, so the first byte of a frame is never a '['.
+     */
+    public static final int MAX_LENGTH = 8192;
+
+    /** client to server: a letter or a word, UTF-8 */
+    public static final byte GUESS = 1;
+    /** server to client: byte remaining tries, byte result, masked answer in UTF-8 */
+    public static final byte STATE = 2;
+    /** server to client: the connection will be closed */
+    public static final byte EXIT = 3;
+    /** server to client: a line of text outside of the game, UTF-8 */
+    public static final byte NOTICE = 4;
+
+    /** the game is still running */
+    public static final byte RUNNING = 0;
+    /** the game is won */
+    public static final byte WON = 1;
+    /** the game is lost */
+    public static final byte LOST = 2;
+
+    private Frames() {
+    }
+
+    /**
+     * Writes a frame with a text payload
+     * @param out where the frame is written to
+     * @param opcode {@link #GUESS} or {@link #NOTICE}
+     * @param text the payload
+     * @throws IOException if writing fails or the text is too long
+     */
+    public static void writeText(OutputStream out, byte opcode, String text) throws IOException {
+        out.write(encodeText(opcode, text));
+    }
+
+    /**
+     * Encodes a frame with a text payload, so the same bytes can be written to many streams
+     * @param opcode {@link #GUESS} or {@link #NOTICE}
+     * @param text the payload
+     * @return the whole frame
+     * @throws IOException if the text is too long
+     */
+    public static byte[] encodeText(byte opcode, String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = frame(payload.length + 1, opcode);
+        System.arraycopy(payload, 0, frame, 3, payload.length);
+        return frame;
+    }
+
+    /**
+     * Writes a {@link #STATE} frame
+     * @param out where the frame is written to
+     * @param remainingTries the remaining tries, at least 0 and at most 255
+     * @param result {@link #RUNNING}, {@link #WON} or {@link #LOST}
+     * @param mask the masked answer
+     * @throws IOException if writing fails or the mask is too long
+     */
+    public static void writeState(OutputStream out, int remainingTries, byte result, String mask) throws IOException {
+        byte[] payload = mask.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = frame(payload.length + 3, STATE);
+        frame[3] = (byte) Math.max(0, Math.min(255, remainingTries));
+        frame[4] = result;
+        System.arraycopy(payload, 0, frame, 5, payload.length);
+        out.write(frame);
+    }
+
+    /**
+     * Writes a frame without payload
+     * @param out where the frame is written to
+     * @param opcode e.g. {@link #EXIT}
+     * @throws IOException if writing fails
+     */
+    public static void writeEmpty(OutputStream out, byte opcode) throws IOException {
+        out.write(frame(1, opcode));
+    }
+
+    /**
+     * Allocates a whole frame at once, so it is handed to the stream with a single write
+     * @param length the length of opcode and payload
+     * @param opcode the opcode of the frame
+     * @return the frame with length and opcode filled in
+     * @throws IOException if the frame is too long
+     */
+    private static byte[] frame(int length, byte opcode) throws IOException {
+        if (length > MAX_LENGTH) {
+            throw new IOException("Frame of " + length + " bytes is too long");
+        }
+        byte[] frame = new byte[length + 2];
+        frame[0] = (byte) (length >>> 8);
+        frame[1] = (byte) length;
+        frame[2] = opcode;
+        return frame;
+    }
+
+    /**
+     * Reads the next frame
+     * @param in where the frame is read from
+     * @return the frame
+     * @throws IOException if reading fails, the frame is empty or longer than {@link #MAX_LENGTH}
+     *                     or the connection is closed in the middle of a frame
+     */
+    public static Frame read(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length == 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return new Frame(frame, 0, length);
+    }
+
+    /**
+     * A decoded frame
+     */
+    public static class Frame {
+        private byte opcode;
+        private int remainingTries;
+        private byte result;
+        private String text;
+
+        /**
+         * Decodes the opcode and the payload of a frame
+         * @param bytes the bytes of the frame without its length
+         * @param offset where the opcode is
+         * @param length the length of opcode and payload
+         * @throws IOException if a state frame is too short
+         */
+        public Frame(byte[] bytes, int offset, int length) throws IOException {
+            this.opcode = bytes[offset];
+            int text = offset + 1;
+            if (opcode == STATE) {
+                if (length < 3) {
+                    throw new IOException("State frame too short");
+                }
+                this.remainingTries = bytes[offset + 1] & 0xff;
+                this.result = bytes[offset + 2];
+                text = offset + 3;
+            }
+            this.text = new String(bytes, text, offset + length - text, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return what kind of frame this is
+         */
+        public byte getOpcode() {
+            return opcode;
+        }
+
+        /**
+         * @return the remaining tries of a {@link #STATE} frame
+         */
+        public int getRemainingTries() {
+            return remainingTries;
+        }
+
+        /**
+         * @return the result of a {@link #STATE} frame
+         */
+        public byte getResult() {
+            return result;
+        }
+
+        /**
+         * @return the text of the payload, the masked answer of a {@link #STATE} frame
+         */
+        public String getText() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package hangman;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the letter which is most likely part of a masked answer, used by the hint of the
+ * server as well as by the solving strategy of the load generator.
+ * <br>
+ * The words are grouped by their length and every word of a group gets a local id. For every
+ * group the index keeps bitsets over these ids: one per letter with the words containing it,
+ * and one per position and letter with the words having the letter there. The words matching a
+ * mask and the letters guessed so far are then found with a few bitwise operations:
+ * <ul>
+ *     <li>AND the bitset of every revealed letter at its position</li>
+ *     <li>AND NOT the bitset of every missed letter</li>
+ *     <li>AND NOT the bitset of a revealed letter at every hidden position, it would have been revealed there</li>
+ * </ul>
+ * The hint is the unguessed letter contained in the most of these words, counted with a popcount per letter.
+ * If at least {@link #PARALLEL_WORDS} words match, the letters are counted in parallel on the common fork join pool.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class HintIndex {
+
+    /**
+     * The number of matching words from which on the letters are counted in parallel
+     */
+    public static final int PARALLEL_WORDS = 1 << 16;
+
+    /**
+     * The character of a hidden position in a mask
+     */
+    public static final char HIDDEN = '_';
+
+    private char[] letters;
+    private Group[] groups;
+    private int size;
+
+    /**
+     * Builds the index, this reads every word twice
+     * @param size the number of words
+     * @param words returns the word with the given index
+     */
+    public HintIndex(int size, IntFunction<String> words) {
+        this.size = size;
+        boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+        int[] lengths = new int[1];
+        for (int i = 0; i < size; i++) {
+            String word = words.apply(i);
+            if (word.length() >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(word.length() + 1, lengths.length * 2));
+            }
+            lengths[word.length()]++;
+            for (int p = 0; p < word.length(); p++) {
+                seen[word.charAt(p)] = true;
+            }
+        }
+        int count = 0;
+        char[] found = new char[64];
+        for (int c = 0; c < seen.length; c++) {
+            if (seen[c] && c != HIDDEN) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = (char) c;
+            }
+        }
+        this.letters = Arrays.copyOf(found, count);
+        this.groups = new Group[lengths.length];
+        for (int length = 0; length < lengths.length; length++) {
+            if (lengths[length] > 0) {
+                groups[length] = new Group(length, lengths[length], letters.length);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            String word = words.apply(i);
+            Group group = groups[word.length()];
+            int id = group.added++;
+            for (int p = 0; p < word.length(); p++) {
+                int letter = Arrays.binarySearch(letters, word.charAt(p));
+                if (letter >= 0) {
+                    group.set(p, letter, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of words in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Picks the letter most of the words matching the game contain, may be called from any thread
+     * @param mask the masked answer with {@link #HIDDEN} for every unknown letter
+     * @param guessed every letter guessed so far, hits as well as misses
+     * @return the letter, 0 if there is no word of the length or every letter of them was guessed already
+     */
+    public char hint(String mask, CharSequence guessed) {
+        Group group = mask.length() < groups.length ? groups[mask.length()] : null;
+        if (group == null) {
+            return 0;
+        }
+        boolean[] skip = new boolean[letters.length];
+        for (int i = 0; i < guessed.length(); i++) {
+            int letter = Arrays.binarySearch(letters, guessed.charAt(i));
+            if (letter >= 0) {
+                skip[letter] = true;
+            }
+        }
+        long[] candidates = group.candidates(mask, guessed, letters);
+        int matches = cardinality(candidates);
+        if (matches == 0) {
+            // nothing in the dictionary fits, so at least take the best letter of words this long
+            candidates = group.all();
+            matches = group.words;
+        }
+        long[] matching = candidates;
+        int[] counts = new int[letters.length];
+        IntStream letterIds = IntStream.range(0, letters.length);
+        if (matches >= PARALLEL_WORDS) {
+            letterIds = letterIds.parallel();
+        }
+        letterIds.filter(letter -> !skip[letter])
+                .forEach(letter -> counts[letter] = count(matching, group.contains[letter]));
+        int best = -1;
+        for (int letter = 0; letter < letters.length; letter++) {
+            if (counts[letter] > 0 && (best == -1 || counts[letter] > counts[best])) {
+                best = letter;
+            }
+        }
+        return best == -1 ? 0 : letters[best];
+    }
+
+    /**
+     * @param bits a bitset
+     * @return the number of bits set
+     */
+    private static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @param first a bitset
+     * @param second a bitset of the same length, may be null for an empty one
+     * @return the number of bits set in both
+     */
+    private static int count(long[] first, long[] second) {
+        if (second == null) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < first.length; i++) {
+            count += Long.bitCount(first[i] & second[i]);
+        }
+        return count;
+    }
+
+    /**
+     * The bitsets of all words of one length
+     */
+    private static class Group {
+        private int words;
+        private int added = 0;
+        private long[][] contains;
+        private long[][][] positions;
+
+        /**
+         * @param length the length of the words
+         * @param words the number of words
+         * @param letters the number of letters of the index
+         */
+        private Group(int length, int words, int letters) {
+            this.words = words;
+            this.contains = new long[letters][];
+            this.positions = new long[length][letters][];
+        }
+
+        /**
+         * Remembers that a word has a letter at a position, the bitsets are only created for letters which occur
+         * @param position the position in the word
+         * @param letter the index of the letter
+         * @param id the local id of the word
+         */
+        private void set(int position, int letter, int id) {
+            if (contains[letter] == null) {
+                contains[letter] = new long[(words + 63) >>> 6];
+            }
+            if (positions[position][letter] == null) {
+                positions[position][letter] = new long[(words + 63) >>> 6];
+            }
+            contains[letter][id >>> 6] |= 1L << id;
+            positions[position][letter][id >>> 6] |= 1L << id;
+        }
+
+        /**
+         * @return a bitset with every word of the group
+         */
+        private long[] all() {
+            long[] all = new long[(words + 63) >>> 6];
+            Arrays.fill(all, -1L);
+            if ((words & 63) != 0) {
+                all[all.length - 1] = (1L << words) - 1;
+            }
+            return all;
+        }
+
+        /**
+         * @param mask the masked answer, as long as the words of the group
+         * @param guessed every letter guessed so far
+         * @param letters the letters of the index
+         * @return a bitset with the words matching the mask and the guessed letters
+         */
+        private long[] candidates(String mask, CharSequence guessed, char[] letters) {
+            long[] candidates = all();
+            for (int p = 0; p < mask.length(); p++) {
+                char c = mask.charAt(p);
+                if (c == HIDDEN) {
+                    continue;
+                }
+                int letter = Arrays.binarySearch(letters, c);
+                long[] at = letter >= 0 ? positions[p][letter] : null;
+                if (at == null) {
+                    return new long[candidates.length];
+                }
+                and(candidates, at);
+            }
+            for (int i = 0; i < guessed.length(); i++) {
+                char c = guessed.charAt(i);
+                int letter = Arrays.binarySearch(letters, c);
+                if (letter < 0 || contains[letter] == null) {
+                    continue;
+                }
+                if (mask.indexOf(c) == -1) {
+                    andNot(candidates, contains[letter]);
+                    continue;
+                }
+                for (int p = 0; p < mask.length(); p++) {
+                    if (mask.charAt(p) == HIDDEN && positions[p][letter] != null) {
+                        andNot(candidates, positions[p][letter]);
+                    }
+                }
+            }
+            return candidates;
+        }
+
+        /**
+         * @param bits the bitset which is changed
+         * @param other the bits which are kept
+         */
+        private static void and(long[] bits, long[] other) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= other[i];
+            }
+        }
+
+        /**
+         * @param bits the bitset which is changed
+         * @param other the bits which are cleared
+         */
+        private static void andNot(long[] bits, long[] other) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= ~other[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package hangman;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe histogram of latencies in nanoseconds, in the style of HdrHistogram.
+ * <br>
+ * Values are counted in buckets which double in width, each split into {@link #SUB_BUCKETS}
+ * equally wide sub buckets. So every recorded value is kept with a precision of about 3%,
+ * no matter if it is a few microseconds or a few seconds, in a fixed amount of memory.
+ * <br>
+ * Like a {@link LongAdder} the counts are striped: every thread increments the array of the
+ * stripe its hash falls into, so the threads of the games rarely write to the same counter.
+ * Percentiles are computed when they are read, by summing up the stripes.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    /** a power of two of at least the number of cores, but at most 8, as each stripe takes 15 KB */
+    private static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+    private LongAdder total = new LongAdder();
+    private LongAdder sum = new LongAdder();
+
+    /**
+     * Creates an empty histogram
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * Counts a single value
+     * @param nanos the latency in nanoseconds, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        stripe().incrementAndGet(index(Math.max(0, nanos)));
+        total.increment();
+        sum.add(Math.max(0, nanos));
+    }
+
+    /**
+     * @return the counts the current thread writes to, picked by the identity hash of the thread
+     */
+    private AtomicLongArray stripe() {
+        int hash = System.identityHashCode(Thread.currentThread());
+        return stripes[(hash ^ hash >>> 16) & (STRIPES - 1)];
+    }
+
+    /**
+     * @param index a bucket
+     * @return how many values are counted in the bucket by all stripes
+     */
+    private long count(int index) {
+        long count = 0;
+        for (AtomicLongArray stripe : stripes) {
+            count += stripe.get(index);
+        }
+        return count;
+    }
+
+    /**
+     * @param value a non negative value
+     * @return the bucket the value is counted in
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param index a bucket
+     * @return the highest value which is counted in the bucket
+     */
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * @return the mean of all recorded values in nanoseconds, 0 if there are none
+     */
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the value below which the given percentage of all values lie, in nanoseconds
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = count(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(BUCKETS - 1);
+    }
+
+    /**
+     * Adds all values of the other histogram to this one
+     * @param other the histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        AtomicLongArray counts = stripe();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.count(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        total.add(other.total.sum());
+        sum.add(other.sum.sum());
+    }
+
+    /**
+     * @return count, mean and the usual percentiles in milliseconds on one line
+     */
+    public String summary() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                getCount(), getMean() / 1e6,
+                getValueAtPercentile(50) / 1e6, getValueAtPercentile(90) / 1e6,
+                getValueAtPercentile(99) / 1e6, getValueAtPercentile(99.9) / 1e6,
+                getValueAtPercentile(100) / 1e6);
+    }
+}
@@ -3,9 +3,11 @@ package hangman.client;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -20,6 +22,9 @@ public class Client extends Thread{
     private String name = "Client";
     private String host = "localhost";
     private Integer port = 5050;
+    private String difficulty;
+    private String resume;
+    private boolean race = false;
 
     private InetSocketAddress socketAddress;
     private Socket socket = null;
@@ -44,6 +49,33 @@ public class Client extends Thread{
         if (port != null) this.port = port;
     }
 
+    /**
+     * Initializes host, port, username and the difficulty of the word
+     *
+     * @param name   String representation of the username which will be written to the toplist if the player makes it there
+     * @param host   String representation of hostname, on which the server should be listening
+     * @param port   Integer for the listening port
+     * @param difficulty easy, medium or hard, null if any word is fine
+     */
+    public Client(String name, String host, Integer port, String difficulty) {
+        this(name, host, port);
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Initializes host, port, username, the difficulty of the word and the token of a saved game
+     *
+     * @param name   String representation of the username which will be written to the toplist if the player makes it there
+     * @param host   String representation of hostname, on which the server should be listening
+     * @param port   Integer for the listening port
+     * @param difficulty easy, medium or hard, null if any word is fine
+     * @param resume the token the server sent when it shut down during the last game, null for a new game
+     */
+    public Client(String name, String host, Integer port, String difficulty, String resume) {
+        this(name, host, port, difficulty);
+        this.resume = resume;
+    }
+
     /**
      * Initiating the Socket with already defined Parameters (host, port). Also a timeout of 2000 ms is set at connect.
      * <br>
@@ -61,8 +93,8 @@ public class Client extends Thread{
             this.socket = socket;
             socketAddress = new InetSocketAddress(host,port);
             socket.connect(socketAddress,2000);
-            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(),true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),true);
             listening = true;
             String s = null;
             SendInputToClient sitc = new SendInputToClient(this,bufferedReader);
@@ -71,6 +103,18 @@ public class Client extends Thread{
                 if(s.equals("[EXITING NOW]")){
                     break;
                 }
+                if(s.startsWith("[RESUME]")){
+                    System.out.println("The server restarts, continue your game with --resume=" + s.substring("[RESUME]".length()));
+                    continue;
+                }
+                if(race&&printRace(s)){
+                    continue;
+                }
+                if(s.startsWith("[HINT]")){
+                    String letter = s.substring("[HINT]".length());
+                    System.out.println(letter.isEmpty() ? "No hint for this word" : "Hint: try " + letter + " (this game won't get into the toplist)");
+                    continue;
+                }
                 System.out.println(s);
                 listening = socket.isConnected();
             }
@@ -81,6 +125,35 @@ public class Client extends Thread{
 
     }
 
+    /**
+     * Prints a line of a race in a readable way
+     * @param s the line the server sent
+     * @return false if it isn't a line of a race
+     */
+    private boolean printRace(String s) {
+        if(s.startsWith("[RACE]")){
+            String[] state = s.substring("[RACE]".length()).split(" ", 3);
+            System.out.println(state[0] + "   (" + state[1] + " players, guessed: " + (state.length > 2 ? state[2] : "") + ")");
+        } else if(s.startsWith("[RACE WON]")){
+            String[] result = s.substring("[RACE WON]".length()).split(" ", 2);
+            System.out.println(result[1] + " won, the word was " + result[0] + ". Here comes the next one!");
+        } else if(s.startsWith("[RACE LOST]")){
+            System.out.println("Nobody found " + s.substring("[RACE LOST]".length()) + ". Here comes the next one!");
+        } else if(s.startsWith("[TRIES]")){
+            System.out.println("Remaining tries: " + s.substring("[TRIES]".length()));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param race true to race the other players on a shared word instead of playing alone
+     */
+    public void setRace(boolean race) {
+        this.race = race;
+    }
+
     /**
      * Sending message to the server through network
      *
@@ -125,20 +198,52 @@ public class Client extends Thread{
     }
 
     /**
-     * Parse the username, server ip and port and start the client
-     * @param args Define the parameters, in this format: [username,serverip,port]
+     * Parse the username, server ip, port, the optional difficulty, the optional token of a saved game
+     * or the race mode and start the client
+     * @param args Define the parameters, in this format: [username,serverip,port,difficulty,--resume=token,--race]
      */
     public static void main(String[] args) {
-        if(args.length!=3){
-            System.out.println("Usage: gradle client --args=\"username[without spaces] serverip port\"");
+        String resume = null;
+        boolean race = false;
+        int length = args.length;
+        while(length>3&&args[length-1].startsWith("--")){
+            if(args[length-1].startsWith("--resume=")){
+                resume = args[--length].substring("--resume=".length());
+            } else if(args[length-1].equals("--race")){
+                race = true;
+                length--;
+            } else {
+                break;
+            }
+        }
+        if(length!=3&&length!=4){
+            System.out.println("Usage: gradle client --args=\"username[without spaces] serverip port [easy|medium|hard] [--resume=token] [--race]\"");
             System.exit(1);
         }
-        Client client = new Client(args[0],args[1],Integer.parseInt(args[2]));
+        Client client = new Client(args[0],args[1],Integer.parseInt(args[2]),length==4?args[3]:null,resume);
+        client.setRace(race);
         System.out.println("Starting game...");
         client.start();
 
     }
 
+    /**
+     * @return the first line sent to the server, the username and the settings of the game
+     */
+    public String getHandshake() {
+        String handshake = "[USERNAME]" + name;
+        if (difficulty != null) {
+            handshake += " [DIFFICULTY]" + difficulty;
+        }
+        if (resume != null) {
+            handshake += " [RESUME]" + resume;
+        }
+        if (race) {
+            handshake += " [MODE]race";
+        }
+        return handshake;
+    }
+
     /**
      * Return the name of the username. Couldn't name it getName,
      * because I mustn't override that methode
@@ -169,7 +274,7 @@ class SendInputToClient implements Runnable{
     }
 
     /**
-     * Sends the username to the server and then starts a loop,
+     * Sends the username and the settings to the server and then starts a loop,
      * based on whether the client is still listening and the bufferedReader beeing null
      */
     @Override
@@ -178,7 +283,7 @@ class SendInputToClient implements Runnable{
 
             System.out.println("Waiting for input...");
             String input;
-            client.send("[USERNAME]"+client.getGameName());
+            client.send(client.getHandshake());
             while (client.isListening()&&(input=bufferedReader.readLine())!=null){
                 client.send(input);
             }
@@ -0,0 +1,154 @@
+package hangman.client;
+
+import hangman.HintIndex;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides what a simulated player of the {@link LoadGenerator} sends next
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public interface GuessStrategy {
+
+    /**
+     * Called once before every game
+     */
+    void reset();
+
+    /**
+     * @param mask the masked answer the server sent last, with underscores for unknown letters
+     * @param remainingTries the tries the player has left
+     * @return a single letter to guess or a whole word to solve
+     */
+    String next(String mask, int remainingTries);
+
+    /**
+     * Creates a new strategy by its name, every player gets his own instance
+     * @param name frequency or random
+     * @return the strategy
+     * @throws IllegalArgumentException if there is no such strategy
+     */
+    static GuessStrategy create(String name) {
+        return create(name, null);
+    }
+
+    /**
+     * Creates a new strategy by its name, every player gets his own instance
+     * @param name frequency, random or solver
+     * @param index the words the solver picks its letters with, shared by all players, may be null for the others
+     * @return the strategy
+     * @throws IllegalArgumentException if there is no such strategy or the solver has no index
+     */
+    static GuessStrategy create(String name, HintIndex index) {
+        switch (name) {
+            case "frequency":
+                return new FrequencyStrategy();
+            case "random":
+                return new RandomStrategy();
+            case "solver":
+                if (index == null) {
+                    throw new IllegalArgumentException("The solver strategy needs a --dictionary");
+                }
+                return new SolverStrategy(index);
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+}
+
+/**
+ * Guesses the letters in the order of their frequency in german words
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class FrequencyStrategy implements GuessStrategy {
+
+    static final String LETTERS = "enisratdhulcgmobwfkzpv\u00fc\u00e4\u00dfj\u00f6yxq";
+
+    private int next;
+
+    @Override
+    public void reset() {
+        next = 0;
+    }
+
+    @Override
+    public String next(String mask, int remainingTries) {
+        if (next == LETTERS.length()) {
+            return mask.replace('_', 'e');
+        }
+        return String.valueOf(LETTERS.charAt(next++));
+    }
+}
+
+/**
+ * Guesses the letters in a random order, every letter once
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class RandomStrategy implements GuessStrategy {
+
+    private char[] letters = FrequencyStrategy.LETTERS.toCharArray();
+    private int next;
+
+    @Override
+    public void reset() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = letters.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            char c = letters[i];
+            letters[i] = letters[j];
+            letters[j] = c;
+        }
+        next = 0;
+    }
+
+    @Override
+    public String next(String mask, int remainingTries) {
+        if (next == letters.length) {
+            return mask.replace('_', 'e');
+        }
+        return String.valueOf(letters[next++]);
+    }
+}
+
+/**
+ * Guesses the letter most of the matching words contain, with the same {@link HintIndex}
+ * the server gives its hints with. If the index knows no letter, the frequency order is used.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class SolverStrategy implements GuessStrategy {
+
+    private HintIndex index;
+    private StringBuilder guessed = new StringBuilder();
+
+    /**
+     * @param index the words the letters are picked with
+     */
+    SolverStrategy(HintIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public void reset() {
+        guessed.setLength(0);
+    }
+
+    @Override
+    public String next(String mask, int remainingTries) {
+        char letter = index.hint(mask, guessed);
+        for (int i = 0; letter == 0 && i < FrequencyStrategy.LETTERS.length(); i++) {
+            char c = FrequencyStrategy.LETTERS.charAt(i);
+            if (guessed.indexOf(String.valueOf(c)) == -1) {
+                letter = c;
+            }
+        }
+        if (letter == 0) {
+            return mask.replace(HintIndex.HIDDEN, 'e');
+        }
+        guessed.append(letter);
+        return String.valueOf(letter);
+    }
+}
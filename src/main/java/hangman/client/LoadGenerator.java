@@ -0,0 +1,397 @@
+package hangman.client;
+
+import hangman.Frames;
+import hangman.HintIndex;
+import hangman.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulates many players at once to put load on a server.
+ * <br>
+ * The players are started at a fixed rate per second, each plays a number of games,
+ * optionally several of them in a row over one connection,
+ * with its own {@link GuessStrategy}, either with the text protocol of the {@link Client}
+ * or with {@link Frames}.
+ * At the end the games per second and the latency percentiles of the handshake,
+ * of every guess and of whole games are printed.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class LoadGenerator {
+
+    private InetSocketAddress address;
+    private int players = 100;
+    private int rampPerSecond = 100;
+    private int gamesPerPlayer = 1;
+    private int roundsPerConnection = 1;
+    private int batch = 1;
+    private String strategy = "frequency";
+    private HintIndex dictionary;
+    private boolean binary = false;
+
+    private LatencyHistogram handshakes = new LatencyHistogram();
+    private LatencyHistogram guesses = new LatencyHistogram();
+    private LatencyHistogram games = new LatencyHistogram();
+    private LongAdder won = new LongAdder();
+    private LongAdder lost = new LongAdder();
+    private LongAdder failed = new LongAdder();
+    private LongAdder busy = new LongAdder();
+
+    /**
+     * Initialize with the server and the default settings
+     * @param host the hostname of the server
+     * @param port the port of the server
+     */
+    public LoadGenerator(String host, int port) {
+        this.address = new InetSocketAddress(host, port);
+    }
+
+    /**
+     * Starts all players, waits until every game is over and prints the report
+     * @throws InterruptedException if waiting for the players is interrupted
+     */
+    public void run() throws InterruptedException {
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        CountDownLatch done = new CountDownLatch(players);
+        long start = System.nanoTime();
+        for (int i = 0; i < players; i++) {
+            int id = i;
+            long startAt = start + (long) i * 1000000000L / rampPerSecond;
+            executorService.execute(() -> {
+                try {
+                    long wait = startAt - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    GuessStrategy guessStrategy = GuessStrategy.create(strategy, dictionary);
+                    for (int game = 0; game < gamesPerPlayer; game += roundsPerConnection) {
+                        play(id, guessStrategy, Math.min(roundsPerConnection, gamesPerPlayer - game));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executorService.shutdown();
+
+        long finished = won.sum() + lost.sum();
+        System.out.printf("%d players, %d games in %.2fs: %.1f games/s (%d won, %d lost, %d failed, %d busy)%n",
+                players, finished, seconds, finished / seconds, won.sum(), lost.sum(), failed.sum(), busy.sum());
+        System.out.println("handshake " + handshakes.summary());
+        System.out.println("guess     " + guesses.summary());
+        System.out.println("game      " + games.summary());
+    }
+
+    /**
+     * Plays a number of games on a new connection. A failed or rejected connection is counted, not thrown.
+     * @param id the number of the player, part of his username
+     * @param strategy decides what the player guesses
+     * @param rounds the number of games played over the connection
+     */
+    private void play(int id, GuessStrategy strategy, int rounds) {
+        long begin = System.nanoTime();
+        try (Socket socket = new Socket()) {
+            socket.connect(address, 10000);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(30000);
+            String handshake = "[USERNAME]load" + id + " [ROUNDS]" + rounds;
+            if (binary) {
+                playFrames(socket, handshake + " [PROTOCOL]binary", strategy, rounds, begin);
+            } else {
+                playLines(socket, handshake, strategy, rounds, begin);
+            }
+        } catch (ServerBusyException e) {
+            busy.increment();
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+        }
+    }
+
+    /**
+     * Counts a finished game
+     * @param wonGame true if the game was won
+     * @param begin when the game started in nanoseconds
+     */
+    private void finished(boolean wonGame, long begin) {
+        if (wonGame) {
+            won.increment();
+        } else {
+            lost.increment();
+        }
+        games.record(System.nanoTime() - begin);
+    }
+
+    /**
+     * Plays games with the text protocol, the mask of the next round follows the result line
+     * @param socket the connected socket
+     * @param handshake the first line to send
+     * @param strategy decides what the player guesses
+     * @param rounds the number of games played over the connection
+     * @param begin when the connection was opened in nanoseconds
+     * @throws IOException if the connection fails
+     */
+    private void playLines(Socket socket, String handshake, GuessStrategy strategy, int rounds, long begin) throws IOException {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+        out.println(handshake);
+        String mask = readLine(in);
+        handshakes.record(System.nanoTime() - begin);
+
+        for (int round = 0; round < rounds; round++) {
+            if (round > 0) {
+                begin = System.nanoTime();
+                mask = readLine(in);
+            }
+            strategy.reset();
+            int remainingTries = Integer.MAX_VALUE;
+            while (true) {
+                long sent = System.nanoTime();
+                out.println(nextMessage(strategy, mask, remainingTries));
+                String line = readLine(in);
+                guesses.record(System.nanoTime() - sent);
+                if (!line.startsWith("Remaining tries: ")) {
+                    finished(line.equals("You won!"), begin);
+                    break;
+                }
+                remainingTries = Integer.parseInt(line.substring("Remaining tries: ".length()));
+                mask = readLine(in);
+            }
+        }
+    }
+
+    /**
+     * Plays games with the binary protocol, every guess is answered by a single state frame
+     * and the state of the next round follows the result
+     * @param socket the connected socket
+     * @param handshake the first line to send
+     * @param strategy decides what the player guesses
+     * @param rounds the number of games played over the connection
+     * @param begin when the connection was opened in nanoseconds
+     * @throws IOException if the connection fails
+     */
+    private void playFrames(Socket socket, String handshake, GuessStrategy strategy, int rounds, long begin) throws IOException {
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+        out.write((handshake + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        in.mark(1);
+        if (in.read() == '[') {
+            throw new ServerBusyException();
+        }
+        in.reset();
+        Frames.Frame state = readState(in);
+        handshakes.record(System.nanoTime() - begin);
+
+        for (int round = 0; round < rounds; round++) {
+            if (round > 0) {
+                begin = System.nanoTime();
+                state = readState(in);
+            }
+            strategy.reset();
+            int remainingTries = Integer.MAX_VALUE;
+            while (state.getResult() == Frames.RUNNING) {
+                long sent = System.nanoTime();
+                Frames.writeText(out, Frames.GUESS, nextMessage(strategy, state.getText(), remainingTries));
+                out.flush();
+                state = readState(in);
+                remainingTries = state.getRemainingTries();
+                guesses.record(System.nanoTime() - sent);
+            }
+            finished(state.getResult() == Frames.WON, begin);
+        }
+    }
+
+    /**
+     * Asks the strategy for up to {@link #batch} letters and sends them in one message
+     * @param strategy decides what the player guesses
+     * @param mask the masked answer the server sent last
+     * @param remainingTries the tries the player has left
+     * @return a single letter, a batch of letters or a whole word
+     */
+    private String nextMessage(GuessStrategy strategy, String mask, int remainingTries) {
+        String guess = strategy.next(mask, remainingTries);
+        if (batch == 1 || guess.length() > 1) {
+            return guess;
+        }
+        StringBuilder letters = new StringBuilder().append('+').append(guess);
+        for (int i = 1; i < batch; i++) {
+            String next = strategy.next(mask, remainingTries);
+            if (next.length() > 1) {
+                break;
+            }
+            letters.append(next);
+        }
+        return letters.toString();
+    }
+
+    /**
+     * Reads the next state frame, notices of the server are skipped
+     * @param in the stream of the connection
+     * @return the frame
+     * @throws IOException if the connection is closed or reading fails
+     */
+    private static Frames.Frame readState(DataInputStream in) throws IOException {
+        Frames.Frame frame;
+        do {
+            frame = Frames.read(in);
+            if (frame.getOpcode() == Frames.EXIT) {
+                throw new EOFException("The server closed the connection");
+            }
+        } while (frame.getOpcode() != Frames.STATE);
+        return frame;
+    }
+
+    /**
+     * Reads the next line meant for the player, notices of the server in brackets are skipped
+     * @param in the reader of the connection
+     * @return the line
+     * @throws IOException if the connection is closed or reading fails
+     */
+    private static String readLine(BufferedReader in) throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+            if (line == null) {
+                throw new EOFException("The server closed the connection");
+            }
+            if (line.startsWith(Frames.BUSY)) {
+                throw new ServerBusyException();
+            }
+        } while (line.startsWith("["));
+        return line;
+    }
+
+    /**
+     * Sets a single option
+     * @param name the name of the option without the leading dashes
+     * @param value the value of the option
+     */
+    private void set(String name, String value) {
+        switch (name) {
+            case "players":
+                players = Integer.parseInt(value);
+                break;
+            case "ramp":
+                rampPerSecond = Integer.parseInt(value);
+                break;
+            case "games":
+                gamesPerPlayer = Integer.parseInt(value);
+                break;
+            case "protocol":
+                if (!value.equals("text") && !value.equals("binary")) {
+                    throw new IllegalArgumentException("Unknown protocol: " + value);
+                }
+                binary = value.equals("binary");
+                break;
+            case "rounds":
+                roundsPerConnection = Integer.parseInt(value);
+                if (roundsPerConnection < 1) {
+                    throw new IllegalArgumentException("Rounds must be at least 1: " + value);
+                }
+                break;
+            case "batch":
+                batch = Integer.parseInt(value);
+                if (batch < 1) {
+                    throw new IllegalArgumentException("Batch must be at least 1: " + value);
+                }
+                break;
+            case "strategy":
+                strategy = value;
+                break;
+            case "dictionary":
+                dictionary = loadDictionary(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: --" + name);
+        }
+    }
+
+    /**
+     * Reads a word list, one word per line, for the solver strategy
+     * @param path the file with the words
+     * @return the index over the words
+     * @throws IllegalArgumentException if the file can't be read
+     */
+    private static HintIndex loadDictionary(String path) {
+        try {
+            List<String> words = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+            words.replaceAll(String::trim);
+            words.removeIf(String::isEmpty);
+            return new HintIndex(words.size(), words::get);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't read the dictionary " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parse the server and the options and start the players
+     * @param args in the format [serverip, port, --players=n, --ramp=perSecond, --games=perPlayer, --rounds=perConnection, --batch=letters, --strategy=name, --dictionary=path, --protocol=text|binary]
+     * @throws InterruptedException if waiting for the players is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator = null;
+        try {
+            if (args.length < 2) {
+                throw new IllegalArgumentException("Missing server");
+            }
+            generator = new LoadGenerator(args[0], Integer.parseInt(args[1]));
+            for (int i = 2; i < args.length; i++) {
+                int split = args[i].indexOf('=');
+                if (!args[i].startsWith("--") || split == -1) {
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                }
+                generator.set(args[i].substring(2, split), args[i].substring(split + 1));
+            }
+            GuessStrategy.create(generator.strategy, generator.dictionary);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: gradle loadGenerator --args=\"serverip port [--players=n] [--ramp=perSecond] [--games=perPlayer] [--rounds=perConnection] [--batch=letters] [--strategy=frequency|random|solver] [--dictionary=path] [--protocol=text|binary]\"");
+            System.exit(1);
+        }
+        generator.run();
+    }
+}
+
+/**
+ * Thrown if the server rejected a player because it is too busy
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class ServerBusyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Initialize the exception
+     */
+    ServerBusyException() {
+        super("The server is busy");
+    }
+}
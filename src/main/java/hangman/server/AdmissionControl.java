@@ -0,0 +1,198 @@
+package hangman.server;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Decides which accepted connections may start a game, so a storm of connections can't
+ * slow down the games which are already running.
+ * <br>
+ * At most {@link #maxGames} connections are admitted at once, and at most {@link #maxHandshakes}
+ * of them may still be waiting for their handshake. A connection over the game limit waits in
+ * a bounded queue until a game is closed. If the queue is full, the handshake limit is reached or
+ * it waited longer than the handshake timeout, it is rejected right away with a
+ * {@link hangman.Frames#BUSY} line. A limit of 0 is never enforced.
+ * @param <T> the kind of connection, a socket or a channel
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class AdmissionControl<T> {
+
+    private int maxGames;
+    private int maxHandshakes;
+    private int queueSize;
+    private long maxWait;
+
+    private Consumer<T> start;
+    private Consumer<T> reject;
+    private TimerWheel wheel;
+
+    private int games = 0;
+    private int handshakes = 0;
+    private Queue<Waiting<T>> queue = new ArrayDeque<>();
+
+    private long admitted = 0;
+    private long queued = 0;
+    private long rejected = 0;
+    private long timedOut = 0;
+
+    /**
+     * Initialize the admission control
+     * @param options the limits
+     * @param wheel where the queued connections wait for their timeout
+     * @param start starts the game of an admitted connection
+     * @param reject tells a connection that the server is busy and closes it
+     */
+    AdmissionControl(ServerOptions options, TimerWheel wheel, Consumer<T> start, Consumer<T> reject) {
+        this.maxGames = options.getMaxGames();
+        this.maxHandshakes = options.getMaxHandshakes();
+        this.queueSize = options.getAcceptQueue();
+        this.maxWait = TimeUnit.MILLISECONDS.toNanos(options.getHandshakeTimeout());
+        this.wheel = wheel;
+        this.start = start;
+        this.reject = reject;
+    }
+
+    /**
+     * Admits, queues or rejects a new connection, called by the accept loop
+     * @param connection the accepted connection
+     */
+    void offer(T connection) {
+        boolean admit = false;
+        boolean wait = false;
+        synchronized (this) {
+            if (maxHandshakes > 0 && handshakes >= maxHandshakes) {
+                rejected++;
+            } else if (maxGames == 0 || games < maxGames) {
+                admit();
+                admit = true;
+            } else if (queue.size() < queueSize) {
+                queue.add(new Waiting<>(connection, System.nanoTime()));
+                queued++;
+                wait = true;
+            } else {
+                rejected++;
+            }
+        }
+        if (admit) {
+            start.accept(connection);
+        } else if (wait) {
+            if (maxWait > 0) {
+                wheel.schedule(this::expireQueue, TimeUnit.NANOSECONDS.toMillis(maxWait) + 1);
+            }
+        } else {
+            reject.accept(connection);
+        }
+    }
+
+    /**
+     * Counts an admitted connection, has to be called while synchronized
+     */
+    private void admit() {
+        games++;
+        handshakes++;
+        admitted++;
+    }
+
+    /**
+     * Called when an admitted connection finished its handshake
+     */
+    void started() {
+        synchronized (this) {
+            handshakes--;
+        }
+        drain();
+    }
+
+    /**
+     * Called exactly once when an admitted connection is closed
+     * @param started true if the connection finished its handshake before
+     */
+    void closed(boolean started) {
+        synchronized (this) {
+            games--;
+            if (!started) {
+                handshakes--;
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Admits waiting connections as long as there is room for them
+     */
+    private void drain() {
+        expireQueue();
+        while (true) {
+            T next;
+            synchronized (this) {
+                if (queue.isEmpty() || (maxGames > 0 && games >= maxGames)
+                        || (maxHandshakes > 0 && handshakes >= maxHandshakes)) {
+                    return;
+                }
+                next = queue.poll().connection;
+                admit();
+            }
+            start.accept(next);
+        }
+    }
+
+    /**
+     * Rejects every queued connection which waited longer than the handshake timeout
+     */
+    private void expireQueue() {
+        Queue<T> expired = new ArrayDeque<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (maxWait > 0 && !queue.isEmpty() && now - queue.peek().since >= maxWait) {
+                expired.add(queue.poll().connection);
+                timedOut++;
+            }
+        }
+        for (T connection : expired) {
+            reject.accept(connection);
+        }
+    }
+
+    /**
+     * Rejects every queued connection, called on shutdown
+     */
+    void rejectQueue() {
+        Queue<Waiting<T>> waiting;
+        synchronized (this) {
+            waiting = queue;
+            queue = new ArrayDeque<>();
+        }
+        for (Waiting<T> connection : waiting) {
+            reject.accept(connection.connection);
+        }
+    }
+
+    /**
+     * @return the counters as one line of text
+     */
+    synchronized String report() {
+        return String.format("admission games=%d handshakes=%d waiting=%d admitted=%d queued=%d rejected=%d timedOut=%d%n",
+                games, handshakes, queue.size(), admitted, queued, rejected, timedOut);
+    }
+
+    /**
+     * A connection waiting in the queue
+     * @param <T> the kind of connection
+     */
+    private static class Waiting<T> {
+        private T connection;
+        private long since;
+
+        /**
+         * @param connection the waiting connection
+         * @param since when it was queued, in nanoseconds of {@link System#nanoTime()}
+         */
+        private Waiting(T connection, long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+}
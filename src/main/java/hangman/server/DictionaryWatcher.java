@@ -0,0 +1,142 @@
+package hangman.server;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the word list of a {@link Server} and loads it again whenever it changes.
+ * <br>
+ * A changed word list is streamed into a temporary dictionary file which is then mapped,
+ * so a reload neither holds the words on the heap twice nor pauses the games.
+ * The new dictionary is handed to the server in one step, running games keep their answer.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class DictionaryWatcher implements Runnable {
+
+    /**
+     * Milliseconds without further changes until the file is considered completely written
+     */
+    private static final long QUIET_PERIOD = 500;
+
+    private Path file;
+    private Consumer<WordDictionary> onReload;
+    private WatchService watchService;
+    private Path current;
+
+    /**
+     * Initialize the watcher, the directory of the file is watched after {@link #run()} is started
+     * @param file the word list or the dictionary file
+     * @param onReload gets every newly loaded dictionary
+     * @throws IOException if the directory can't be watched
+     */
+    DictionaryWatcher(Path file, Consumer<WordDictionary> onReload) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.onReload = onReload;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Waits for changes of the file until {@link #close()} is called
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = concernsFile(key);
+                // a big file is written in many steps, wait until it stays untouched
+                while ((key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= concernsFile(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // the server is shutting down
+        }
+    }
+
+    /**
+     * @param key the key with the latest events of the directory
+     * @return true if one of the events is about the watched file
+     */
+    private boolean concernsFile(WatchKey key) {
+        boolean concerns = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (file.getFileName().equals(event.context())) {
+                concerns = true;
+            }
+        }
+        key.reset();
+        return concerns;
+    }
+
+    /**
+     * Loads the changed file and hands it to the server. An empty or broken file is ignored,
+     * so the server keeps the words it has.
+     */
+    private void reload() {
+        Path dictionary = null;
+        try {
+            long start = System.nanoTime();
+            WordDictionary words;
+            if (file.toString().endsWith(".dict")) {
+                words = PackedDictionary.map(file);
+            } else {
+                dictionary = Files.createTempFile("hangman-words", ".dict");
+                dictionary.toFile().deleteOnExit();
+                PackedDictionary.build(file, dictionary);
+                words = PackedDictionary.map(dictionary);
+            }
+            if (words.size() == 0) {
+                Log.warn("Ignoring the empty wordlist {}", file);
+                deleteQuietly(dictionary);
+                return;
+            }
+            onReload.accept(words);
+            deleteQuietly(current);
+            current = dictionary;
+            Log.info("Reloaded {} words in {} ms", words.size(), (System.nanoTime() - start) / 1000000);
+        } catch (IOException e) {
+            Log.warn("Couldn't reload the wordlist {}: {}", file, e.getMessage());
+            deleteQuietly(dictionary);
+        }
+    }
+
+    /**
+     * Deletes a temporary dictionary, which stays readable as long as it is mapped
+     * @param dictionary the file, may be null
+     */
+    private void deleteQuietly(Path dictionary) {
+        if (dictionary == null) return;
+        try {
+            Files.deleteIfExists(dictionary);
+        } catch (IOException e) {
+            dictionary.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Stops watching the file
+     */
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Log.error("Can't stop watching the wordlist", e);
+        }
+    }
+}
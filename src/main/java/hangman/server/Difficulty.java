@@ -0,0 +1,29 @@
+package hangman.server;
+
+/**
+ * How hard the word of a game is to guess
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public enum Difficulty {
+    /** any word of the dictionary */
+    ANY,
+    /** the easiest third of the dictionary */
+    EASY,
+    /** the middle third of the dictionary */
+    MEDIUM,
+    /** the hardest third of the dictionary */
+    HARD;
+
+    /**
+     * @param name the name of the difficulty, case doesn't matter
+     * @return the difficulty, {@link #ANY} if the name is null or empty
+     * @throws IllegalArgumentException if there is no such difficulty
+     */
+    public static Difficulty parse(String name) {
+        if (name == null || name.isEmpty()) {
+            return ANY;
+        }
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,58 @@
+package hangman.server;
+
+import hangman.Frames;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Collects the bytes of a non blocking channel into {@link Frames}.
+ * A client in the binary protocol only sends {@link Frames#GUESS} frames,
+ * their text is returned like a line of the text protocol.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class FrameDecoder implements MessageDecoder {
+
+    private byte[] header = new byte[2];
+    private int headerLength = 0;
+    private byte[] frame;
+    private int frameLength = 0;
+
+    /**
+     * Reads from the buffer until the end of the next frame
+     * @param buffer the bytes read from the channel, positioned after the returned frame
+     * @return the text of the next complete guess, null if the buffer ends before one
+     * @throws IOException if the frame is longer than {@link Frames#MAX_LENGTH} or isn't a guess
+     */
+    @Override
+    public String next(ByteBuffer buffer) throws IOException {
+        while (frame == null) {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            header[headerLength++] = buffer.get();
+            if (headerLength == header.length) {
+                int length = ((header[0] & 0xff) << 8) | (header[1] & 0xff);
+                if (length == 0 || length > Frames.MAX_LENGTH) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                frame = new byte[length];
+                frameLength = 0;
+                headerLength = 0;
+            }
+        }
+        int take = Math.min(buffer.remaining(), frame.length - frameLength);
+        buffer.get(frame, frameLength, take);
+        frameLength += take;
+        if (frameLength < frame.length) {
+            return null;
+        }
+        Frames.Frame decoded = new Frames.Frame(frame, 0, frame.length);
+        frame = null;
+        if (decoded.getOpcode() != Frames.GUESS) {
+            throw new IOException("Unexpected frame " + decoded.getOpcode());
+        }
+        return decoded.getText();
+    }
+}
@@ -0,0 +1,534 @@
+package hangman.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Learns from every finished game how hard its word really is.
+ * <br>
+ * A finished game is offered to a lock free queue, which a single analytics thread drains, so the games
+ * never wait for it. A counter bounds the queue, if it is full the game is dropped. While no game comes the
+ * thread parks, a game only unparks it if it is parked, so a busy server doesn't wake it on every game.
+ * It adds the game to the {@link WordStats} of the current catalog: games, wins, misses, guesses and
+ * when the first letter was hit, in one primitive array each, indexed by the position of the word in the
+ * dictionary. For every letter it counts how often it was guessed, how often it was a hit and at which
+ * position of the guesses it came, these counters start over with the stats of a new catalog.
+ * The stats are written to a file every {@link #SNAPSHOT_INTERVAL} and on shutdown, and read again on
+ * startup if the dictionary didn't change.
+ * <br>
+ * The order in which the letters of a word were hit is only kept as the guess of the first hit. Keeping
+ * the whole order would take a counter per letter and word, 26 times the memory of the other stats.
+ * The order of the letters over all words is in the position counters of the letters.
+ * <br>
+ * With a target band of win rates, a word is in the band once it was played {@link #MIN_GAMES} times and
+ * its win rate lies within the band. The thread keeps the words of the band in a set, which it publishes
+ * as a plain array at most every {@link #PUBLISH_INTERVAL}, so picking a word of the band is a random index
+ * into that array instead of a scan over the dictionary. {@link #EXPLORE} of the games still get any word,
+ * otherwise words nobody played yet would never get into the band.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class GameAnalytics implements Runnable {
+
+    /**
+     * The number of games which may wait in the queue, further games are dropped
+     */
+    static final int QUEUE_LIMIT = 65536;
+
+    /**
+     * The number of games a word needs before it can be in the band
+     */
+    static final int MIN_GAMES = 5;
+
+    /**
+     * The share of games which get a random word although there is a band
+     */
+    static final double EXPLORE = 0.1;
+
+    /**
+     * Milliseconds between two snapshots of the stats
+     */
+    static final long SNAPSHOT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Milliseconds between two publications of the band
+     */
+    static final long PUBLISH_INTERVAL = 1000;
+
+    private static final int MAGIC = 0x48475753;
+    private static final int VERSION = 1;
+
+    private Path path;
+    private Path temporary;
+    private double minWinRate;
+    private double maxWinRate;
+
+    private ConcurrentLinkedQueue<Record> queue = new ConcurrentLinkedQueue<>();
+    private AtomicInteger queued = new AtomicInteger();
+    private volatile boolean parked = false;
+    private volatile WordCatalog catalog;
+    private volatile Band band = new Band(null, new int[0]);
+    private volatile WordStats stats;
+    private long[] letterGuesses = new long[256];
+    private long[] letterHits = new long[256];
+    private long[] letterPositions = new long[256];
+
+    private LongAdder recorded = new LongAdder();
+    private LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /**
+     * Initialize the analytics and start its thread
+     * @param path the file the stats are written to
+     * @param catalog the current words
+     * @param minWinRate the lowest win rate of the band
+     * @param maxWinRate the highest win rate of the band, 0 if words are never picked by their win rate
+     */
+    GameAnalytics(Path path, WordCatalog catalog, double minWinRate, double maxWinRate) {
+        this.path = path;
+        this.temporary = Paths.get(path + ".tmp");
+        this.catalog = catalog;
+        this.minWinRate = minWinRate;
+        this.maxWinRate = maxWinRate;
+        this.thread = new Thread(this, "game-analytics");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Tells the analytics that the word list was reloaded, the stats start over for the new words
+     * @param catalog the new words
+     */
+    void setCatalog(WordCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Queues a finished game, may be called from any thread and never waits
+     * @param hangman the game which was won or lost
+     */
+    void record(Hangman hangman) {
+        if (hangman.getWord() < 0) {
+            return;
+        }
+        if (queued.incrementAndGet() > QUEUE_LIMIT) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(new Record(hangman.getCatalog(), hangman.getWord(), hangman.isWon(),
+                hangman.getMaxGuesses() - hangman.getRemainingTries(), hangman.getGuessed()));
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Picks a word whose win rate lies in the band, may be called from any thread
+     * @param catalog the catalog the word has to be from
+     * @return the index of the word, -1 if there is no band or the game should get any word
+     */
+    int pick(WordCatalog catalog) {
+        Band current = band;
+        if (current.catalog != catalog || current.words.length == 0
+                || ThreadLocalRandom.current().nextDouble() < EXPLORE) {
+            return -1;
+        }
+        return current.words[ThreadLocalRandom.current().nextInt(current.words.length)];
+    }
+
+    /**
+     * Drains the queue until {@link #close()} is called, switches to a new catalog,
+     * publishes the band and writes the snapshots. Without games the thread parks,
+     * at most until the band may be published again.
+     * The last games and the last snapshot are written here as well, so only this thread touches the stats.
+     */
+    @Override
+    public void run() {
+        long published = 0;
+        long saved = System.nanoTime();
+        while (running && !Thread.currentThread().isInterrupted()) {
+            if (stats == null || stats.catalog != catalog) {
+                switchCatalog(catalog);
+            }
+            if (queue.isEmpty()) {
+                parked = true;
+                // a game queued before the flag was set is seen here, every later one unparks the thread
+                if (queue.isEmpty() && running) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(PUBLISH_INTERVAL));
+                }
+                parked = false;
+            }
+            drain();
+            long now = System.nanoTime();
+            if (stats.bandChanged && now - published >= TimeUnit.MILLISECONDS.toNanos(PUBLISH_INTERVAL)) {
+                band = new Band(stats.catalog, stats.band());
+                published = now;
+            }
+            if (now - saved >= TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_INTERVAL)) {
+                save();
+                saved = now;
+            }
+        }
+        if (stats == null || stats.catalog != catalog) {
+            // the games still queued are counted for the current words
+            switchCatalog(catalog);
+        }
+        drain();
+        save();
+    }
+
+    /**
+     * Adds every game in the queue to the stats
+     */
+    private void drain() {
+        Record record;
+        while ((record = queue.poll()) != null) {
+            queued.decrementAndGet();
+            add(record);
+        }
+    }
+
+    /**
+     * Starts new stats for the catalog, the snapshot is read if it belongs to the same words
+     * @param catalog the current words
+     */
+    private void switchCatalog(WordCatalog catalog) {
+        if (stats != null) {
+            save();
+        }
+        clearLetters();
+        stats = new WordStats(catalog, this);
+        try {
+            if (load()) {
+                Log.info("Restored the stats of {} played words", stats.played);
+            }
+        } catch (IOException e) {
+            Log.warn("Can't read the word stats: {}", e.getMessage());
+            clearLetters();
+            stats = new WordStats(catalog, this);
+        }
+        band = new Band(catalog, stats.band());
+    }
+
+    /**
+     * Sets the counters of the letters back to zero, they belong to the stats of one catalog
+     */
+    private void clearLetters() {
+        for (long[] column : new long[][]{letterGuesses, letterHits, letterPositions}) {
+            Arrays.fill(column, 0);
+        }
+    }
+
+    /**
+     * Adds a finished game to the stats of its word and its letters, a game of another catalog is skipped
+     * @param record the game
+     */
+    private void add(Record record) {
+        if (stats == null || record.catalog != stats.catalog) {
+            return;
+        }
+        String answer = stats.catalog.word(record.word);
+        int firstHit = 0;
+        for (int i = 0; i < record.guesses.length(); i++) {
+            char c = record.guesses.charAt(i);
+            boolean hit = answer.indexOf(c) >= 0;
+            if (hit && firstHit == 0) {
+                firstHit = i + 1;
+            }
+            if (c < 256) {
+                letterGuesses[c]++;
+                letterPositions[c] += i + 1;
+                if (hit) {
+                    letterHits[c]++;
+                }
+            }
+        }
+        stats.add(record.word, record.won, record.misses, record.guesses.length(), firstHit);
+        recorded.increment();
+    }
+
+    /**
+     * @param games the games of a word
+     * @param wins the won games of the word
+     * @return true if the word belongs into the band
+     */
+    private boolean inBand(int games, int wins) {
+        if (maxWinRate == 0 || games < MIN_GAMES) {
+            return false;
+        }
+        double rate = (double) wins / games;
+        return rate >= minWinRate && rate <= maxWinRate;
+    }
+
+    /**
+     * Writes the stats to a temporary file and renames it over the snapshot,
+     * so a crash never leaves half of it. Only called by the analytics thread.
+     */
+    private void save() {
+        if (stats == null || stats.played == 0) {
+            return;
+        }
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(stats.size);
+                out.writeLong(stats.fingerprint());
+                for (int[] column : stats.columns()) {
+                    for (int value : column) {
+                        out.writeInt(value);
+                    }
+                }
+                for (long[] column : new long[][]{letterGuesses, letterHits, letterPositions}) {
+                    for (long value : column) {
+                        out.writeLong(value);
+                    }
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.warn("Can't write the word stats: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the snapshot into the new stats if it was written for the same words
+     * @return true if the snapshot was read
+     * @throws IOException if the snapshot is broken
+     */
+    private boolean load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " contains no word stats");
+            }
+            if (in.readInt() != stats.size || in.readLong() != stats.fingerprint()) {
+                return false;
+            }
+            for (int[] column : stats.columns()) {
+                for (int i = 0; i < column.length; i++) {
+                    column[i] = in.readInt();
+                }
+            }
+            for (long[] column : new long[][]{letterGuesses, letterHits, letterPositions}) {
+                for (int i = 0; i < column.length; i++) {
+                    column[i] = in.readLong();
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        stats.rebuild();
+        return true;
+    }
+
+    /**
+     * @return the counters as one line of text
+     */
+    String report() {
+        WordStats current = stats;
+        return String.format("analytics recorded=%d dropped=%d queued=%d words=%d band=%d%n", recorded.sum(), dropped.sum(),
+                queued.get(), current != null ? current.played : 0, band.words.length);
+    }
+
+    /**
+     * Stops the thread and waits until it wrote the last snapshot
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            Log.warn("The analytics thread didn't stop in time, the last word stats may be missing");
+        }
+    }
+
+    /**
+     * The stats of every word of one catalog, only used by the analytics thread
+     */
+    static class WordStats {
+        private WordCatalog catalog;
+        private GameAnalytics analytics;
+        private int size;
+        private int[] games;
+        private int[] wins;
+        private int[] misses;
+        private int[] guesses;
+        private int[] firstHits;
+        private volatile int played = 0;
+        private long fingerprint = 0;
+
+        private int[] members;
+        private int[] position;
+        private int memberCount = 0;
+        private boolean bandChanged = false;
+
+        /**
+         * @param catalog the words
+         * @param analytics decides which words are in the band
+         */
+        private WordStats(WordCatalog catalog, GameAnalytics analytics) {
+            this.catalog = catalog;
+            this.analytics = analytics;
+            this.size = catalog.size();
+            this.games = new int[size];
+            this.wins = new int[size];
+            this.misses = new int[size];
+            this.guesses = new int[size];
+            this.firstHits = new int[size];
+            this.members = new int[16];
+            this.position = new int[size];
+            Arrays.fill(position, -1);
+        }
+
+        /**
+         * Counts a game of a word and moves the word into or out of the band
+         * @param word the index of the word
+         * @param won true if the game was won
+         * @param misses the tries the player lost
+         * @param guesses the letters the player guessed
+         * @param firstHit the number of the guess which was the first hit, 0 if none was
+         */
+        private void add(int word, boolean won, int misses, int guesses, int firstHit) {
+            if (games[word] == 0) {
+                played++;
+            }
+            games[word]++;
+            if (won) {
+                wins[word]++;
+            }
+            this.misses[word] += misses;
+            this.guesses[word] += guesses;
+            firstHits[word] += firstHit;
+            update(word);
+        }
+
+        /**
+         * Adds the word to or removes it from the band, both in constant time
+         * @param word the index of the word
+         */
+        private void update(int word) {
+            boolean in = analytics.inBand(games[word], wins[word]);
+            if (in && position[word] == -1) {
+                if (memberCount == members.length) {
+                    members = Arrays.copyOf(members, members.length * 2);
+                }
+                position[word] = memberCount;
+                members[memberCount++] = word;
+                bandChanged = true;
+            } else if (!in && position[word] != -1) {
+                int last = members[--memberCount];
+                members[position[word]] = last;
+                position[last] = position[word];
+                position[word] = -1;
+                bandChanged = true;
+            }
+        }
+
+        /**
+         * Counts the played words and builds the band again after the stats were read
+         */
+        private void rebuild() {
+            int count = 0;
+            for (int word = 0; word < size; word++) {
+                if (games[word] > 0) {
+                    count++;
+                }
+                update(word);
+            }
+            played = count;
+        }
+
+        /**
+         * @return a copy of the words in the band
+         */
+        private int[] band() {
+            bandChanged = false;
+            return Arrays.copyOf(members, memberCount);
+        }
+
+        /**
+         * @return the arrays which are written to the snapshot, in their order
+         */
+        private int[][] columns() {
+            return new int[][]{games, wins, misses, guesses, firstHits};
+        }
+
+        /**
+         * @return a hash over every word, so stats are only read for the same dictionary. It is only computed once.
+         */
+        private long fingerprint() {
+            if (fingerprint == 0) {
+                long hash = 1125899906842597L;
+                for (int i = 0; i < size; i++) {
+                    hash = 31 * hash + catalog.word(i).hashCode();
+                }
+                fingerprint = hash == 0 ? 1 : hash;
+            }
+            return fingerprint;
+        }
+    }
+
+    /**
+     * The words of the band as published to the games
+     */
+    private static class Band {
+        private WordCatalog catalog;
+        private int[] words;
+
+        /**
+         * @param catalog the catalog the indices belong to
+         * @param words the indices of the words in the band
+         */
+        private Band(WordCatalog catalog, int[] words) {
+            this.catalog = catalog;
+            this.words = words;
+        }
+    }
+
+    /**
+     * A finished game waiting in the queue
+     */
+    private static class Record {
+        private WordCatalog catalog;
+        private int word;
+        private boolean won;
+        private int misses;
+        private String guesses;
+
+        /**
+         * @param catalog the catalog the word is from
+         * @param word the index of the word
+         * @param won true if the game was won
+         * @param misses the tries the player lost
+         * @param guesses the letters the player guessed, in order
+         */
+        private Record(WordCatalog catalog, int word, boolean won, int misses, String guesses) {
+            this.catalog = catalog;
+            this.word = word;
+            this.won = won;
+            this.misses = misses;
+            this.guesses = guesses;
+        }
+    }
+}
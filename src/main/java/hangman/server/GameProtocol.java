@@ -0,0 +1,216 @@
+package hangman.server;
+
+import hangman.HintIndex;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * The {@link Protocol} of the games a player plays on his own over one connection.
+ * The blocking {@link Game} as well as the non blocking {@link NioSession} drive
+ * their {@link Hangman} through this class, so both speak exactly the same protocol.
+ * Whether the answers are text lines or frames is up to the {@link Replies}.
+ * <br>
+ * A client can ask for several rounds in his handshake. Then the mask of the next word
+ * is sent right after the result of the last one, without closing the connection.
+ * <br>
+ * A client can ask for a {@link #HINT}, the letter most words matching his mask contain.
+ * It costs no try, but the game doesn't get into the toplist anymore.
+ * <br>
+ * If the server is shut down, an unfinished game is {@link #suspend(SavedGames) saved} instead,
+ * so the player can resume it after the restart.
+ * <br>
+ * A client can race others on a shared word instead, see {@link RaceProtocol}.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class GameProtocol extends Protocol {
+
+    /**
+     * The last line the server sends before closing the connection
+     */
+    static final String EXIT = "[EXITING NOW]";
+
+    /**
+     * The prefix of a message with several letters to guess in a row, e.g. <code>+ensr</code>
+     */
+    static final char BATCH = '+';
+
+    /**
+     * The message asking for a hint, it is answered with a notice like <code>[HINT]e</code>
+     */
+    static final String HINT = "?";
+
+    private Supplier<Hangman> games;
+    private int rounds;
+    private int round = 1;
+    private Hangman hangman;
+    private boolean scored = false;
+    private boolean over = false;
+    private GameAnalytics analytics;
+
+    /**
+     * Initialize the protocol for a single game
+     * @param hangman the game which is played
+     * @param replies where the answers are written to
+     */
+    GameProtocol(Hangman hangman, Replies replies) {
+        this(hangman, replies, new ServerMetrics(), null);
+    }
+
+    /**
+     * Initialize the protocol for a single game
+     * @param hangman the game which is played
+     * @param replies where the answers are written to
+     * @param metrics where games and guesses are counted
+     * @param analytics gets every finished game, may be null
+     */
+    private GameProtocol(Hangman hangman, Replies replies, ServerMetrics metrics, GameAnalytics analytics) {
+        super(replies, metrics);
+        this.hangman = hangman;
+        this.rounds = 1;
+        this.analytics = analytics;
+        metrics.gameStarted();
+    }
+
+    /**
+     * Initialize the protocol for several games in a row
+     * @param games creates the game of every round
+     * @param rounds the number of games to play, 0 to play until the client leaves
+     * @param replies where the answers are written to
+     * @param metrics where games and guesses are counted
+     * @param analytics gets every finished game, may be null
+     */
+    GameProtocol(Supplier<Hangman> games, int rounds, Replies replies, ServerMetrics metrics, GameAnalytics analytics) {
+        this(games.get(), games, rounds, replies, metrics, analytics);
+    }
+
+    /**
+     * Initialize the protocol for several games in a row, starting with a given game
+     * @param hangman the game of the first round, e.g. one restored from the {@link SavedGames}
+     * @param games creates the game of every further round
+     * @param rounds the number of games to play, 0 to play until the client leaves
+     * @param replies where the answers are written to
+     * @param metrics where games and guesses are counted
+     * @param analytics gets every finished game, may be null
+     */
+    GameProtocol(Hangman hangman, Supplier<Hangman> games, int rounds, Replies replies, ServerMetrics metrics, GameAnalytics analytics) {
+        this(hangman, replies, metrics, analytics);
+        this.games = games;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Writes the masked answer the game starts with
+     * @throws IOException if writing fails
+     */
+    @Override
+    void start() throws IOException {
+        replies.start(hangman.getRemainingTries(), hangman.showObscuredAnswer());
+    }
+
+    /**
+     * Handles one message of the client.
+     * A single character is a guess, a whole word is an attempt to solve and a {@link #BATCH}
+     * guesses its letters in order until the game is over, with a single answer for all of them.
+     * A {@link #HINT} is answered with a notice and the unchanged game.
+     * If the game is over and rounds are left, the next game is started right away.
+     * @param msg the message of the client
+     * @return true if the last game is over
+     * @throws IOException if writing fails
+     */
+    @Override
+    boolean handle(String msg) throws IOException {
+        long begin = System.nanoTime();
+        if (msg.equals(HINT)) {
+            hint();
+        } else if (msg.length() > 1 && msg.charAt(0) == BATCH) {
+            for (int i = 1; i < msg.length() && !over; i++) {
+                hangman.guess(msg.charAt(i));
+                over = hangman.isOver();
+            }
+        } else if (msg.length() == 1) {
+            hangman.guess(msg.charAt(0));
+            over = hangman.isOver();
+        } else if (msg.length() > 1) {
+            hangman.aufloesen(msg);
+            over = hangman.isOver();
+        }
+        if (!over) {
+            replies.round(hangman.getRemainingTries(), hangman.showObscuredAnswer());
+            metrics.guess(System.nanoTime() - begin);
+            return false;
+        }
+        replies.result(hangman.isWon(), hangman.getRemainingTries(), hangman.showObscuredAnswer());
+        metrics.gameOver(hangman.isWon());
+        if (analytics != null && !hangman.isHinted()) {
+            analytics.record(hangman);
+        }
+        metrics.guess(System.nanoTime() - begin);
+        if (games == null || (rounds != 0 && round >= rounds)) {
+            return true;
+        }
+        Hangman last = hangman;
+        round++;
+        hangman = games.get();
+        over = false;
+        metrics.gameStarted();
+        start();
+        flush();
+        // the next mask is already on its way, the toplist never holds up a round
+        last.addToHighscore();
+        return false;
+    }
+
+    /**
+     * Sends the hint for the current game as a notice and marks the game as hinted.
+     * While the index of the hints is still built there is no hint and the game isn't marked.
+     * @throws IOException if writing fails
+     */
+    private void hint() throws IOException {
+        WordCatalog catalog = hangman.getCatalog();
+        HintIndex index = catalog == null ? null : catalog.getHints();
+        if (index == null) {
+            replies.notice("[HINT]");
+            return;
+        }
+        char letter = index.hint(hangman.showObscuredAnswer(), hangman.getGuessed());
+        hangman.useHint();
+        metrics.hint();
+        replies.notice("[HINT]" + (letter == 0 ? "" : String.valueOf(letter)));
+    }
+
+    /**
+     * Adds the player to the highscore if he made it, gives back the room and
+     * tells the client that the connection will be closed
+     * @throws IOException if writing fails
+     */
+    @Override
+    void finish() throws IOException {
+        if (!scored) {
+            scored = true;
+            hangman.addToHighscore();
+            if (!over) {
+                metrics.gameAbandoned();
+            }
+        }
+        super.finish();
+    }
+
+    /**
+     * Saves the game if it isn't over, so the player can resume it after a restart of the server.
+     * He gets the token of the saved game and is told that the connection will be closed.
+     * @param saved where the unfinished game is saved
+     * @throws IOException if writing fails
+     */
+    @Override
+    void suspend(SavedGames saved) throws IOException {
+        if (!scored && !over) {
+            scored = true;
+            metrics.gameSuspended();
+            String token = saved.save(hangman, rounds == 0 ? 0 : rounds - round + 1, getRoomName());
+            replies.notice("[" + SavedGames.RESUME + "]" + token);
+        }
+        finish();
+    }
+}
@@ -0,0 +1,146 @@
+package hangman.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The first line a client sends, in the format
+ * <pre>
+ * [USERNAME]name [KEY]value [KEY]value ...
+ * </pre>
+ * Only the username is required, everything after it are optional settings
+ * of the game, e.g. <code>[USERNAME]moritz [DIFFICULTY]hard [ROUNDS]5</code>.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class Handshake {
+
+    /**
+     * The prefix of the first line every client sends
+     */
+    static final String USERNAME = "[USERNAME]";
+
+    /**
+     * The setting for the difficulty of the word
+     */
+    static final String DIFFICULTY = "DIFFICULTY";
+
+    /**
+     * The setting for the protocol after the handshake, text or binary
+     */
+    static final String PROTOCOL = "PROTOCOL";
+
+    /**
+     * The setting for the number of games played over the connection
+     */
+    static final String ROUNDS = "ROUNDS";
+
+    /**
+     * The setting for the room the games are played in
+     */
+    static final String ROOM = "ROOM";
+
+    /**
+     * The setting for the mode, a game of his own or a race with others on a shared word
+     */
+    static final String MODE = "MODE";
+
+    private String username;
+    private Map<String, String> settings = new HashMap<>();
+
+    /**
+     * Parses the first line of a client
+     * @param line the line in the format [USERNAME]name [KEY]value ...
+     * @throws IllegalArgumentException if the line doesn't start with the username
+     */
+    Handshake(String line) {
+        if (line == null || !line.startsWith(USERNAME)) {
+            throw new IllegalArgumentException("Expected " + USERNAME + " but got: " + line);
+        }
+        String[] parts = line.substring(USERNAME.length()).split("\\s+(?=\\[)");
+        this.username = parts[0];
+        for (int i = 1; i < parts.length; i++) {
+            int end = parts[i].indexOf(']');
+            if (end == -1) {
+                throw new IllegalArgumentException("Broken setting: " + parts[i]);
+            }
+            settings.put(parts[i].substring(1, end).toUpperCase(), parts[i].substring(end + 1));
+        }
+    }
+
+    /**
+     * @return the name of the player
+     */
+    String getUsername() {
+        return username;
+    }
+
+    /**
+     * @param key the name of the setting without brackets
+     * @param defaultValue the value if the client didn't send the setting
+     * @return the value of the setting
+     */
+    String get(String key, String defaultValue) {
+        return settings.getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * @return the difficulty the client asked for, {@link Difficulty#ANY} if he didn't
+     * @throws IllegalArgumentException if the difficulty is unknown
+     */
+    Difficulty getDifficulty() {
+        return Difficulty.parse(get(DIFFICULTY, null));
+    }
+
+    /**
+     * @return true if the client asked for {@link hangman.Frames} instead of text lines
+     * @throws IllegalArgumentException if the protocol is unknown
+     */
+    boolean isBinary() {
+        String protocol = get(PROTOCOL, "text").trim().toLowerCase();
+        switch (protocol) {
+            case "text":
+                return false;
+            case "binary":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown protocol: " + protocol);
+        }
+    }
+
+    /**
+     * @return the number of games the client wants to play, 1 if he didn't say, 0 if he plays until he leaves
+     * @throws IllegalArgumentException if the number of rounds is negative or not a number
+     */
+    int getRounds() {
+        int rounds = Integer.parseInt(get(ROUNDS, "1").trim());
+        if (rounds < 0) {
+            throw new IllegalArgumentException("Rounds can't be negative: " + rounds);
+        }
+        return rounds;
+    }
+
+    /**
+     * @return the name of the room the client wants to play in, null for the lobby
+     */
+    String getRoom() {
+        String room = get(ROOM, "").trim().toLowerCase();
+        return room.isEmpty() ? null : room;
+    }
+
+    /**
+     * @return true if the client wants to race others on a shared word instead of playing a game of his own
+     * @throws IllegalArgumentException if the mode is unknown
+     */
+    boolean isRace() {
+        String mode = get(MODE, "single").trim().toLowerCase();
+        switch (mode) {
+            case "single":
+                return false;
+            case "race":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+}
@@ -1,11 +1,6 @@
 package hangman.server;
 
-import hangman.InputOutput;
-
-import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
+import java.util.Arrays;
 
 
 /**
@@ -15,57 +10,210 @@ import java.util.concurrent.locks.Lock;
  */
 public class Hangman{
 
-    private ArrayList<Character> answer, hit, miss;
+    private char[] answer, letters, mask;
+    private int[] firstPosition, nextPosition;
+    private long[] hit;
+    private long[] missLatin = new long[4];
+    private char[] missOther;
+    private int missOtherCount = 0;
+    private char[] history;
+    private int historyCount = 0;
+    private int misses = 0;
+    private int unrevealed;
     private int maxGuesses;
     private boolean guessedWholeWord = false;
+    private boolean hinted = false;
     private String username;
-    private Lock lock;
-    private HashMap<String, Integer> topList;
-    private InputOutput io;
+    private Leaderboard leaderboard;
+    private WordCatalog catalog;
+    private int word = -1;
 
     /**
-     * Initialize hangman
+     * Initialize hangman.
+     * <br>
+     * Every distinct letter of the answer gets an index into {@link #letters}, the positions
+     * of a letter are chained through {@link #firstPosition} and {@link #nextPosition}. So a guess
+     * only has to look up the letter and walk over the positions it reveals.
      * @param answer the answer which the client has to guess
      * @param maxGuesses the number of different guesses until the client looses
      * @param username the name of the user if he is added to the toplist
-     * @param lock the lock which will be used to read and write to the toplist
+     * @param leaderboard the toplist the user is added to if he wins
      */
-    public Hangman(String answer, int maxGuesses, String username,Lock lock) {
-        this.answer = new ArrayList<Character>();
-        for (char c: answer.toCharArray()) {
-            this.answer.add(c);
+    public Hangman(String answer, int maxGuesses, String username,Leaderboard leaderboard) {
+        this.answer = answer.toCharArray();
+        this.letters = distinctLetters(this.answer);
+        this.firstPosition = new int[letters.length];
+        this.nextPosition = new int[this.answer.length];
+        Arrays.fill(firstPosition, -1);
+        for (int i = this.answer.length - 1; i >= 0; i--) {
+            int letter = Arrays.binarySearch(letters, this.answer[i]);
+            nextPosition[i] = firstPosition[letter];
+            firstPosition[letter] = i;
         }
+        this.hit = new long[(letters.length + 63) >>> 6];
+        this.mask = new char[this.answer.length];
+        Arrays.fill(mask, '_');
+        this.unrevealed = this.answer.length;
         this.maxGuesses = maxGuesses;
-        this.hit = new ArrayList<>();
-        this.miss = new ArrayList<>();
-        this.io = new InputOutput("/mnt/storage/gitclones/hangman-cl-online/src/main/java/hangman/toplist.txt");
+        this.missOther = new char[Math.max(1, maxGuesses)];
+        this.history = new char[letters.length + Math.max(1, maxGuesses)];
         this.username = username;
-        this.lock = lock;
-        this.topList = new HashMap<>();
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * @param answer the characters of the answer
+     * @return every character of the answer once, sorted so they can be binary searched
+     */
+    private static char[] distinctLetters(char[] answer) {
+        char[] sorted = answer.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
     }
 
     /**
-     * Guess the given character and tells you if it is contained within the answer
+     * Guess the given character and tells you if it is contained within the answer.
+     * A hit reveals its positions in the mask, a new miss costs a try.
      * @param c the character you want to guess
      * @return true if it is contained within the answer, otherwise false
      */
     public boolean guess(char c){
-        if(answer.contains(c)){
-            if(!hit.contains(c))
-                hit.add(c);
+        int letter = Arrays.binarySearch(letters, c);
+        if(letter >= 0){
+            long bit = 1L << letter;
+            if((hit[letter >>> 6] & bit) == 0){
+                hit[letter >>> 6] |= bit;
+                remember(c);
+                for (int i = firstPosition[letter]; i != -1; i = nextPosition[i]) {
+                    mask[i] = c;
+                    unrevealed--;
+                }
+            }
             return true;
         }
-        if(!miss.contains(c))
-            miss.add(c);
+        if(addMiss(c)){
+            misses++;
+            remember(c);
+        }
         return false;
     }
 
+    /**
+     * Appends a letter which wasn't guessed before to the history of the game
+     * @param c the new letter
+     */
+    private void remember(char c){
+        if(historyCount == history.length)
+            history = Arrays.copyOf(history, history.length * 2);
+        history[historyCount++] = c;
+    }
+
+    /**
+     * Adds the character to the missed ones, characters up to 255 are kept in a bitset
+     * @param c the character which is not contained within the answer
+     * @return true if it wasn't missed before
+     */
+    private boolean addMiss(char c){
+        if(c < 256){
+            long bit = 1L << c;
+            if((missLatin[c >>> 6] & bit) != 0)
+                return false;
+            missLatin[c >>> 6] |= bit;
+            return true;
+        }
+        for (int i = 0; i < missOtherCount; i++) {
+            if(missOther[i] == c)
+                return false;
+        }
+        if(missOtherCount == missOther.length)
+            missOther = Arrays.copyOf(missOther, missOther.length * 2);
+        missOther[missOtherCount++] = c;
+        return true;
+    }
+
     /**
      *
      * @return the number of tries remaining
      */
     public int getRemainingTries() {
-        return  maxGuesses - miss.size();
+        return  maxGuesses - misses;
+    }
+
+    /**
+     *
+     * @return the number of misses the game started with
+     */
+    public int getMaxGuesses() {
+        return maxGuesses;
+    }
+
+    /**
+     *
+     * @return the word the player has to guess
+     */
+    public String getAnswer() {
+        return new String(answer);
+    }
+
+    /**
+     *
+     * @return the name of the player
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Every letter guessed so far in the order it was guessed.
+     * Guessing them on a new game with the same answer gives the same state.
+     * @return the guessed letters, each once
+     */
+    public String getGuessed() {
+        return new String(history, 0, historyCount);
+    }
+
+    /**
+     * Remembers where the answer comes from, so the game can be counted for its word
+     * @param catalog the catalog the answer was picked from
+     * @param word the index of the answer in the catalog
+     */
+    void setWord(WordCatalog catalog, int word) {
+        this.catalog = catalog;
+        this.word = word;
+    }
+
+    /**
+     * @return the catalog the answer was picked from, null if it wasn't
+     */
+    WordCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return the index of the answer in its catalog, -1 if it wasn't picked from one
+     */
+    int getWord() {
+        return word;
+    }
+
+    /**
+     * Remembers that the player asked for a hint, such a game doesn't get into the toplist
+     */
+    void useHint() {
+        hinted = true;
+    }
+
+    /**
+     * @return whether the player asked for a hint in this game
+     */
+    boolean isHinted() {
+        return hinted;
     }
 
     /**
@@ -74,8 +222,8 @@ public class Hangman{
      */
     public void aufloesen(String guess){
         guessedWholeWord = true;
-        for(char c: guess.toCharArray()){
-            this.guess(c);
+        for (int i = 0; i < guess.length(); i++) {
+            this.guess(guess.charAt(i));
         }
     }
 
@@ -84,86 +232,33 @@ public class Hangman{
      * @return a String only showing the letters you guesse correctly
      */
     public  String showObscuredAnswer(){
-        String s = "";
-        for (char c:answer) {
-            if (hit.contains(c)){
-                s+=c;
-            }
-            else{
-                s+="_";
-            }
-        }
-        return s;
-    }
-
-    /**
-     * Read the toplist and set it to the local variable toplist
-     */
-    public void readTopList(){
-        ArrayList<String> topList = io.readFile();
-        for (String s:topList) {
-            String[] parts = s.split(" ");
-            this.topList.put(parts[1],Integer.parseInt(parts[0]));
-        }
+        return new String(mask);
     }
 
     /**
-     * checks if the game is won and the player is better than
-     * the worst player of the toplist. If so the worst player is
-     * removed and the current player added and written
+     * checks if the game is won without a hint and offers the score to the leaderboard,
+     * which only takes it if the player is better than the worst player of the toplist
      */
     public void addToHighscore(){
-        if(isWon()){
-            Map.Entry<String, Integer> worstPlayer= null;
-            try {
-                lock.tryLock(2000,TimeUnit.MILLISECONDS);
-                readTopList();
-                for(Map.Entry<String, Integer> entry : this.topList.entrySet()) {
-
-                    String key = entry.getKey();
-                    Integer value = entry.getValue();
-                    if(worstPlayer==null){
-                        worstPlayer = new AbstractMap.SimpleEntry<String, Integer>(key,value);
-                    }
-                    else if(value<worstPlayer.getValue()) {
-                        worstPlayer = new AbstractMap.SimpleEntry<String, Integer>(key,value);
-                    }
-                }
-                if(worstPlayer.getValue()<getRemainingTries()){
-                    this.topList.remove(worstPlayer.getKey(), worstPlayer.getValue());
-                    this.topList.put(this.username,getRemainingTries());
-                    writeTopList();
-                    System.out.println("The toplist changed!");
-                }
-                lock.unlock();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        if(isWon() && !hinted && leaderboard != null){
+            leaderboard.offer(username, getRemainingTries());
         }
     }
 
     /**
-     * Write to the toplist from the local variable toplist
+     *
+     * @return wheter the game is won or not
      */
-    public void writeTopList(){
-        ArrayList<String> arrayList = new ArrayList<>();
-        for(Map.Entry<String, Integer> entry : this.topList.entrySet()) {
-            String key = entry.getKey();
-            Integer value = entry.getValue();
-            arrayList.add(value + " " + key);
-        }
-        Collections.sort(arrayList);
-        System.out.println(arrayList);
-        this.io.writeToFile(arrayList);
+    public boolean isWon() {
+        return unrevealed == 0;
     }
 
-
     /**
-     *
-     * @return wheter the game is won or not
+     * A game is over once it is won, the player is out of tries or he tried to solve the whole word
+     * @return whether the game is over
      */
-    public boolean isWon() {
-        return this.showObscuredAnswer().indexOf('_') == -1;
+    public boolean isOver() {
+        return isWon() || outOfTries() || guessedWholeWord;
     }
 
     /**
@@ -0,0 +1,166 @@
+package hangman.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Crash safe storage of the toplist.
+ * <br>
+ * The toplist file itself is only ever replaced as a whole: a new snapshot is written
+ * to a temporary file, synced and renamed over the old one. Changes in between are
+ * appended to a journal next to it, "toplist.txt.journal", one "score name" line each.
+ * Loading replays the snapshot and then the journal, a half written last line
+ * of the journal is cut off. If that fails the journal stays closed and every
+ * write fails with an IOException, so the caller logs it instead of losing its flusher.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class HighscoreJournal {
+
+    private Path snapshot;
+    private Path journal;
+    private Path temporary;
+    private FileChannel channel;
+    private int journalLines = 0;
+
+    /**
+     * Initialize the journal, nothing is opened until {@link #replay()} is called
+     * @param snapshot the path of the toplist file
+     */
+    public HighscoreJournal(Path snapshot) {
+        this.snapshot = snapshot;
+        this.journal = Paths.get(snapshot + ".journal");
+        this.temporary = Paths.get(snapshot + ".tmp");
+    }
+
+    /**
+     * Reads the snapshot and the journal and opens the journal for appending.
+     * The journal is only open if this returns normally.
+     * @return every line of the snapshot followed by every complete line of the journal
+     * @throws IOException if the files can't be read or the journal can't be opened
+     */
+    public List<String> replay() throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (Files.exists(snapshot)) {
+            lines.addAll(Files.readAllLines(snapshot, StandardCharsets.UTF_8));
+        }
+        FileChannel opened = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            byte[] bytes = Files.readAllBytes(journal);
+            int start = 0;
+            int count = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    lines.add(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+                    count++;
+                    start = i + 1;
+                }
+            }
+            if (start < bytes.length) {
+                Log.warn("Cutting off a half written line of {}", journal);
+                opened.truncate(start);
+            }
+            opened.position(start);
+            journalLines = count;
+        } catch (IOException | RuntimeException e) {
+            opened.close();
+            throw e;
+        }
+        channel = opened;
+        return lines;
+    }
+
+    /**
+     * @return the open journal
+     * @throws IOException if the journal couldn't be opened by {@link #replay()}
+     */
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            throw new IOException("The journal " + journal + " isn't open, the toplist can't be written");
+        }
+        return channel;
+    }
+
+    /**
+     * Appends the lines to the journal, they are only durable after {@link #sync()}
+     * @param lines the new entries in the format "score name"
+     * @throws IOException if writing fails
+     */
+    public void append(List<String> lines) throws IOException {
+        if (lines.isEmpty()) return;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (String line : lines) {
+            buffer.write(line.getBytes(StandardCharsets.UTF_8));
+            buffer.write('\n');
+        }
+        FileChannel channel = channel();
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        journalLines += lines.size();
+    }
+
+    /**
+     * Forces everything appended so far to the disk
+     * @throws IOException if syncing fails
+     */
+    public void sync() throws IOException {
+        channel().force(false);
+    }
+
+    /**
+     * @return the number of lines in the journal since the last compaction
+     */
+    public int getJournalLines() {
+        return journalLines;
+    }
+
+    /**
+     * Atomically replaces the snapshot with the given toplist and empties the journal.
+     * If the process dies after the rename but before the journal is emptied,
+     * the old journal is replayed on top of the new snapshot, which gives the same toplist.
+     * @param lines the whole toplist in the format "score name"
+     * @throws IOException if writing or renaming fails
+     */
+    public void compact(List<String> lines) throws IOException {
+        FileChannel channel = channel();
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            StringBuilder content = new StringBuilder();
+            for (String line : lines) {
+                content.append(line).append('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        journalLines = 0;
+    }
+
+    /**
+     * Closes the journal file
+     * @throws IOException if closing fails
+     */
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package hangman.server;
+
+import hangman.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * The toplist of a {@link Server}, kept sorted in memory.
+ * <br>
+ * Every player is on the list at most once with his best score. An entry which can't
+ * make it onto the full list is rejected by comparing it with the {@link #worst} entry without locking.
+ * Since the entries are totally ordered, by score and then by name, the list only depends on which
+ * entries were offered and never on their order. So the toplists of several servers can be merged by
+ * offering each other their entries, see {@link LeaderboardGossip}.
+ * Changes are appended to a {@link HighscoreJournal} by a background thread, so the players never
+ * wait for the disk. The journal is synced once per flush and compacted into a new toplist file
+ * after {@link #COMPACT_AFTER} lines.
+ * How long players wait for and hold the lock and how long flushes take is recorded for the stats.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class Leaderboard {
+
+    /**
+     * The number of players on the toplist
+     */
+    public static final int SIZE = 10;
+
+    /**
+     * Number of journal lines after which a new snapshot of the toplist is written
+     */
+    public static final int COMPACT_AFTER = 1000;
+
+    private int capacity;
+    private volatile Entry[] entries = new Entry[0];
+    private volatile Entry worst = null;
+    private Lock lock = new ReentrantLock();
+    private Queue<Entry> unwritten = new ConcurrentLinkedQueue<>();
+    private HighscoreJournal journal;
+    private ScheduledExecutorService flusher;
+    private List<Consumer<Entry>> listeners = new CopyOnWriteArrayList<>();
+
+    private LatencyHistogram lockWait = new LatencyHistogram();
+    private LatencyHistogram lockHold = new LatencyHistogram();
+    private LatencyHistogram flushTime = new LatencyHistogram();
+
+    /**
+     * Initialize the leaderboard, it is empty until {@link #load()} is called
+     * @param journal the files the toplist is read from and written to
+     * @param capacity the number of players on the toplist
+     * @param flushInterval milliseconds between two writes of the journal
+     */
+    public Leaderboard(HighscoreJournal journal, int capacity, long flushInterval) {
+        this.journal = journal;
+        this.capacity = capacity;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "leaderboard-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replays the toplist and its journal, every line has the format "score name"
+     */
+    public void load() {
+        List<String> lines;
+        try {
+            lines = journal.replay();
+        } catch (IOException e) {
+            Log.error("Can't read the toplist, changes won't be written until a restart", e);
+            return;
+        }
+        for (String line : lines) {
+            String[] parts = line.trim().split(" ", 2);
+            if (parts.length != 2) continue;
+            try {
+                offer(parts[1], Integer.parseInt(parts[0]), false);
+            } catch (NumberFormatException e) {
+                Log.warn("Skipping broken toplist line: {}", line);
+            }
+        }
+    }
+
+    /**
+     * Adds the player to the toplist if his score is good enough
+     * @param username the name of the player
+     * @param score the remaining tries of the won game
+     * @return true if the toplist changed
+     */
+    public boolean offer(String username, int score) {
+        return offer(username, score, true);
+    }
+
+    /**
+     * Adds the player to the toplist if his score is good enough
+     * @param username the name of the player
+     * @param score the remaining tries of the won game
+     * @param persist whether the change has to be written to the file
+     * @return true if the toplist changed
+     */
+    private boolean offer(String username, int score, boolean persist) {
+        Entry entry = new Entry(username, score);
+        Entry last = worst;
+        if (last != null && entry.compareTo(last) >= 0) {
+            return false;
+        }
+        long waiting = System.nanoTime();
+        lock.lock();
+        long locked = System.nanoTime();
+        try {
+            if (!insert(entry)) {
+                return false;
+            }
+            worst = entries.length < capacity ? null : entries[entries.length - 1];
+        } finally {
+            lock.unlock();
+            long unlocked = System.nanoTime();
+            lockWait.record(locked - waiting);
+            lockHold.record(unlocked - locked);
+        }
+        if (persist) {
+            unwritten.add(entry);
+            Log.info("The toplist changed!");
+        }
+        for (Consumer<Entry> listener : listeners) {
+            listener.accept(entry);
+        }
+        return true;
+    }
+
+    /**
+     * Registers a listener which gets every entry that changed the toplist, called
+     * right after the change on the thread which offered the entry, so it has to be short
+     * @param listener gets the new entry
+     */
+    public void addListener(Consumer<Entry> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Puts the entry at its sorted position, replacing a worse score of the same player
+     * or the worst player if the list is full. Has to be called with the lock held.
+     * @param entry the new entry
+     * @return true if the toplist changed
+     */
+    private boolean insert(Entry entry) {
+        int old = -1;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].username.equals(entry.username)) {
+                if (entries[i].score >= entry.score) return false;
+                old = i;
+                break;
+            }
+        }
+        ArrayList<Entry> list = new ArrayList<>(Arrays.asList(entries));
+        if (old != -1) {
+            list.remove(old);
+        }
+        int position = 0;
+        while (position < list.size() && list.get(position).compareTo(entry) < 0) {
+            position++;
+        }
+        list.add(position, entry);
+        if (list.size() > capacity) {
+            Entry removed = list.remove(list.size() - 1);
+            if (removed == entry) return false;
+        }
+        entries = list.toArray(new Entry[0]);
+        return true;
+    }
+
+    /**
+     * Reads the toplist without the lock, every change replaces the whole array
+     * @return the current toplist, best player first
+     */
+    public List<Entry> getEntries() {
+        return Arrays.asList(entries.clone());
+    }
+
+    /**
+     * @return how long players waited for the lock of the toplist
+     */
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    /**
+     * @return how long the lock of the toplist was held
+     */
+    public LatencyHistogram getLockHold() {
+        return lockHold;
+    }
+
+    /**
+     * @return how long appending and syncing the journal took, flushes without changes aren't counted
+     */
+    public LatencyHistogram getFlushTime() {
+        return flushTime;
+    }
+
+    /**
+     * Appends the changes since the last flush to the journal and syncs it once for all of them.
+     * If the journal got too long it is compacted into a new toplist file.
+     * Only the copy of the list is taken while locked, the disk is written without the lock.
+     */
+    public void flush() {
+        List<String> lines = new ArrayList<>();
+        Entry entry;
+        while ((entry = unwritten.poll()) != null) {
+            lines.add(entry.toString());
+        }
+        try {
+            if (!lines.isEmpty()) {
+                long begin = System.nanoTime();
+                journal.append(lines);
+                journal.sync();
+                flushTime.record(System.nanoTime() - begin);
+            }
+            if (journal.getJournalLines() >= COMPACT_AFTER) {
+                compact();
+            }
+        } catch (IOException e) {
+            Log.error("Can't write the toplist", e);
+        }
+    }
+
+    /**
+     * Writes the current toplist as a new snapshot and empties the journal
+     * @throws IOException if writing fails
+     */
+    private void compact() throws IOException {
+        Entry[] snapshot;
+        lock.lock();
+        try {
+            snapshot = entries;
+        } finally {
+            lock.unlock();
+        }
+        ArrayList<String> lines = new ArrayList<>();
+        for (Entry entry : snapshot) {
+            lines.add(entry.toString());
+        }
+        journal.compact(lines);
+    }
+
+    /**
+     * Stops the background thread, writes outstanding changes and compacts the journal,
+     * so the next start only has to read the toplist file
+     */
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            compact();
+            journal.close();
+        } catch (IOException e) {
+            Log.error("Can't close the toplist", e);
+        }
+    }
+
+    /**
+     * A single player on the toplist. Entries are ordered by score,
+     * players with the same score by their name.
+     */
+    public static class Entry implements Comparable<Entry> {
+        private final String username;
+        private final int score;
+
+        /**
+         * @param username the name of the player
+         * @param score the remaining tries of the won game
+         */
+        public Entry(String username, int score) {
+            this.username = username;
+            this.score = score;
+        }
+
+        /**
+         * @return the name of the player
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * @return the remaining tries of the won game
+         */
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (score != other.score) {
+                return Integer.compare(other.score, score);
+            }
+            return username.compareTo(other.username);
+        }
+
+        /**
+         * @return the entry in the format of the toplist file: "score name"
+         */
+        @Override
+        public String toString() {
+            return score + " " + username;
+        }
+    }
+}
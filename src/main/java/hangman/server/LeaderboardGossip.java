@@ -0,0 +1,221 @@
+package hangman.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the {@link Leaderboard} of several servers in sync, so a cluster behind a
+ * load balancer shows the same toplist on every node.
+ * <br>
+ * Each node keeps its own toplist and its own file. Every change of the local toplist, whether a
+ * player won here or a peer told us, is collected as a delta of the best score per player. Once per
+ * interval the delta is sent to every peer as UDP datagrams, every {@link #FULL_EVERY}th time the whole
+ * toplist is sent instead, which repairs lost datagrams and brings new nodes up to date.
+ * A received entry is simply offered to the local toplist. The best score of a player and the
+ * best {@link Leaderboard#SIZE} players are the same no matter in which order or how often entries
+ * arrive, so all nodes end up with the same toplist without a shared lock or file.
+ * The games never wait for the network, a change only puts the score into a map.
+ * <br>
+ * A datagram is the int {@link #MAGIC} followed by entries of an int score and the UTF username.
+ * Only datagrams from the configured peers are taken.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class LeaderboardGossip implements Runnable {
+
+    /**
+     * Every how many rounds the whole toplist is sent instead of the changes
+     */
+    static final int FULL_EVERY = 10;
+
+    /**
+     * The size a datagram is cut at, so it fits into a single IP packet
+     */
+    static final int MAX_DATAGRAM = 1200;
+
+    private static final int MAGIC = 0x48474F53;
+
+    private Leaderboard leaderboard;
+    private DatagramSocket socket;
+    private List<InetSocketAddress> peers;
+    private Map<String, Integer> delta = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sender;
+    private Thread receiver;
+    private long rounds = 0;
+
+    private LongAdder sent = new LongAdder();
+    private LongAdder received = new LongAdder();
+    private LongAdder merged = new LongAdder();
+    private LongAdder ignored = new LongAdder();
+
+    /**
+     * Binds the UDP port and starts gossiping
+     * @param leaderboard the local toplist
+     * @param port the local UDP port, the peers send to it
+     * @param peers the addresses of the other nodes
+     * @param interval milliseconds between two rounds of gossip
+     * @throws SocketException if the port can't be bound
+     */
+    LeaderboardGossip(Leaderboard leaderboard, int port, List<InetSocketAddress> peers, long interval) throws SocketException {
+        this.leaderboard = leaderboard;
+        this.peers = peers;
+        this.socket = new DatagramSocket(port);
+        leaderboard.addListener(entry -> delta.merge(entry.getUsername(), entry.getScore(), Math::max));
+        this.receiver = new Thread(this, "leaderboard-gossip");
+        receiver.setDaemon(true);
+        receiver.start();
+        this.sender = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "leaderboard-gossip-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleWithFixedDelay(this::gossip, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the local UDP port
+     */
+    int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Sends the changes since the last round, or the whole toplist every {@link #FULL_EVERY} rounds
+     */
+    private void gossip() {
+        List<Leaderboard.Entry> entries = (rounds++ % FULL_EVERY == 0) ? leaderboard.getEntries() : drainDelta();
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            for (byte[] datagram : encode(entries)) {
+                for (InetSocketAddress peer : peers) {
+                    socket.send(new DatagramPacket(datagram, datagram.length, peer));
+                    sent.increment();
+                }
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                Log.warn("Can't gossip the toplist: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the changes since the last round, they are removed from the delta
+     */
+    private List<Leaderboard.Entry> drainDelta() {
+        List<Leaderboard.Entry> entries = new ArrayList<>();
+        for (String username : delta.keySet()) {
+            Integer score = delta.remove(username);
+            if (score != null) {
+                entries.add(new Leaderboard.Entry(username, score));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Packs the entries into as few datagrams as possible
+     * @param entries the entries to send
+     * @return the datagrams, none of them bigger than {@link #MAX_DATAGRAM} unless a single entry is
+     * @throws IOException never, everything is written into memory
+     */
+    static List<byte[]> encode(List<Leaderboard.Entry> entries) throws IOException {
+        List<byte[]> datagrams = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_DATAGRAM);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        for (Leaderboard.Entry entry : entries) {
+            int before = bytes.size();
+            out.writeInt(entry.getScore());
+            out.writeUTF(entry.getUsername());
+            if (bytes.size() > MAX_DATAGRAM && before > Integer.BYTES) {
+                byte[] full = bytes.toByteArray();
+                datagrams.add(Arrays.copyOf(full, before));
+                bytes.reset();
+                out.writeInt(MAGIC);
+                out.write(full, before, full.length - before);
+            }
+        }
+        if (bytes.size() > Integer.BYTES) {
+            datagrams.add(bytes.toByteArray());
+        }
+        return datagrams;
+    }
+
+    /**
+     * Receives the datagrams of the peers and offers their entries to the local toplist
+     * until the socket is closed
+     */
+    @Override
+    public void run() {
+        byte[] buffer = new byte[65536];
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                break;
+            }
+            if (!peers.contains(packet.getSocketAddress())) {
+                ignored.increment();
+                continue;
+            }
+            received.increment();
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.getData(), packet.getOffset(), packet.getLength()))) {
+                if (in.readInt() != MAGIC) {
+                    ignored.increment();
+                    continue;
+                }
+                while (in.available() > 0) {
+                    int score = in.readInt();
+                    if (leaderboard.offer(in.readUTF(), score)) {
+                        merged.increment();
+                    }
+                }
+            } catch (IOException e) {
+                ignored.increment();
+            }
+        }
+    }
+
+    /**
+     * @return the counters as one line of text
+     */
+    String report() {
+        return String.format("cluster port=%d peers=%d sent=%d received=%d merged=%d ignored=%d%n",
+                getPort(), peers.size(), sent.sum(), received.sum(), merged.sum(), ignored.sum());
+    }
+
+    /**
+     * Sends the last changes and closes the socket
+     */
+    void close() {
+        sender.shutdown();
+        try {
+            sender.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rounds = 1;
+        gossip();
+        socket.close();
+    }
+}
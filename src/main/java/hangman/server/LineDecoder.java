@@ -0,0 +1,54 @@
+package hangman.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Collects the bytes of a non blocking channel into UTF-8 lines.
+ * A line can arrive in several reads, the bytes of an incomplete line
+ * are kept until its line break is there.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class LineDecoder implements MessageDecoder {
+
+    /**
+     * The longest line a client may send, everything longer is considered an attack
+     */
+    static final int MAX_LINE_LENGTH = 8192;
+
+    private byte[] line = new byte[32];
+    private int lineLength = 0;
+
+    /**
+     * Reads from the buffer until the next line break
+     * @param buffer the bytes read from the channel, positioned after the returned line
+     * @return the next complete line without its line break, null if the buffer ends before one
+     * @throws IOException if the line is longer than {@link #MAX_LINE_LENGTH}
+     */
+    @Override
+    public String next(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                int length = lineLength;
+                if (length > 0 && line[length - 1] == '\r') {
+                    length--;
+                }
+                lineLength = 0;
+                return new String(line, 0, length, StandardCharsets.UTF_8);
+            }
+            if (lineLength == line.length) {
+                if (line.length >= MAX_LINE_LENGTH) {
+                    throw new IOException("Line longer than " + MAX_LINE_LENGTH + " bytes");
+                }
+                byte[] bigger = new byte[line.length * 2];
+                System.arraycopy(line, 0, bigger, 0, lineLength);
+                line = bigger;
+            }
+            line[lineLength++] = b;
+        }
+        return null;
+    }
+}
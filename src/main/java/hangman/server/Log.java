@@ -0,0 +1,354 @@
+package hangman.server;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The log of the server, written by a single background thread.
+ * <br>
+ * Logging a line only checks its level and puts the template and its arguments into a preallocated
+ * slot of a ring buffer, formatting and printing happen on the writer thread. So the accept loop,
+ * the games and the lock of the toplist never wait for System.out. If the buffer is full because the
+ * terminal can't keep up, the line is dropped and counted instead of waiting for a free slot.
+ * <br>
+ * Templates use {} for their arguments, e.g. <code>Log.info("Reloaded {} words", size)</code>.
+ * A Throwable which isn't used by the template is printed with its stack trace.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+final class Log implements Runnable {
+
+    /**
+     * How important a line is, lines below the level of the log are ignored
+     */
+    enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    /**
+     * The number of lines the buffer holds before lines are dropped
+     */
+    static final int CAPACITY = 4096;
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final Log LOG = new Log(CAPACITY, System.out);
+
+    private Slot[] slots;
+    private int mask;
+    private AtomicLong head = new AtomicLong();
+    private volatile long tail = 0;
+    private volatile long printed = 0;
+    private volatile boolean idle = false;
+    private volatile Level level = Level.INFO;
+    private PrintStream out;
+    private Thread writer;
+
+    private LongAdder written = new LongAdder();
+    private LongAdder dropped = new LongAdder();
+
+    /**
+     * Initialize the buffer and start the writer thread
+     * @param capacity the number of lines the buffer holds, rounded up to a power of two
+     * @param out where the lines are printed
+     */
+    Log(int capacity, PrintStream out) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.out = out;
+        this.writer = new Thread(this, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @param level the lowest level which is printed
+     */
+    static void setLevel(Level level) {
+        LOG.level = level;
+    }
+
+    /**
+     * @param level a level
+     * @return true if lines of the level are printed, so expensive arguments only have to be built then
+     */
+    static boolean isEnabled(Level level) {
+        return level.ordinal() >= LOG.level.ordinal();
+    }
+
+    /**
+     * Logs a line of level DEBUG
+     * @param message the line
+     */
+    static void debug(String message) {
+        LOG.log(Level.DEBUG, message, null, null, null);
+    }
+
+    /**
+     * Logs a line of level DEBUG
+     * @param template the line with a {} for the argument
+     * @param first the argument
+     */
+    static void debug(String template, Object first) {
+        LOG.log(Level.DEBUG, template, first, null, null);
+    }
+
+    /**
+     * Logs a line of level DEBUG
+     * @param template the line with a {} for each argument
+     * @param first the first argument
+     * @param second the second argument
+     */
+    static void debug(String template, Object first, Object second) {
+        LOG.log(Level.DEBUG, template, first, second, null);
+    }
+
+    /**
+     * Logs a line of level INFO
+     * @param message the line
+     */
+    static void info(String message) {
+        LOG.log(Level.INFO, message, null, null, null);
+    }
+
+    /**
+     * Logs a line of level INFO
+     * @param template the line with a {} for the argument
+     * @param first the argument
+     */
+    static void info(String template, Object first) {
+        LOG.log(Level.INFO, template, first, null, null);
+    }
+
+    /**
+     * Logs a line of level INFO
+     * @param template the line with a {} for each argument
+     * @param first the first argument
+     * @param second the second argument
+     */
+    static void info(String template, Object first, Object second) {
+        LOG.log(Level.INFO, template, first, second, null);
+    }
+
+    /**
+     * Logs a line of level INFO
+     * @param template the line with a {} for each argument
+     * @param first the first argument
+     * @param second the second argument
+     * @param third the third argument
+     */
+    static void info(String template, Object first, Object second, Object third) {
+        LOG.log(Level.INFO, template, first, second, third);
+    }
+
+    /**
+     * Logs a line of level WARN
+     * @param message the line
+     */
+    static void warn(String message) {
+        LOG.log(Level.WARN, message, null, null, null);
+    }
+
+    /**
+     * Logs a line of level WARN
+     * @param template the line with a {} for the argument
+     * @param first the argument
+     */
+    static void warn(String template, Object first) {
+        LOG.log(Level.WARN, template, first, null, null);
+    }
+
+    /**
+     * Logs a line of level WARN
+     * @param template the line with a {} for each argument
+     * @param first the first argument
+     * @param second the second argument
+     */
+    static void warn(String template, Object first, Object second) {
+        LOG.log(Level.WARN, template, first, second, null);
+    }
+
+    /**
+     * Logs a line of level ERROR
+     * @param message the line
+     */
+    static void error(String message) {
+        LOG.log(Level.ERROR, message, null, null, null);
+    }
+
+    /**
+     * Logs a line of level ERROR
+     * @param template the line with a {} for the argument
+     * @param first the argument
+     */
+    static void error(String template, Object first) {
+        LOG.log(Level.ERROR, template, first, null, null);
+    }
+
+    /**
+     * Logs a line of level ERROR
+     * @param template the line with a {} for each argument
+     * @param first the first argument
+     * @param second the second argument
+     */
+    static void error(String template, Object first, Object second) {
+        LOG.log(Level.ERROR, template, first, second, null);
+    }
+
+    /**
+     * Waits until every line logged so far is printed
+     * @param timeoutMillis how long to wait at most
+     */
+    static void flush(long timeoutMillis) {
+        LOG.awaitWritten(timeoutMillis);
+    }
+
+    /**
+     * @return the counters as one line of text
+     */
+    static String report() {
+        return String.format("log level=%s written=%d dropped=%d%n", LOG.level, LOG.written.sum(), LOG.dropped.sum());
+    }
+
+    /**
+     * Claims a slot and fills it, or drops the line if the buffer is full. May be called from any thread.
+     * @param level the level of the line
+     * @param template the message with a {} for every argument
+     * @param first the first argument, may be null
+     * @param second the second argument, may be null
+     * @param third the third argument, may be null
+     */
+    void log(Level level, String template, Object first, Object second, Object third) {
+        if (level.ordinal() < this.level.ordinal()) {
+            return;
+        }
+        long claimed;
+        do {
+            claimed = head.get();
+            if (claimed - tail >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(claimed, claimed + 1));
+        Slot slot = slots[(int) claimed & mask];
+        slot.level = level;
+        slot.time = System.currentTimeMillis();
+        slot.thread = Thread.currentThread().getName();
+        slot.template = template;
+        slot.first = first;
+        slot.second = second;
+        slot.third = third;
+        slot.sequence = claimed + 1;
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Prints the lines in the order their slots were claimed. A batch of lines is printed at once,
+     * when the buffer is empty the writer sleeps until the next line is logged.
+     */
+    @Override
+    public void run() {
+        StringBuilder batch = new StringBuilder(4096);
+        while (true) {
+            Slot slot = slots[(int) tail & mask];
+            if (slot.sequence != tail + 1) {
+                if (batch.length() > 0) {
+                    out.print(batch);
+                    out.flush();
+                    batch.setLength(0);
+                    printed = tail;
+                }
+                idle = true;
+                if (slot.sequence != tail + 1) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                }
+                idle = false;
+                continue;
+            }
+            format(slot, batch);
+            slot.template = null;
+            slot.first = null;
+            slot.second = null;
+            slot.third = null;
+            tail = tail + 1;
+            written.increment();
+            if (batch.length() >= 4096) {
+                out.print(batch);
+                batch.setLength(0);
+                printed = tail;
+            }
+        }
+    }
+
+    /**
+     * Appends the line of a slot in the format <code>12:00:00.000 INFO  [thread] message</code>
+     * @param slot a filled slot
+     * @param line where the line is appended
+     */
+    private static void format(Slot slot, StringBuilder line) {
+        TIME.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(slot.time), ZoneId.systemDefault()), line);
+        line.append(' ').append(slot.level);
+        if (slot.level.name().length() == 4) {
+            line.append(' ');
+        }
+        line.append(" [").append(slot.thread).append("] ");
+        Object[] args = {slot.first, slot.second, slot.third};
+        int used = 0;
+        String template = slot.template;
+        int from = 0;
+        int at;
+        while (used < args.length && (at = template.indexOf("{}", from)) != -1) {
+            line.append(template, from, at).append(args[used++]);
+            from = at + 2;
+        }
+        line.append(template, from, template.length()).append(System.lineSeparator());
+        for (int i = used; i < args.length; i++) {
+            if (args[i] instanceof Throwable) {
+                StringWriter trace = new StringWriter();
+                ((Throwable) args[i]).printStackTrace(new PrintWriter(trace));
+                line.append(trace);
+            }
+        }
+    }
+
+    /**
+     * Waits until every line logged so far is printed by this log
+     * @param timeoutMillis how long to wait at most
+     */
+    void awaitWritten(long timeoutMillis) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long last = head.get();
+        while (printed < last && System.nanoTime() - end < 0) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * A line waiting in the buffer, sequence tells the writer that it is filled
+     */
+    private static class Slot {
+        private volatile long sequence = 0;
+        private Level level;
+        private long time;
+        private String thread;
+        private String template;
+        private Object first;
+        private Object second;
+        private Object third;
+    }
+}
@@ -0,0 +1,22 @@
+package hangman.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Collects the bytes of a non blocking channel into the messages of a client.
+ * A message can arrive in several reads, the bytes of an incomplete message
+ * are kept until the rest of it is there.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+interface MessageDecoder {
+
+    /**
+     * Reads from the buffer until the end of the next message
+     * @param buffer the bytes read from the channel, positioned after the returned message
+     * @return the next complete message, null if the buffer ends before one
+     * @throws IOException if the client sends something which isn't a valid message
+     */
+    String next(ByteBuffer buffer) throws IOException;
+}
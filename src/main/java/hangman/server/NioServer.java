@@ -0,0 +1,611 @@
+package hangman.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every game of a {@link Server} on a small fixed number of
+ * {@link EventLoop}s with non blocking channels, instead of parking
+ * one thread per player in a blocking read.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class NioServer {
+
+    private Server server;
+    private EventLoop[] loops;
+    private ExecutorService executorService;
+    private AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Initialize the event loops, they are started with {@link #run(ServerSocketChannel)}
+     * @param server the server which provides the words and the toplist
+     * @param eventLoops the number of selector threads
+     * @throws IOException if a selector can't be opened
+     */
+    NioServer(Server server, int eventLoops) throws IOException {
+        this.server = server;
+        this.loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) {
+            loops[i] = new EventLoop(server);
+        }
+        this.executorService = Executors.newFixedThreadPool(eventLoops);
+    }
+
+    /**
+     * Starts the event loops and accepts new players on the calling thread until the channel gets closed.
+     * Every accepted player is offered to the admission control.
+     * @param serverChannel the bound channel on which players connect
+     * @param admission decides which players may start a game, it calls {@link #start(SocketChannel)} for them
+     */
+    void run(ServerSocketChannel serverChannel, AdmissionControl<SocketChannel> admission) {
+        for (EventLoop loop : loops) {
+            executorService.execute(loop);
+        }
+        while (server.isListening()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                Log.error("Can't accept a new player", e);
+                continue;
+            }
+            server.getMetrics().accepted();
+            if (!server.getRateLimiter().allowConnection(channel.socket().getInetAddress())) {
+                server.reject(channel);
+                continue;
+            }
+            admission.offer(channel);
+        }
+    }
+
+    /**
+     * Hands an admitted player to the next event loop round robin, may be called from any thread
+     * @param channel the channel of the player, still in blocking mode
+     */
+    void start(SocketChannel channel) {
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to clean up
+            }
+            server.getAdmission().closed(false);
+            return;
+        }
+        loops[Math.floorMod(next.getAndIncrement(), loops.length)].register(channel);
+    }
+
+    /**
+     * Clean shutdown of all event loops, waits until every open game is finished
+     */
+    void shutdown() {
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+/**
+ * A single selector thread, reading the lines of all its players,
+ * driving their games and writing the answers back.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class EventLoop implements Runnable {
+
+    private Server server;
+    private Selector selector;
+    private Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+    private Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * 1024);
+    private volatile boolean running = true;
+
+    /**
+     * Initialize the event loop
+     * @param server the server which provides the words and the toplist
+     * @throws IOException if the selector can't be opened
+     */
+    EventLoop(Server server) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Hands a new player to this event loop, may be called from any thread
+     * @param channel the non blocking channel of the player
+     */
+    void register(SocketChannel channel) {
+        registrations.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * Runs the task on the thread of this loop, may be called from any thread
+     * @param task the task, it must not block
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Selects ready channels until {@link #shutdown()} is called.
+     * The read buffer is shared by all players of this loop, so an idle player
+     * only costs its {@link NioSession} and its {@link Hangman}
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                Log.error("The event loop failed", e);
+                break;
+            }
+            SocketChannel channel;
+            while ((channel = registrations.poll()) != null) {
+                try {
+                    NioSession session = new NioSession(channel, server, this);
+                    session.setKey(channel.register(selector, SelectionKey.OP_READ, session));
+                    server.getSessions().register(session);
+                } catch (ClosedChannelException e) {
+                    // the player left before he was registered
+                    server.getAdmission().closed(false);
+                }
+            }
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                NioSession session = (NioSession) key.attachment();
+                try {
+                    if (key.isValid() && key.isReadable()) {
+                        session.read(readBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        session.flush();
+                    }
+                } catch (IOException e) {
+                    session.close();
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            ((NioSession) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            Log.error("Can't close the selector", e);
+        }
+    }
+
+    /**
+     * Stops the loop, all open games are closed by the loop thread itself
+     */
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+}
+
+/**
+ * The state of one player in a {@link EventLoop}.<br>
+ * Incoming bytes are collected until a whole message is there, a client which sends
+ * faster than its message rate isn't read from until he has tokens again,
+ * outgoing messages are only buffered if the socket can't take them right away.
+ * It is registered at the {@link SessionRegistry} of the server until it is closed.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class NioSession implements SessionRegistry.Session {
+
+    private SocketChannel channel;
+    private SelectionKey key;
+    private Server server;
+    private EventLoop loop;
+
+    private MessageDecoder decoder = new LineDecoder();
+    private ByteBuffer pending;
+    private OutputStream output = new PendingOutput();
+    private boolean closing = false;
+
+    private Protocol protocol;
+    private Races.Seat seat;
+    private boolean finished = false;
+    private long created = System.nanoTime();
+    private boolean closed = false;
+    private RateLimiter.Bucket messages;
+    private boolean paused = false;
+    private ByteBuffer unread;
+    private String held;
+    private volatile long lastActivity = created;
+    private volatile boolean started = false;
+
+    /**
+     * Initialize the session, the game starts as soon as the username was received
+     * @param channel the non blocking channel of the player
+     * @param server the server which provides the words and the toplist
+     * @param loop the event loop the session belongs to
+     */
+    NioSession(SocketChannel channel, Server server, EventLoop loop) {
+        this.channel = channel;
+        this.server = server;
+        this.loop = loop;
+        this.messages = server.getRateLimiter().messages(channel.socket().getInetAddress());
+    }
+
+    /**
+     * @param key the key with which the channel is registered at the selector
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Reads everything available and handles every complete message the message rate allows.
+     * The answers to all messages a client pipelined are written with a single {@link #flush()}
+     * @param buffer the buffer of the event loop, it is only used during this call
+     * @throws IOException if reading or writing fails or the client sends an invalid message
+     */
+    void read(ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int read = channel.read(buffer);
+        if (read == -1) {
+            close();
+            return;
+        }
+        lastActivity = System.nanoTime();
+        buffer.flip();
+        decode(buffer);
+        flush();
+    }
+
+    /**
+     * Handles the complete messages in the buffer, every message of the game takes a token of the message rate.
+     * The first message over the rate is {@link #held} and the session pauses, if it has to wait for that or
+     * for the room of its game, the rest of the buffer is kept in {@link #unread} until it goes on.
+     * @param buffer the bytes read from the channel, or the ones kept before
+     * @throws IOException if writing fails or the client sends an invalid message
+     */
+    private void decode(ByteBuffer buffer) throws IOException {
+        String msg;
+        while (!closing && !paused && (msg = decoder.next(buffer)) != null) {
+            long delay = protocol != null ? messages.delay(true) : 0;
+            if (delay > 0) {
+                // the token is reserved already, so the message is handled without asking again
+                held = msg;
+                pause(delay);
+            } else {
+                onLine(msg);
+            }
+        }
+        if (buffer == unread) {
+            if (!unread.hasRemaining()) {
+                unread = null;
+            }
+        } else if (paused && buffer.hasRemaining()) {
+            unread = ByteBuffer.allocate(buffer.remaining());
+            unread.put(buffer).flip();
+        }
+    }
+
+    /**
+     * Stops reading from a client which sent faster than its message rate,
+     * his further messages wait in the socket until his held message is due
+     * @param nanos how long to wait
+     */
+    private void pause(long nanos) {
+        server.getRateLimiter().throttledMessage();
+        paused = true;
+        if (key.isValid()) {
+            key.interestOps(pending != null ? SelectionKey.OP_WRITE : 0);
+        }
+        server.getSessions().getWheel().schedule(() -> loop.execute(this::resume), TimeUnit.NANOSECONDS.toMillis(nanos) + 1);
+    }
+
+    /**
+     * Goes on after a {@link #pause(long)} or after the room was loaded: the held message and
+     * the kept bytes are handled first, then the client is read from again
+     */
+    private void resume() {
+        paused = false;
+        if (closed) {
+            return;
+        }
+        try {
+            if (held != null) {
+                String msg = held;
+                held = null;
+                onLine(msg);
+            }
+            if (unread != null) {
+                decode(unread);
+            }
+            flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * The first line has to be the username, every other message is passed to the game.
+     * If the client asked for the binary protocol, frames are decoded after the first line.
+     * While the room of the game is loaded nothing is read from the client.
+     * @param msg the message without the line break
+     * @throws IOException if writing fails
+     */
+    private void onLine(String msg) throws IOException {
+        if (protocol == null) {
+            boolean binary;
+            CompletableFuture<Protocol> game;
+            try {
+                Handshake handshake = new Handshake(msg);
+                binary = handshake.isBinary();
+                game = server.startGame(handshake, output);
+            } catch (IllegalArgumentException e) {
+                closing = true;
+                return;
+            }
+            if (binary) {
+                decoder = new FrameDecoder();
+            }
+            if (game.isDone()) {
+                begin(game, binary);
+            } else {
+                paused = true;
+                game.whenComplete((ready, failure) -> loop.execute(() -> loaded(game, binary)));
+            }
+        } else if (protocol.handle(msg)) {
+            finished = true;
+            protocol.finish();
+            closing = true;
+        }
+    }
+
+    /**
+     * Starts the game of the client, unless his room couldn't be loaded
+     * @param game the protocol of the game, it is done already
+     * @param binary true if the client asked for the binary protocol
+     * @throws IOException if writing fails
+     */
+    private void begin(CompletableFuture<Protocol> game, boolean binary) throws IOException {
+        try {
+            protocol = game.join();
+            if (protocol.isRace()) {
+                seat = new NioSeat(binary);
+                ((RaceProtocol) protocol).join(seat);
+            }
+        } catch (CompletionException | IllegalArgumentException e) {
+            closing = true;
+            return;
+        }
+        protocol.start();
+        started = true;
+        server.getAdmission().started();
+        server.getMetrics().handshake(System.nanoTime() - created);
+    }
+
+    /**
+     * Starts the game once the room was loaded and handles what the client sent in the meantime.
+     * If he already left, the room is given back right away.
+     * @param game the protocol of the game, it is done already
+     * @param binary true if the client asked for the binary protocol
+     */
+    private void loaded(CompletableFuture<Protocol> game, boolean binary) {
+        if (closed) {
+            try {
+                game.join().finish();
+            } catch (CompletionException | IOException e) {
+                // the room couldn't be loaded or the player is gone anyways
+            }
+            return;
+        }
+        try {
+            begin(game, binary);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        resume();
+    }
+
+    /**
+     * Queues bytes to be sent, they are written with the next {@link #flush()}
+     * @param bytes the array with the bytes
+     * @param offset the first byte to send
+     * @param length the number of bytes to send
+     */
+    private void write(byte[] bytes, int offset, int length) {
+        if (pending == null) {
+            pending = ByteBuffer.allocate(Math.max(256, length));
+        } else if (pending.remaining() < length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        pending.put(bytes, offset, length);
+    }
+
+    /**
+     * Writes as much of the queued bytes as the socket takes. If something is left
+     * the selector is told to wait until the channel is writable again.
+     * A racer gets the latest state of his race once everything before it is written,
+     * so he never has more than one state queued.
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        while (true) {
+            if (pending != null) {
+                pending.flip();
+                channel.write(pending);
+                if (pending.hasRemaining()) {
+                    pending.compact();
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                pending = null;
+            }
+            byte[] state = seat != null && !closing ? seat.take() : null;
+            if (state == null) {
+                break;
+            }
+            write(state, 0, state.length);
+        }
+        if (seat != null) {
+            seat.sent();
+        }
+        if (closing) {
+            close();
+        } else if (key.isValid()) {
+            key.interestOps(paused ? 0 : SelectionKey.OP_READ);
+        }
+    }
+
+    @Override
+    public long getCreated() {
+        return created;
+    }
+
+    @Override
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Closes the session on the thread of its event loop
+     */
+    @Override
+    public void expire() {
+        loop.execute(this::close);
+    }
+
+    /**
+     * Clean shutdown of the session. If the game wasn't over the player is still checked
+     * for the highscore, or his game is saved if the server shuts down, and he is told that
+     * the connection will be closed.
+     * Calling it again does nothing.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        server.getSessions().deregister(this);
+        server.getAdmission().closed(started);
+        if (protocol != null && !finished) {
+            finished = true;
+            try {
+                server.endGame(protocol);
+            } catch (IOException e) {
+                // the answers are only queued, this never happens
+            }
+            if (pending != null && channel.isOpen()) {
+                pending.flip();
+                try {
+                    channel.write(pending);
+                } catch (IOException e) {
+                    // the player is gone anyways
+                }
+            }
+        }
+        pending = null;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.error("Can't close the connection of a player", e);
+        }
+    }
+
+    /**
+     * Writes the state a race just handed to the seat, unless the answers before it are still queued
+     */
+    private void deliver() {
+        if (closed || pending != null) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * The seat of the session in a race, the states are written on the thread of the event loop
+     */
+    private class NioSeat extends Races.Seat {
+
+        /**
+         * @param binary true if the player gets frames instead of text lines
+         */
+        private NioSeat(boolean binary) {
+            super(binary);
+        }
+
+        @Override
+        protected void wakeup() {
+            loop.execute(NioSession.this::deliver);
+        }
+
+        @Override
+        protected void drop() {
+            expire();
+        }
+    }
+
+    /**
+     * The stream the {@link Replies} of the game write to, everything is queued in {@link #pending}
+     */
+    private class PendingOutput extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            NioSession.this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            NioSession.this.write(bytes, offset, length);
+        }
+    }
+}
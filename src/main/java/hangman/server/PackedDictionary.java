@@ -0,0 +1,290 @@
+package hangman.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@link WordDictionary} storing all words as UTF-8 bytes in one buffer,
+ * with an index of where each word starts. There are no String objects
+ * until a word is picked, then only that word is decoded.
+ * <br>
+ * A prebuilt dictionary file (".dict") has the layout
+ * <pre>
+ * int magic, int version, int count, int[count + 1] offsets, int[count] byHardness, byte[] words
+ * </pre>
+ * and is mapped with {@link FileChannel#map}, so loading it doesn't read the words at all.
+ * The indices of the words sorted by their hardness are computed when the file is built,
+ * so the {@link WordCatalog} doesn't have to score every word again when it is mapped.
+ * Build one out of a word list with <code>gradle buildDictionary --args "words.txt words.dict"</code>.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class PackedDictionary implements WordDictionary {
+
+    private static final int MAGIC = 0x48414E47;
+    private static final int VERSION = 2;
+    private static final int HEADER = 12;
+
+    private ByteBuffer words;
+    private IntBuffer offsets;
+    private IntBuffer byHardness;
+    private int size;
+
+    /**
+     * Initialize with already packed words
+     * @param words the UTF-8 bytes of all words
+     * @param offsets size + 1 offsets, word i are the bytes from offsets[i] to offsets[i + 1]
+     * @param byHardness the indices of the words sorted by their hardness, null to score them now
+     */
+    private PackedDictionary(ByteBuffer words, IntBuffer offsets, IntBuffer byHardness) {
+        this.words = words;
+        this.offsets = offsets;
+        this.size = offsets.limit() - 1;
+        this.byHardness = byHardness != null ? byHardness : IntBuffer.wrap(WordCatalog.sortByHardness(this));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String get(int index) {
+        int start = offsets.get(index);
+        byte[] bytes = new byte[offsets.get(index + 1) - start];
+        ByteBuffer word = words.duplicate();
+        word.position(start);
+        word.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int[] byHardness() {
+        int[] indices = new int[size];
+        byHardness.duplicate().get(indices);
+        return indices;
+    }
+
+    /**
+     * @param path a file
+     * @return true if the file is a dictionary file of the current version
+     */
+    public static boolean isCurrent(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // reads the magic and the version
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads a dictionary, prebuilt ".dict" files are mapped, every other file is read as a word list
+     * @param path the dictionary or the word list with one word per line
+     * @return the loaded dictionary
+     * @throws IOException if the file can't be read or is a broken dictionary file
+     */
+    public static PackedDictionary load(Path path) throws IOException {
+        if (path.toString().endsWith(".dict")) {
+            return map(path);
+        }
+        return read(path);
+    }
+
+    /**
+     * Maps a prebuilt dictionary file into memory
+     * @param path the ".dict" file
+     * @return the dictionary backed by the mapped file
+     * @throws IOException if the file can't be mapped, is no dictionary file or is truncated
+     */
+    public static PackedDictionary map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (file.limit() < HEADER || file.getInt(0) != MAGIC) {
+                throw new IOException(path + " is no dictionary file");
+            }
+            if (file.getInt(4) != VERSION) {
+                throw new IOException(path + " is a dictionary file of version " + file.getInt(4) + " instead of " + VERSION);
+            }
+            int count = file.getInt(8);
+            if (count < 0 || HEADER + (2L * count + 1) * 4 > file.limit()) {
+                throw new IOException(path + " is truncated, its index of " + count + " words doesn't fit");
+            }
+            int orderStart = HEADER + (count + 1) * 4;
+            int wordsStart = orderStart + count * 4;
+            int first = file.getInt(HEADER);
+            int last = file.getInt(orderStart - 4);
+            if (first < 0 || last < first || last > file.limit() - wordsStart) {
+                throw new IOException(path + " is truncated, its words end at " + last
+                        + " but there are only " + (file.limit() - wordsStart) + " bytes");
+            }
+            file.position(HEADER).limit(orderStart);
+            IntBuffer offsets = file.slice().asIntBuffer();
+            file.limit(wordsStart).position(orderStart);
+            IntBuffer byHardness = file.slice().asIntBuffer();
+            file.limit(file.capacity()).position(wordsStart);
+            return new PackedDictionary(file.slice(), offsets, byHardness);
+        }
+    }
+
+    /**
+     * Reads a word list into a packed dictionary on the heap, its words are scored right away
+     * @param path the word list with one word per line
+     * @return the dictionary
+     * @throws IOException if the file can't be read
+     */
+    public static PackedDictionary read(Path path) throws IOException {
+        ByteArrayOutputStream words = new ByteArrayOutputStream();
+        int[] offsets;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            offsets = pack(in, words);
+        }
+        return new PackedDictionary(ByteBuffer.wrap(words.toByteArray()), IntBuffer.wrap(offsets), null);
+    }
+
+    /**
+     * Builds a dictionary file out of a word list. The words are streamed into a temporary
+     * file, so the list is never held in memory, and the result is renamed into place.
+     * The temporary file is mapped to score the words.
+     * @param wordList the word list with one word per line
+     * @param dictionary the ".dict" file which is written
+     * @throws IOException if reading or writing fails
+     */
+    public static void build(Path wordList, Path dictionary) throws IOException {
+        Path data = Paths.get(dictionary + ".data");
+        Path temporary = Paths.get(dictionary + ".tmp");
+        int[] offsets;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(wordList));
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(data))) {
+            offsets = pack(in, out);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            int[] byHardness;
+            try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+                ByteBuffer words = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                byHardness = new PackedDictionary(words, IntBuffer.wrap(offsets), null).byHardness();
+            }
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(offsets.length - 1);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int index : byHardness) {
+                out.writeInt(index);
+            }
+            Files.copy(data, out);
+        } finally {
+            Files.deleteIfExists(data);
+        }
+        Files.move(temporary, dictionary, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Splits the input into lines and writes every non empty, trimmed line to the output
+     * @param in the word list with one word per line
+     * @param out where the UTF-8 bytes of the words are written to
+     * @return the offsets of the words in the output, with the end of the last word as last element
+     * @throws IOException if reading or writing fails
+     */
+    private static int[] pack(InputStream in, OutputStream out) throws IOException {
+        int[] offsets = new int[1024];
+        int count = 0;
+        int written = 0;
+        byte[] buffer = new byte[64 * 1024];
+        byte[] line = new byte[64];
+        int length = 0;
+        while (true) {
+            int read = in.read(buffer);
+            if (read == -1) {
+                if (length == 0) break;
+                // the last line has no line break, end it like every other one
+                buffer[0] = '\n';
+                read = 1;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != '\n') {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[length++] = buffer[i];
+                    continue;
+                }
+                int start = trimmedStart(line, length);
+                int end = trimmedEnd(line, start, length);
+                if (end > start) {
+                    if (count + 1 >= offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[count++] = written;
+                    out.write(line, start, end - start);
+                    written += end - start;
+                }
+                length = 0;
+            }
+        }
+        offsets[count] = written;
+        return Arrays.copyOf(offsets, count + 1);
+    }
+
+    /**
+     * @param line the bytes of a line
+     * @param length the length of the line
+     * @return the index of the first byte which is no whitespace or control character
+     */
+    private static int trimmedStart(byte[] line, int length) {
+        int start = 0;
+        while (start < length && (line[start] & 0xff) <= ' ') start++;
+        return start;
+    }
+
+    /**
+     * @param line the bytes of a line
+     * @param start the index of the first byte of the trimmed line
+     * @param length the length of the line
+     * @return the index after the last byte which is no whitespace or control character
+     */
+    private static int trimmedEnd(byte[] line, int start, int length) {
+        int end = length;
+        while (end > start && (line[end - 1] & 0xff) <= ' ') end--;
+        return end;
+    }
+
+    /**
+     * Builds a dictionary file out of a word list
+     * @param args the word list and the dictionary file in the format [words.txt, words.dict]
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: gradle buildDictionary --args=\"words.txt words.dict\"");
+            System.exit(1);
+        }
+        try {
+            long start = System.nanoTime();
+            build(Paths.get(args[0]), Paths.get(args[1]));
+            PackedDictionary dictionary = map(Paths.get(args[1]));
+            System.out.println("Packed " + dictionary.size() + " words in " + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package hangman.server;
+
+import java.io.IOException;
+
+/**
+ * The protocol of one connection, independent of how the messages get transported.
+ * The blocking {@link Game} as well as the non blocking {@link NioSession} only talk to this class,
+ * either to the {@link GameProtocol} of a player's own games or to the {@link RaceProtocol} of a race.
+ * <br>
+ * Answers are only sent with {@link #flush()}, so a transport can handle every message
+ * a client pipelined before it writes all the answers at once.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+abstract class Protocol {
+
+    protected Replies replies;
+    protected ServerMetrics metrics;
+    private Rooms.Room room;
+
+    /**
+     * @param replies where the answers are written to
+     * @param metrics where games and guesses are counted
+     */
+    Protocol(Replies replies, ServerMetrics metrics) {
+        this.replies = replies;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return true if the player races others on a shared word, then the transport has to
+     * {@link RaceProtocol#join(Races.Seat) join} him with a seat before the protocol starts
+     */
+    boolean isRace() {
+        return false;
+    }
+
+    /**
+     * @param room the room the games are played in, it is released when the protocol finishes
+     */
+    void setRoom(Rooms.Room room) {
+        this.room = room;
+    }
+
+    /**
+     * @return the name of the room the games are played in, empty for the lobby
+     */
+    String getRoomName() {
+        return room == null ? "" : room.getName();
+    }
+
+    /**
+     * Writes what the client gets right after his handshake
+     * @throws IOException if writing fails
+     */
+    abstract void start() throws IOException;
+
+    /**
+     * Handles one message of the client
+     * @param msg the message of the client
+     * @return true if the connection can be closed
+     * @throws IOException if writing fails
+     */
+    abstract boolean handle(String msg) throws IOException;
+
+    /**
+     * Sends every answer written so far
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        replies.flush();
+    }
+
+    /**
+     * Gives back the room and tells the client that the connection will be closed
+     * @throws IOException if writing fails
+     */
+    void finish() throws IOException {
+        if (room != null) {
+            room.release();
+            room = null;
+        }
+        replies.exit();
+        replies.flush();
+    }
+
+    /**
+     * Called instead of {@link #finish()} when the server shuts down, only a game of his own
+     * is saved for the player, so this just finishes the protocol
+     * @param saved where an unfinished game is saved
+     * @throws IOException if writing fails
+     */
+    void suspend(SavedGames saved) throws IOException {
+        finish();
+    }
+}
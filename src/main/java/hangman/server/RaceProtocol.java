@@ -0,0 +1,95 @@
+package hangman.server;
+
+import java.io.IOException;
+
+/**
+ * The protocol of a player in a race, see {@link Races}. There is no game of his own, every guess is applied to the
+ * word of the race and he is only answered with his remaining tries, like <code>[TRIES]9</code>. The masks reach him
+ * through his {@link Races.Seat} with the next tick, together with everybody else. A race isn't saved on shutdown.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class RaceProtocol extends Protocol {
+
+    private Races races;
+    private String key;
+    private WordCatalog catalog;
+    private Leaderboard leaderboard;
+    private String username;
+    private Races.Race race;
+    private Races.Seat seat;
+
+    /**
+     * Initialize the protocol, the player takes part once the transport gave him a seat
+     * @param races the races of the server
+     * @param key the race to join, the name of the room or an empty string for the lobby
+     * @param catalog the words a new race picks from
+     * @param leaderboard the toplist the winners are offered to
+     * @param username the name of the player
+     * @param replies where the answers are written to
+     * @param metrics where the guesses are counted
+     */
+    RaceProtocol(Races races, String key, WordCatalog catalog, Leaderboard leaderboard, String username,
+                 Replies replies, ServerMetrics metrics) {
+        super(replies, metrics);
+        this.races = races;
+        this.key = key;
+        this.catalog = catalog;
+        this.leaderboard = leaderboard;
+        this.username = username;
+    }
+
+    @Override
+    boolean isRace() {
+        return true;
+    }
+
+    /**
+     * Takes part in the race, called by the transport right after the handshake
+     * @param seat delivers the states of the race to this connection
+     */
+    void join(Races.Seat seat) {
+        this.seat = seat;
+        this.race = races.join(key, catalog, leaderboard, username, seat);
+    }
+
+    /**
+     * Tells the player his tries, the mask follows with the next tick
+     * @throws IOException if writing fails
+     */
+    @Override
+    void start() throws IOException {
+        replies.notice(Races.TRIES + Races.MAX_TRIES);
+    }
+
+    /**
+     * Applies a guess, a batch or an attempt to solve to the word of the race. There are no hints in a race.
+     * @param msg the message of the client
+     * @return false, a player races until he leaves
+     * @throws IOException if writing fails
+     */
+    @Override
+    boolean handle(String msg) throws IOException {
+        long begin = System.nanoTime();
+        if (msg.equals(GameProtocol.HINT)) {
+            replies.notice("[HINT]");
+        } else {
+            replies.notice(Races.TRIES + race.guess(seat, msg));
+        }
+        metrics.guess(System.nanoTime() - begin);
+        return false;
+    }
+
+    /**
+     * Leaves the race and tells the client that the connection will be closed
+     * @throws IOException if writing fails
+     */
+    @Override
+    void finish() throws IOException {
+        if (race != null) {
+            race.leave(seat);
+            race = null;
+        }
+        super.finish();
+    }
+}
@@ -0,0 +1,443 @@
+package hangman.server;
+
+import hangman.Frames;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The races of a server, where many players guess the same word at the same time.
+ * <br>
+ * A client joins the race of the lobby or of his room with <code>[MODE]race</code> in his handshake. A letter one
+ * player guesses is guessed for everybody, a miss only costs the player who guessed it a try. Whoever reveals the
+ * last letter or solves the word wins and is offered to the toplist. If every player is out of tries the word is
+ * lost. Either way the next word follows with the next tick.
+ * <br>
+ * The state isn't sent with every guess. A ticker thread looks at every race once per tick and, if something changed,
+ * encodes the state once as a text line and once as a frame, e.g. <code>[RACE]h_ll_ 12 lhe</code> with the mask, the
+ * number of players and the guessed letters. The same bytes are handed to the {@link Seat} of every player, which only
+ * keeps the latest state. A player who can't keep up skips the states in between instead of queueing them, so a slow
+ * player never holds up the others, and one who didn't take his state within the stall time is dropped.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class Races {
+
+    /**
+     * The prefix of the state of a running race, followed by the mask, the players and the guessed letters
+     */
+    static final String RUNNING = "[RACE]";
+
+    /**
+     * The prefix of the state of a won race, followed by the answer and the winner
+     */
+    static final String WON = "[RACE WON]";
+
+    /**
+     * The prefix of the state of a lost race, followed by the answer
+     */
+    static final String LOST = "[RACE LOST]";
+
+    /**
+     * The prefix of the answer to a guess, followed by the remaining tries of the player
+     */
+    static final String TRIES = "[TRIES]";
+
+    /**
+     * The tries every player has for a word
+     */
+    static final int MAX_TRIES = 10;
+
+    private Map<String, Race> races = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker;
+    private long stallNanos;
+
+    private LongAdder words = new LongAdder();
+    private LongAdder won = new LongAdder();
+    private LongAdder encoded = new LongAdder();
+    private LongAdder sent = new LongAdder();
+    private LongAdder skipped = new LongAdder();
+    private LongAdder dropped = new LongAdder();
+
+    /**
+     * Initialize the races and start the ticker
+     * @param tickMillis milliseconds between two broadcasts of a race
+     * @param stallMillis milliseconds a player may take to receive a state before he is dropped
+     */
+    Races(long tickMillis, long stallMillis) {
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "race-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Seats a player in a race, a new race is started if nobody races in the lobby or the room yet.
+     * May be called from any thread.
+     * @param key the name of the room, an empty string for the lobby
+     * @param catalog the words a new race picks from
+     * @param leaderboard the toplist the winners of a new race are offered to
+     * @param username the name of the player
+     * @param seat delivers the states of the race to the player
+     * @return the race the player joined, he has to {@link Race#leave(Seat) leave} it again
+     */
+    Race join(String key, WordCatalog catalog, Leaderboard leaderboard, String username, Seat seat) {
+        seat.username = username;
+        while (true) {
+            Race race = races.computeIfAbsent(key, k -> new Race(k, catalog, leaderboard));
+            if (race.join(seat)) {
+                return race;
+            }
+            // the last player left the race in the meantime, the next loop starts a new one
+        }
+    }
+
+    /**
+     * Broadcasts the changed races and drops the players who stalled, runs on the ticker thread
+     */
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            for (Race race : races.values()) {
+                race.tick(now);
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the ticker
+            Log.error("The races couldn't be broadcast", e);
+        }
+    }
+
+    /**
+     * @return the counters as one line of text
+     */
+    String report() {
+        int players = 0;
+        for (Race race : races.values()) {
+            players += race.seats.size();
+        }
+        return String.format("races open=%d players=%d words=%d won=%d encoded=%d sent=%d skipped=%d dropped=%d%n",
+                races.size(), players, words.sum(), won.sum(), encoded.sum(), sent.sum(), skipped.sum(), dropped.sum());
+    }
+
+    /**
+     * Stops the ticker, called on shutdown after every player left
+     */
+    void close() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * A single race and the players in it. A guess holds the lock of the race only for as long as it takes to
+     * apply it, the states are encoded and handed out by the ticker without it.
+     */
+    class Race {
+        private String key;
+        private WordCatalog catalog;
+        private Leaderboard leaderboard;
+        private Set<Seat> seats = ConcurrentHashMap.newKeySet();
+        private Hangman hangman;
+        private int generation = 0;
+        private int outOfTries = 0;
+        private String winner;
+        private boolean over = false;
+        private boolean dirty = false;
+        private boolean closed = false;
+
+        /**
+         * Starts the race with its first word
+         * @param key the name of the room, an empty string for the lobby
+         * @param catalog the words the race picks from
+         * @param leaderboard the toplist the winners are offered to
+         */
+        private Race(String key, WordCatalog catalog, Leaderboard leaderboard) {
+            this.key = key;
+            this.catalog = catalog;
+            this.leaderboard = leaderboard;
+            nextWord();
+        }
+
+        /**
+         * Picks the next word, every player gets his tries back with his next guess
+         */
+        private void nextWord() {
+            int word = catalog.pick(Difficulty.ANY);
+            String answer = catalog.word(word);
+            Log.info("The answer of the race in {} is: {}", key.isEmpty() ? "the lobby" : key, answer);
+            hangman = new Hangman(answer, MAX_TRIES, null, null);
+            hangman.setWord(catalog, word);
+            generation++;
+            outOfTries = 0;
+            winner = null;
+            over = false;
+            dirty = true;
+            words.increment();
+        }
+
+        /**
+         * @param seat the seat of the new player
+         * @return false if the race is over since the last player left, then a new one has to be started
+         */
+        private synchronized boolean join(Seat seat) {
+            if (closed) {
+                return false;
+            }
+            seats.add(seat);
+            dirty = true;
+            return true;
+        }
+
+        /**
+         * Takes the player out of the race, the last one closes it
+         * @param seat the seat of the player
+         */
+        synchronized void leave(Seat seat) {
+            if (!seats.remove(seat)) {
+                return;
+            }
+            if (seat.generation == generation && seat.tries == 0) {
+                outOfTries--;
+            }
+            dirty = true;
+            if (seats.isEmpty()) {
+                closed = true;
+                races.remove(key, this);
+            } else {
+                checkLost();
+            }
+        }
+
+        /**
+         * Applies the message of a player to the word. A single character is a guess, a {@link GameProtocol#BATCH}
+         * guesses its letters in order and a whole word is an attempt to solve, which costs a try if it is wrong.
+         * A letter which was guessed already costs nothing, somebody was faster.
+         * @param seat the seat of the player
+         * @param msg the message of the player
+         * @return the tries the player has left for this word
+         */
+        synchronized int guess(Seat seat, String msg) {
+            if (seat.generation != generation) {
+                seat.generation = generation;
+                seat.tries = MAX_TRIES;
+            }
+            if (msg.length() > 1 && msg.charAt(0) == GameProtocol.BATCH) {
+                for (int i = 1; i < msg.length() && !over && seat.tries > 0; i++) {
+                    guess(seat, msg.charAt(i));
+                }
+            } else if (msg.length() == 1) {
+                guess(seat, msg.charAt(0));
+            } else if (msg.length() > 1 && !over && seat.tries > 0) {
+                if (msg.equals(hangman.getAnswer())) {
+                    hangman.aufloesen(msg);
+                    won(seat);
+                } else {
+                    miss(seat);
+                }
+            }
+            return seat.tries;
+        }
+
+        /**
+         * @param seat the seat of the player
+         * @param c the letter he guessed
+         */
+        private void guess(Seat seat, char c) {
+            if (over || seat.tries == 0 || hangman.getGuessed().indexOf(c) != -1) {
+                return;
+            }
+            dirty = true;
+            if (!hangman.guess(c)) {
+                miss(seat);
+            } else if (hangman.isWon()) {
+                won(seat);
+            }
+        }
+
+        /**
+         * Takes a try from the player, the word is lost once nobody has one left
+         * @param seat the seat of the player
+         */
+        private void miss(Seat seat) {
+            if (--seat.tries == 0) {
+                outOfTries++;
+                checkLost();
+            }
+        }
+
+        /**
+         * Ends the word if every player is out of tries
+         */
+        private void checkLost() {
+            if (!over && outOfTries >= seats.size()) {
+                over = true;
+                dirty = true;
+            }
+        }
+
+        /**
+         * Ends the word and offers the player to the toplist with the tries he has left
+         * @param seat the seat of the winner
+         */
+        private void won(Seat seat) {
+            over = true;
+            dirty = true;
+            winner = seat.username;
+            won.increment();
+            if (leaderboard != null) {
+                leaderboard.offer(seat.username, seat.tries);
+            }
+        }
+
+        /**
+         * Broadcasts the state if it changed since the last tick and drops every player who stalled.
+         * A finished word is broadcast once, the next one follows with the next tick.
+         * @param now the time of the tick, from {@link System#nanoTime()}
+         */
+        private void tick(long now) {
+            String state = null;
+            synchronized (this) {
+                if (dirty) {
+                    dirty = false;
+                    state = state();
+                    if (over) {
+                        nextWord();
+                    }
+                }
+            }
+            if (state != null) {
+                broadcast(state);
+            }
+            for (Seat seat : seats) {
+                if (seat.isStalled(now, stallNanos) && !seat.dropped) {
+                    seat.dropped = true;
+                    dropped.increment();
+                    Log.debug("Dropping {} from the race, he didn't take the last state", seat.username);
+                    seat.drop();
+                }
+            }
+        }
+
+        /**
+         * @return the state of the race as one line of text
+         */
+        private String state() {
+            if (!over) {
+                return RUNNING + hangman.showObscuredAnswer() + " " + seats.size() + " " + hangman.getGuessed();
+            }
+            return winner != null ? WON + hangman.getAnswer() + " " + winner : LOST + hangman.getAnswer();
+        }
+
+        /**
+         * Encodes the state once per protocol and hands the same bytes to every seat
+         * @param state the state of the race
+         */
+        private void broadcast(String state) {
+            byte[] line = (state + "\n").getBytes(StandardCharsets.UTF_8);
+            byte[] frame;
+            try {
+                frame = Frames.encodeText(Frames.NOTICE, state);
+            } catch (IOException e) {
+                Log.warn("Can't send the state of the race in {}: {}", key, e.getMessage());
+                return;
+            }
+            encoded.add(2);
+            for (Seat seat : seats) {
+                if (seat.offer(seat.binary ? frame : line)) {
+                    skipped.increment();
+                }
+                sent.increment();
+            }
+        }
+    }
+
+    /**
+     * Where the states of a race are delivered to a single player. It holds only the latest state which wasn't
+     * taken yet, a newer one replaces it. The transport is woken up when a state arrives, it takes the state and
+     * tells the seat once it is written, so the ticker can tell a player who stalled.
+     */
+    abstract static class Seat {
+        private boolean binary;
+        private AtomicReference<byte[]> next = new AtomicReference<>();
+        private volatile long busySince = 0;
+        private volatile boolean dropped = false;
+        private String username;
+        private int generation = 0;
+        private int tries = MAX_TRIES;
+
+        /**
+         * @param binary true if the player gets frames instead of text lines
+         */
+        Seat(boolean binary) {
+            this.binary = binary;
+        }
+
+        /**
+         * @param state the encoded state
+         * @return true if a state was replaced, which the player will never see
+         */
+        private boolean offer(byte[] state) {
+            byte[] replaced = next.getAndSet(state);
+            if (replaced == null) {
+                wakeup();
+            }
+            return replaced != null;
+        }
+
+        /**
+         * Takes the latest state to write it, from then on the seat is busy until {@link #sent()}
+         * @return the state, null if there is none
+         */
+        final byte[] take() {
+            byte[] state = next.getAndSet(null);
+            if (state != null && busySince == 0) {
+                busySince = System.nanoTime();
+            }
+            return state;
+        }
+
+        /**
+         * @return true if a state waits to be taken
+         */
+        final boolean hasNext() {
+            return next.get() != null;
+        }
+
+        /**
+         * Tells the seat that every state taken so far is written
+         */
+        final void sent() {
+            busySince = 0;
+        }
+
+        /**
+         * @param now the current time, from {@link System#nanoTime()}
+         * @param stallNanos how long writing a state may take
+         * @return true if the states taken were not written within the stall time
+         */
+        private boolean isStalled(long now, long stallNanos) {
+            long since = busySince;
+            return since != 0 && now - since > stallNanos;
+        }
+
+        /**
+         * Called on the ticker thread when a state arrives and the last one was taken already,
+         * the transport has to take the state soon without blocking the ticker
+         */
+        protected abstract void wakeup();
+
+        /**
+         * Closes the connection of a player who stalled, the transport leaves the race like on any other disconnect
+         */
+        protected abstract void drop();
+    }
+}
@@ -0,0 +1,152 @@
+package hangman.server;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets per remote address, one for new connections and one for the messages
+ * of all connections of the address.
+ * <br>
+ * The buckets are kept in a map of at most {@link ServerOptions#getRateLimitAddresses()} addresses,
+ * the address which wasn't seen for the longest time is evicted first. So memory stays the same
+ * no matter how many addresses connect. The map is only looked up when a connection is accepted,
+ * a session keeps its message bucket, so checking a message is a single compare and set.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class RateLimiter {
+
+    private long connectionInterval;
+    private long connectionTolerance;
+    private long messageInterval;
+    private long messageTolerance;
+
+    private Map<InetAddress, Bucket[]> addresses;
+    private LongAdder throttledConnections = new LongAdder();
+    private LongAdder throttledMessages = new LongAdder();
+
+    /**
+     * Initialize the rate limiter, a rate of 0 is never limited
+     * @param options the rates, bursts and the number of addresses to remember
+     */
+    RateLimiter(ServerOptions options) {
+        this.connectionInterval = interval(options.getConnectionRate());
+        this.connectionTolerance = connectionInterval * Math.max(0, options.getConnectionBurst() - 1);
+        this.messageInterval = interval(options.getMessageRate());
+        this.messageTolerance = messageInterval * Math.max(0, options.getMessageBurst() - 1);
+        int capacity = options.getRateLimitAddresses();
+        this.addresses = new LinkedHashMap<InetAddress, Bucket[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetAddress, Bucket[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param perSecond the rate
+     * @return nanoseconds between two tokens, 0 if the rate isn't limited
+     */
+    private static long interval(int perSecond) {
+        return perSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / perSecond;
+    }
+
+    /**
+     * @param address the remote address
+     * @return the connection and the message bucket of the address
+     */
+    private synchronized Bucket[] buckets(InetAddress address) {
+        return addresses.computeIfAbsent(address, a -> new Bucket[]{
+                new Bucket(connectionInterval, connectionTolerance),
+                new Bucket(messageInterval, messageTolerance)});
+    }
+
+    /**
+     * Takes a token for a new connection, called by the accept loop
+     * @param address the remote address of the connection
+     * @return true if the connection may go on, false if the address connects too often
+     */
+    boolean allowConnection(InetAddress address) {
+        if (connectionInterval == 0) {
+            return true;
+        }
+        if (buckets(address)[0].delay(false) > 0) {
+            throttledConnections.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param address the remote address of a connection
+     * @return the bucket all connections of the address take a token from for every message
+     */
+    Bucket messages(InetAddress address) {
+        return buckets(address)[1];
+    }
+
+    /**
+     * Counts a message which had to wait for its token
+     */
+    void throttledMessage() {
+        throttledMessages.increment();
+    }
+
+    /**
+     * @return the counters as one line of text
+     */
+    String report() {
+        int size;
+        synchronized (this) {
+            size = addresses.size();
+        }
+        return String.format("ratelimit addresses=%d throttledConnections=%d throttledMessages=%d%n",
+                size, throttledConnections.sum(), throttledMessages.sum());
+    }
+
+    /**
+     * A token bucket stored as the single time at which it is full again
+     * (the generic cell rate algorithm), so taking a token is one compare and set
+     */
+    static class Bucket {
+        private long interval;
+        private long tolerance;
+        private AtomicLong full = new AtomicLong(Long.MIN_VALUE);
+
+        /**
+         * @param interval nanoseconds between two tokens, 0 for no limit
+         * @param tolerance nanoseconds of tokens the bucket holds besides the current one
+         */
+        Bucket(long interval, long tolerance) {
+            this.interval = interval;
+            this.tolerance = tolerance;
+        }
+
+        /**
+         * Takes a token
+         * @param reserve true to take the token even if the bucket is empty, the caller then has to wait
+         * @return 0 if a token was there, otherwise nanoseconds until it is there
+         */
+        long delay(boolean reserve) {
+            if (interval == 0) {
+                return 0;
+            }
+            while (true) {
+                long now = System.nanoTime();
+                long current = full.get();
+                long from = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long delay = Math.max(0, from - now - tolerance);
+                if (delay > 0 && !reserve) {
+                    return delay;
+                }
+                if (full.compareAndSet(current, from + interval)) {
+                    return delay;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package hangman.server;
+
+import hangman.Frames;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * How the answers of a {@link Protocol} are encoded, either as the text lines
+ * every client understands or as {@link Frames} if the client asked for them.
+ * Nothing is sent before {@link #flush()}, so one round trip is one write on the socket.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+interface Replies {
+
+    /**
+     * Sends the state the game starts with
+     * @param remainingTries the tries the player has
+     * @param mask the masked answer
+     * @throws IOException if writing fails
+     */
+    void start(int remainingTries, String mask) throws IOException;
+
+    /**
+     * Sends the state after a guess which didn't end the game
+     * @param remainingTries the tries the player has left
+     * @param mask the masked answer
+     * @throws IOException if writing fails
+     */
+    void round(int remainingTries, String mask) throws IOException;
+
+    /**
+     * Sends the result of the game
+     * @param won true if the player found the answer
+     * @param remainingTries the tries the player had left
+     * @param mask the masked answer
+     * @throws IOException if writing fails
+     */
+    void result(boolean won, int remainingTries, String mask) throws IOException;
+
+    /**
+     * Tells the client that the connection will be closed
+     * @throws IOException if writing fails
+     */
+    void exit() throws IOException;
+
+    /**
+     * Sends a line of text outside of the game
+     * @param text the text
+     * @throws IOException if writing fails
+     */
+    void notice(String text) throws IOException;
+
+    /**
+     * Sends everything written so far
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException;
+
+    /**
+     * @param binary true if the client asked for frames
+     * @param out where the answers are written to
+     * @return the replies for the protocol
+     */
+    static Replies create(boolean binary, OutputStream out) {
+        return binary ? new BinaryReplies(out) : new TextReplies(out);
+    }
+}
+
+/**
+ * The text lines of the original protocol, in UTF-8
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class TextReplies implements Replies {
+
+    private OutputStream out;
+
+    /**
+     * @param out where the lines are written to
+     */
+    TextReplies(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @param line the line without the line break
+     * @throws IOException if writing fails
+     */
+    private void println(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void start(int remainingTries, String mask) throws IOException {
+        println(mask);
+    }
+
+    @Override
+    public void round(int remainingTries, String mask) throws IOException {
+        println("Remaining tries: " + remainingTries);
+        println(mask);
+    }
+
+    @Override
+    public void result(boolean won, int remainingTries, String mask) throws IOException {
+        println(won ? "You won!" : "You lost!");
+    }
+
+    @Override
+    public void exit() throws IOException {
+        println(GameProtocol.EXIT);
+    }
+
+    @Override
+    public void notice(String text) throws IOException {
+        println(text);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
+
+/**
+ * One {@link Frames#STATE} frame per round trip instead of several lines
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class BinaryReplies implements Replies {
+
+    private OutputStream out;
+
+    /**
+     * @param out where the frames are written to
+     */
+    BinaryReplies(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void start(int remainingTries, String mask) throws IOException {
+        Frames.writeState(out, remainingTries, Frames.RUNNING, mask);
+    }
+
+    @Override
+    public void round(int remainingTries, String mask) throws IOException {
+        Frames.writeState(out, remainingTries, Frames.RUNNING, mask);
+    }
+
+    @Override
+    public void result(boolean won, int remainingTries, String mask) throws IOException {
+        Frames.writeState(out, remainingTries, won ? Frames.WON : Frames.LOST, mask);
+    }
+
+    @Override
+    public void exit() throws IOException {
+        Frames.writeEmpty(out, Frames.EXIT);
+    }
+
+    @Override
+    public void notice(String text) throws IOException {
+        Frames.writeText(out, Frames.NOTICE, text);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
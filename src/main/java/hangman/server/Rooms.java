@@ -0,0 +1,327 @@
+package hangman.server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * The named rooms of a server, e.g. one per language or theme.
+ * <br>
+ * A room is a directory in {@link #DIRECTORY} of the data directory with its own words.txt. It gets its own
+ * {@link WordCatalog} and its own {@link Leaderboard}, written to the toplist.txt of the directory, so the winners
+ * of a room only contend for the lock of their room. A client picks a room with <code>[ROOM]name</code> in his
+ * handshake, without it he plays in the lobby with the words and the toplist of the server.
+ * <br>
+ * A room is loaded when its first player arrives. Loading and closing rooms is done one after another on a
+ * background thread, so neither the thread of the player nor the games of another room wait for the disk, the
+ * players of a room which is still loading get their game when it is ready. Every game holds its room until it
+ * is finished. When the last player left, the room is evicted after the idle time unless somebody came back: its
+ * toplist is closed, the image of its words is written and its memory is freed. At most a maximum number of rooms
+ * is open, a further room evicts the one idle for the longest time, if every room has players it is rejected.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class Rooms {
+
+    /**
+     * The directory of the rooms in the data directory
+     */
+    static final String DIRECTORY = "rooms";
+
+    private static final Pattern NAME = Pattern.compile("[a-z0-9_-]{1,32}");
+
+    private Path dir;
+    private int maxRooms;
+    private long idleMillis;
+    private TimerWheel wheel;
+    private Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private ExecutorService loader;
+
+    private LongAdder loaded = new LongAdder();
+    private LongAdder evicted = new LongAdder();
+    private LongAdder rejected = new LongAdder();
+
+    /**
+     * Initialize the rooms, nothing is loaded yet
+     * @param dataDir the data directory of the server
+     * @param maxRooms the number of rooms which may be open at once
+     * @param idleMillis milliseconds a room without players stays open
+     * @param wheel schedules the eviction of idle rooms
+     */
+    Rooms(Path dataDir, int maxRooms, long idleMillis, TimerWheel wheel) {
+        this.dir = dataDir.resolve(DIRECTORY);
+        this.maxRooms = maxRooms;
+        this.idleMillis = idleMillis;
+        this.wheel = wheel;
+        // a single thread, so a room which is opened again is only read after its old toplist was closed
+        this.loader = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "room-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Takes a room for a new game and loads it in the background if it isn't open, may be called from any thread.
+     * The game has to give it back with {@link Room#release()}.
+     * @param name the name of the room
+     * @return the room, once it is loaded, it fails with an {@link IllegalArgumentException} if it can't be loaded
+     * @throws IllegalArgumentException if there is no such room or too many rooms are open
+     */
+    CompletableFuture<Room> acquire(String name) {
+        Path roomDir = dir.resolve(name);
+        if (maxRooms == 0 || !NAME.matcher(name).matches() || !Files.isRegularFile(roomDir.resolve("words.txt"))) {
+            throw new IllegalArgumentException("Unknown room: " + name);
+        }
+        while (true) {
+            Room room = rooms.get(name);
+            if (room == null) {
+                room = open(name, roomDir);
+            }
+            CompletableFuture<Room> ready = room.acquire();
+            if (ready != null) {
+                return ready;
+            }
+            // the room was evicted in the meantime, the next loop opens it again
+        }
+    }
+
+    /**
+     * Adds a room which isn't open yet. The number of rooms is checked under the lock of the map,
+     * so two players can't both take the last free place.
+     * @param name the name of the room
+     * @param roomDir the directory of the room
+     * @return the room, opened by another player if he was faster
+     * @throws IllegalArgumentException if too many rooms are open
+     */
+    private Room open(String name, Path roomDir) {
+        synchronized (rooms) {
+            Room room = rooms.get(name);
+            if (room == null) {
+                if (rooms.size() >= maxRooms && !evictIdlest()) {
+                    rejected.increment();
+                    throw new IllegalArgumentException("Too many rooms are open for " + name);
+                }
+                room = new Room(name, roomDir);
+                rooms.put(name, room);
+            }
+            return room;
+        }
+    }
+
+    /**
+     * Evicts the room which has no players for the longest time, its toplist is closed in the background
+     * @return true if a room was evicted
+     */
+    private boolean evictIdlest() {
+        Room idlest = null;
+        long idlestSince = 0;
+        for (Room room : rooms.values()) {
+            long since = room.getIdleSince();
+            if (since != 0 && (idlest == null || since - idlestSince < 0)) {
+                idlest = room;
+                idlestSince = since;
+            }
+        }
+        return idlest != null && idlest.evict(0);
+    }
+
+    /**
+     * @return the counters as one line of text
+     */
+    String report() {
+        int players = 0;
+        for (Room room : rooms.values()) {
+            players += room.getPlayers();
+        }
+        return String.format("rooms open=%d players=%d loaded=%d evicted=%d rejected=%d%n",
+                rooms.size(), players, loaded.sum(), evicted.sum(), rejected.sum());
+    }
+
+    /**
+     * Closes every open room, called on shutdown after every game is over
+     */
+    void close() {
+        for (Room room : rooms.values()) {
+            room.evict(-1);
+        }
+        loader.shutdown();
+        try {
+            loader.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A single room, its words and its toplist are only there while it is open
+     */
+    class Room {
+        private String name;
+        private Path dir;
+        private WordCatalog words;
+        private Leaderboard leaderboard;
+        private int players = 0;
+        private long idleSince = 0;
+        private boolean closed = false;
+        private TimerWheel.Timeout eviction;
+        private CompletableFuture<Room> ready;
+
+        /**
+         * @param name the name of the room
+         * @param dir the directory with the words and the toplist of the room
+         */
+        private Room(String name, Path dir) {
+            this.name = name;
+            this.dir = dir;
+        }
+
+        /**
+         * Counts a new player, the first one starts loading the room
+         * @return the room once it is loaded, null if the room was evicted already and a new one has to be opened
+         */
+        private synchronized CompletableFuture<Room> acquire() {
+            if (closed) {
+                return null;
+            }
+            if (ready == null) {
+                ready = new CompletableFuture<>();
+                loader.execute(this::load);
+            }
+            players++;
+            idleSince = 0;
+            if (eviction != null) {
+                eviction.cancel();
+                eviction = null;
+            }
+            return ready;
+        }
+
+        /**
+         * Reads the words and the toplist of the room on the loader, then hands the room to the waiting players.
+         * If it can't be read the room is closed and they are turned away.
+         */
+        private void load() {
+            long begin = System.nanoTime();
+            synchronized (this) {
+                if (closed) {
+                    ready.completeExceptionally(new IllegalArgumentException("The room " + name + " was closed"));
+                    return;
+                }
+            }
+            WordCatalog catalog;
+            try {
+                catalog = new WordCatalog(Server.loadWords(dir.resolve("words.txt"), dir.resolve("words.txt.dict")));
+            } catch (IOException e) {
+                synchronized (this) {
+                    closed = true;
+                    rooms.remove(name, this);
+                }
+                ready.completeExceptionally(new IllegalArgumentException("Can't load the room " + name + ": " + e.getMessage()));
+                return;
+            }
+            Leaderboard toplist = new Leaderboard(new HighscoreJournal(dir.resolve("toplist.txt")), Leaderboard.SIZE, 1000);
+            toplist.load();
+            synchronized (this) {
+                words = catalog;
+                leaderboard = toplist;
+            }
+            loaded.increment();
+            Log.info("Opened the room {} with {} words in {} ms", name, catalog.size(), (System.nanoTime() - begin) / 1000000);
+            ready.complete(this);
+        }
+
+        /**
+         * Gives the room back after a game, the last player schedules its eviction
+         */
+        synchronized void release() {
+            if (--players == 0 && !closed) {
+                idleSince = System.nanoTime();
+                eviction = wheel.schedule(() -> loader.execute(() -> evict(idleMillis)), idleMillis);
+            }
+        }
+
+        /**
+         * Closes the room if nobody plays in it, its toplist is written and its words are dropped on the loader.
+         * That is queued before the room leaves the map, so a room opened again with the same name is read
+         * after its files were written.
+         * @param minIdleMillis how long the room has to be without players, -1 to close it in any case
+         * @return true if the room was closed
+         */
+        private synchronized boolean evict(long minIdleMillis) {
+            if (closed || (minIdleMillis >= 0 && (players > 0
+                    || System.nanoTime() - idleSince < TimeUnit.MILLISECONDS.toNanos(minIdleMillis)))) {
+                return false;
+            }
+            closed = true;
+            if (eviction != null) {
+                eviction.cancel();
+                eviction = null;
+            }
+            loader.execute(this::unload);
+            rooms.remove(name, this);
+            return true;
+        }
+
+        /**
+         * Closes the toplist of an evicted room, writes the image of its words and frees them
+         */
+        private void unload() {
+            Leaderboard toplist;
+            synchronized (this) {
+                toplist = leaderboard;
+                words = null;
+                leaderboard = null;
+            }
+            if (toplist != null) {
+                toplist.close();
+                Server.saveDictionaryImage(dir.resolve("words.txt"), dir.resolve("words.txt.dict"));
+                evicted.increment();
+                Log.info("Closed the room {}", name);
+            }
+        }
+
+        /**
+         * @return the name of the room
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the words of the room, only while a game holds it
+         */
+        synchronized WordCatalog getWords() {
+            return words;
+        }
+
+        /**
+         * @return the toplist of the room, only while a game holds it
+         */
+        synchronized Leaderboard getLeaderboard() {
+            return leaderboard;
+        }
+
+        /**
+         * @return the number of games in the room
+         */
+        private synchronized int getPlayers() {
+            return players;
+        }
+
+        /**
+         * @return when the last player left, from {@link System#nanoTime()}, 0 while somebody plays
+         */
+        private synchronized long getIdleSince() {
+            return idleSince;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package hangman.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The games which were still running when the server was shut down, so their players
+ * can go on with them after a restart instead of losing them with every deploy.
+ * <br>
+ * On shutdown every unfinished game gets a random token, which is sent to the player in a
+ * {@link #RESUME} notice before his connection is closed. Then the games are written to one
+ * small binary file: the username, the answer, the letters guessed so far, the rounds left, whether a hint was used and the room.
+ * On startup the file is read back with a single sequential read and deleted, so a token can't
+ * be used twice even if the server crashes later. A client resumes his game by sending the token
+ * in his handshake, e.g. <code>[USERNAME]moritz [RESUME]token</code>, the guessed letters are
+ * replayed on a new {@link Hangman} with the same answer. Games nobody resumed are written
+ * again on the next shutdown until they are older than {@link #MAX_AGE}.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class SavedGames {
+
+    /**
+     * The setting of the handshake with the token of a saved game, also the notice with the token
+     */
+    static final String RESUME = "RESUME";
+
+    /**
+     * Milliseconds a saved game can be resumed
+     */
+    static final long MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    private static final int MAGIC = 0x48475356;
+    private static final int VERSION = 1;
+
+    private Path path;
+    private Path temporary;
+    private Map<String, Saved> games = new ConcurrentHashMap<>();
+    private SecureRandom random = new SecureRandom();
+
+    /**
+     * Initialize the saved games, nothing is read yet
+     * @param path the file the games are written to on shutdown
+     */
+    SavedGames(Path path) {
+        this.path = path;
+        this.temporary = Paths.get(path + ".tmp");
+    }
+
+    /**
+     * Reads the games saved by the last shutdown and deletes the file
+     * @return the number of games which can be resumed
+     * @throws IOException if the file can't be read or is broken
+     */
+    int load() throws IOException {
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " contains no saved games");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String token = in.readUTF();
+                Saved saved = new Saved(in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(), in.readInt(), in.readLong(),
+                        in.readBoolean(), in.readUTF());
+                if (now - saved.savedAt < MAX_AGE) {
+                    games.put(token, saved);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        Files.delete(path);
+        return games.size();
+    }
+
+    /**
+     * Saves an unfinished game, may be called from any thread
+     * @param hangman the game, it isn't changed anymore
+     * @param rounds the rounds left including this one, 0 if the player plays until he leaves
+     * @param room the name of the room the game is played in, empty for the lobby
+     * @return the token with which the player can resume the game
+     */
+    String save(Hangman hangman, int rounds, String room) {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        games.put(token, new Saved(hangman.getUsername(), hangman.getAnswer(), hangman.getMaxGuesses(),
+                hangman.getGuessed(), rounds, System.currentTimeMillis(), hangman.isHinted(), room));
+        return token;
+    }
+
+    /**
+     * Removes a saved game, so it can only be resumed once
+     * @param token the token the player got
+     * @param username the name the player connected with, has to be the one of the game
+     * @return the saved game, null if there is none for the token and the name
+     */
+    Saved take(String token, String username) {
+        Saved saved = games.get(token);
+        if (saved == null || !saved.username.equals(username) || !games.remove(token, saved)) {
+            return null;
+        }
+        return saved;
+    }
+
+    /**
+     * Puts back a game which was taken, but couldn't be resumed, e.g. because its room can't be loaded
+     * @param token the token the player got
+     * @param saved the game he took with it
+     */
+    void giveBack(String token, Saved saved) {
+        games.putIfAbsent(token, saved);
+    }
+
+    /**
+     * Writes every game which can still be resumed, called once on shutdown after every session is closed.
+     * The file is written next to its place and renamed, so a crash never leaves half of it.
+     * @throws IOException if writing or renaming fails
+     */
+    void write() throws IOException {
+        long now = System.currentTimeMillis();
+        games.values().removeIf(saved -> now - saved.savedAt >= MAX_AGE);
+        if (games.isEmpty()) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(games.size());
+            for (Map.Entry<String, Saved> game : games.entrySet()) {
+                Saved saved = game.getValue();
+                out.writeUTF(game.getKey());
+                out.writeUTF(saved.username);
+                out.writeUTF(saved.answer);
+                out.writeInt(saved.maxGuesses);
+                out.writeUTF(saved.guessed);
+                out.writeInt(saved.rounds);
+                out.writeLong(saved.savedAt);
+                out.writeBoolean(saved.hinted);
+                out.writeUTF(saved.room);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the number of games which can be resumed
+     */
+    int size() {
+        return games.size();
+    }
+
+    /**
+     * The state of an unfinished game
+     */
+    static class Saved {
+        private String username;
+        private String answer;
+        private int maxGuesses;
+        private String guessed;
+        private int rounds;
+        private long savedAt;
+        private boolean hinted;
+        private String room;
+
+        /**
+         * @param username the name of the player
+         * @param answer the answer of the game
+         * @param maxGuesses the number of misses the game started with
+         * @param guessed every letter guessed so far
+         * @param rounds the rounds left including this one, 0 for no limit
+         * @param savedAt when the game was saved, in milliseconds since the epoch
+         * @param hinted whether the player asked for a hint, then a win isn't added to the toplist
+         * @param room the name of the room, empty for the lobby
+         */
+        private Saved(String username, String answer, int maxGuesses, String guessed, int rounds, long savedAt,
+                boolean hinted, String room) {
+            this.username = username;
+            this.answer = answer;
+            this.maxGuesses = maxGuesses;
+            this.guessed = guessed;
+            this.rounds = rounds;
+            this.savedAt = savedAt;
+            this.hinted = hinted;
+            this.room = room;
+        }
+
+        /**
+         * @return the rounds left including the saved one, 0 if the player plays until he leaves
+         */
+        int getRounds() {
+            return rounds;
+        }
+
+        /**
+         * @return the name of the room the game was played in, empty for the lobby
+         */
+        String getRoom() {
+            return room;
+        }
+
+        /**
+         * Creates the game again by guessing every saved letter
+         * @param leaderboard the toplist the player is added to if he wins
+         * @return the game in the state it was saved in
+         */
+        Hangman restore(Leaderboard leaderboard) {
+            Hangman hangman = new Hangman(answer, maxGuesses, username, leaderboard);
+            for (int i = 0; i < guessed.length(); i++) {
+                hangman.guess(guessed.charAt(i));
+            }
+            if (hinted) {
+                hangman.useHint();
+            }
+            return hangman;
+        }
+    }
+}
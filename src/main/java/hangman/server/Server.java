@@ -1,21 +1,35 @@
 package hangman.server;
 
-import hangman.InputOutput;
+import hangman.Frames;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.ArrayList;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * With this Server you can provide
@@ -24,30 +38,156 @@ import java.util.concurrent.locks.ReentrantLock;
  * @date 2019-11-26
  */
 public class Server {
+    /**
+     * Number of connections the OS queues until they are accepted, the default of 50
+     * makes clients of a connection burst wait for a SYN retransmit
+     */
+    static final int BACKLOG = 1024;
+
     private Integer port = 0;
-    private boolean listening = false;
-    private ExecutorService executorService = Executors.newCachedThreadPool();
-    private ArrayList<Game> games = new ArrayList<>();
-    private ArrayList<String> words;
-    private Random randomGenerator;
+    private volatile boolean listening = false;
+    private ExecutorService executorService;
+    private SessionRegistry sessions;
+    private AdmissionControl<?> admission;
+    private RateLimiter rateLimiter;
+    private volatile WordCatalog words;
+    private Path dataDir;
+    private Path wordsPath;
+    private DictionaryWatcher dictionaryWatcher;
     private ServerSocket serverSocket;
-    private Lock lock;
+    private NioServer nioServer;
+    private Leaderboard leaderboard;
+    private SavedGames savedGames;
+    private ServerOptions options;
+    private boolean console = true;
+    private ServerMetrics metrics = new ServerMetrics();
+    private StatsEndpoint statsEndpoint;
+    private LeaderboardGossip gossip;
+    private GameAnalytics analytics;
+    private Rooms rooms;
+    private Races races;
 
     /**
-     * Initializes port, generates a random object, a lock and reads with the lock the words from the wordlist
-     * When adding or removing something from the wordlist you have to restart the server
+     * Initializes port, loads the toplist and reads the words from the wordlist
+     * When the wordlist changes it is loaded again while the server is running
      *
      * @param port   Integer for the listening port
      */
     public Server(Integer port) {
-        if (port != null) this.port = port;
-        InputOutput io = new InputOutput("/mnt/storage/gitclones/hangman-cl-online/src/main/java/hangman/words.txt");
-        this.lock = new ReentrantLock();
-        this.lock.lock();
-        words = io.readFile();
-        this.lock.unlock();
-        randomGenerator = new Random();
+        this(new ServerOptions(port != null ? port : 0));
+    }
+
+    /**
+     * Initializes the server with all its options, loads the toplist and reads the words from the wordlist
+     * When the wordlist changes it is loaded again while the server is running
+     * <br>
+     * The games saved by the last shutdown are read as well, so their players can resume them.
+     *
+     * @param options the options parsed from the command line
+     */
+    public Server(ServerOptions options) {
+        this.options = options;
+        this.port = options.getPort();
+        this.dataDir = options.getDataDir();
+        this.wordsPath = options.getWordsPath();
+        Log.setLevel(options.getLogLevel());
+        this.executorService = createExecutor(options.getMode());
+        this.rateLimiter = new RateLimiter(options);
+        this.sessions = new SessionRegistry(options.getHandshakeTimeout(), options.getIdleTimeout(), options.getSessionTimeout());
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(dataDir);
+            words = new WordCatalog(loadWords(wordsPath, dictionaryImage()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't load the wordlist " + wordsPath, e);
+        }
+        this.leaderboard = new Leaderboard(new HighscoreJournal(dataDir.resolve("toplist.txt")),
+                Leaderboard.SIZE, 1000);
+        this.leaderboard.load();
+        this.analytics = new GameAnalytics(dataDir.resolve("wordstats.snapshot"),
+                words, options.getMinWinRate(), options.getMaxWinRate());
+        this.rooms = new Rooms(dataDir, options.getMaxRooms(), options.getRoomIdle(), sessions.getWheel());
+        this.races = new Races(options.getRaceTick(), options.getRaceStall());
+        this.savedGames = new SavedGames(dataDir.resolve("games.snapshot"));
+        try {
+            int saved = savedGames.load();
+            if (saved > 0) {
+                Log.info("{} saved games can be resumed", saved);
+            }
+        } catch (IOException e) {
+            Log.warn("Can't read the saved games: {}", e.getMessage());
+        }
+        Log.info("Loaded in {} ms", (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * @return the prebuilt image of the wordlist, written on shutdown so the next start only has to map it.
+     * It is kept in the data directory, so the wordlist may be read only.
+     */
+    private Path dictionaryImage() {
+        return dataDir.resolve(wordsPath.getFileName() + ".dict");
+    }
+
+    /**
+     * Maps the prebuilt image of a wordlist if it is newer than the wordlist, otherwise reads the wordlist
+     * @param wordsPath the wordlist, one word per line, or a dictionary file
+     * @param image the prebuilt image of the wordlist
+     * @return the words
+     * @throws IOException if neither can be read
+     */
+    static WordDictionary loadWords(Path wordsPath, Path image) throws IOException {
+        if (!wordsPath.toString().endsWith(".dict") && Files.isRegularFile(image)
+                && Files.getLastModifiedTime(image).compareTo(Files.getLastModifiedTime(wordsPath)) > 0) {
+            try {
+                return PackedDictionary.map(image);
+            } catch (IOException e) {
+                Log.warn("Ignoring the broken image {}: {}", image, e.getMessage());
+            }
+        }
+        return PackedDictionary.load(wordsPath);
+    }
 
+    /**
+     * Writes the image of a wordlist unless it is already up to date and of the current version
+     * @param wordsPath the wordlist
+     * @param image where the image is written to
+     */
+    static void saveDictionaryImage(Path wordsPath, Path image) {
+        try {
+            if (wordsPath.toString().endsWith(".dict") || (Files.isRegularFile(image) && PackedDictionary.isCurrent(image)
+                    && Files.getLastModifiedTime(image).compareTo(Files.getLastModifiedTime(wordsPath)) > 0)) {
+                return;
+            }
+            PackedDictionary.build(wordsPath, image);
+        } catch (IOException e) {
+            Log.warn("Can't write the image of the wordlist: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the executor on which the games are run. Virtual threads are looked up by
+     * reflection, so the server still runs on a JVM without them and falls back to the cached pool.
+     * @param mode the mode the server is started with
+     * @return a virtual thread per task executor in {@link ServerOptions.Mode#VIRTUAL}, otherwise a cached thread pool
+     */
+    static ExecutorService createExecutor(ServerOptions.Mode mode) {
+        if (mode == ServerOptions.Mode.VIRTUAL) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                Log.warn("Virtual threads are not available on this JVM, using a cached thread pool");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Whether {@link #run()} starts a {@link ReadInput} on System.in,
+     * embedded servers like the benchmarks turn it off
+     * @param console false if no exit command should be read
+     */
+    void setConsole(boolean console) {
+        this.console = console;
     }
 
     /**
@@ -58,57 +198,387 @@ public class Server {
     }
 
     /**
-     * Initiating the ServerSocket with already defined Parameters and starts accepting incoming
-     * requests. If client connects to the ServerSocket a new Game will be created and passed
-     * to the ExecutorService for immediate concurrent action. A thread is started aswell, waiting
-     * for an exit command
+     * Picks a random word out of the wordlist, may be called from any thread.
+     * If the server was started with a band of win rates, words of any difficulty
+     * are mostly picked out of the words whose win rate lies in the band.
+     * @param catalog the current words
+     * @param difficulty how hard the word should be
+     * @return the index of the answer for a new game
+     */
+    private int pickWord(WordCatalog catalog, Difficulty difficulty) {
+        if (difficulty == Difficulty.ANY) {
+            int word = analytics.pick(catalog);
+            if (word != -1) {
+                return word;
+            }
+        }
+        return catalog.pick(difficulty);
+    }
+
+    /**
+     * Starts the game a client asked for with his handshake. If he sends the token
+     * of a saved game, he goes on with it, otherwise he gets a new word.
+     * If the room of a saved game can't be loaded, the game is given back, so the token still works.
+     * With a room in the handshake the words and the toplist of the room are used, the room is held until the protocol finishes.
+     * A room which isn't open yet is loaded in the background, so the game is only there once it is ready.
+     * A client in race mode joins the race of the lobby or of his room instead, see {@link Races}.
+     * @param handshake the first line of the client
+     * @param out where the answers of the game are written to
+     * @return the protocol of the new game, it fails with an {@link IllegalArgumentException} if the room can't be loaded
+     * @throws IllegalArgumentException if the handshake asks for something unknown
+     */
+    CompletableFuture<Protocol> startGame(Handshake handshake, OutputStream out) {
+        Replies replies = Replies.create(handshake.isBinary(), out);
+        Difficulty difficulty = handshake.getDifficulty();
+        String username = handshake.getUsername();
+        if (handshake.isRace()) {
+            return startRace(handshake.getRoom(), username, replies);
+        }
+        int rounds = handshake.getRounds();
+        String resume = handshake.get(SavedGames.RESUME, null);
+        String token = resume != null ? resume.trim() : null;
+        SavedGames.Saved saved = token != null ? savedGames.take(token, username) : null;
+        String roomName = saved != null ? saved.getRoom() : handshake.getRoom();
+        if (roomName == null || roomName.isEmpty()) {
+            Supplier<Hangman> games = () -> newHangman(username, difficulty);
+            if (saved != null) {
+                metrics.gameResumed();
+                Hangman hangman = saved.restore(leaderboard);
+                // the word may be gone from a reloaded list, but the hints still work with the current one
+                hangman.setWord(words, -1);
+                return CompletableFuture.completedFuture(new GameProtocol(hangman, games, saved.getRounds(), replies, metrics, analytics));
+            }
+            return CompletableFuture.completedFuture(new GameProtocol(games, rounds, replies, metrics, analytics));
+        }
+        CompletableFuture<Protocol> started;
+        try {
+            started = rooms.acquire(roomName).thenApply(room -> {
+                Supplier<Hangman> games = () -> newHangman(room, username, difficulty);
+                GameProtocol protocol;
+                if (saved != null) {
+                    metrics.gameResumed();
+                    Hangman hangman = saved.restore(room.getLeaderboard());
+                    hangman.setWord(room.getWords(), -1);
+                    protocol = new GameProtocol(hangman, games, saved.getRounds(), replies, metrics, null);
+                } else {
+                    // the stats of the words are only kept for the lobby
+                    protocol = new GameProtocol(games, rounds, replies, metrics, null);
+                }
+                protocol.setRoom(room);
+                return protocol;
+            });
+        } catch (IllegalArgumentException e) {
+            if (saved != null) {
+                savedGames.giveBack(token, saved);
+            }
+            throw e;
+        }
+        if (saved == null) {
+            return started;
+        }
+        // a room which can't be loaded doesn't cost the player his saved game
+        return started.whenComplete((protocol, e) -> {
+            if (e != null) {
+                savedGames.giveBack(token, saved);
+            }
+        });
+    }
+
+    /**
+     * Seats a client in a race, his transport still has to {@link RaceProtocol#join(Races.Seat) join} him
+     * @param roomName the room of the race, null for the lobby
+     * @param username the name of the player
+     * @param replies where the answers are written to
+     * @return the protocol of the racer, once his room is loaded
+     * @throws IllegalArgumentException if the room is unknown
+     */
+    private CompletableFuture<Protocol> startRace(String roomName, String username, Replies replies) {
+        if (roomName == null) {
+            return CompletableFuture.completedFuture(new RaceProtocol(races, "", words, leaderboard, username, replies, metrics));
+        }
+        return rooms.acquire(roomName).thenApply(room -> {
+            RaceProtocol protocol = new RaceProtocol(races, room.getName(), room.getWords(), room.getLeaderboard(),
+                    username, replies, metrics);
+            protocol.setRoom(room);
+            return protocol;
+        });
+    }
+
+    /**
+     * Ends the game of a connection which is closed before the game is over.
+     * While the server shuts down the game is saved, so the player can resume it after the restart.
+     * @param protocol the game of the connection
+     * @throws IOException if writing fails
+     */
+    void endGame(Protocol protocol) throws IOException {
+        if (listening) {
+            protocol.finish();
+        } else {
+            protocol.suspend(savedGames);
+        }
+    }
+
+    /**
+     * Creates a game with a new word, for the first and every further round of a client
+     * @param username the name of the player
+     * @param difficulty how hard the word should be
+     * @return the new game
+     */
+    private Hangman newHangman(String username, Difficulty difficulty) {
+        WordCatalog catalog = words;
+        int word = pickWord(catalog, difficulty);
+        String answer = catalog.word(word);
+        Log.info("The answer for the new player is: {}", answer);
+        Hangman hangman = new Hangman(answer,10,username,leaderboard);
+        hangman.setWord(catalog, word);
+        return hangman;
+    }
+
+    /**
+     * Creates a game with a new word of a room
+     * @param room the room the player is in
+     * @param username the name of the player
+     * @param difficulty how hard the word should be
+     * @return the new game
+     */
+    private Hangman newHangman(Rooms.Room room, String username, Difficulty difficulty) {
+        WordCatalog catalog = room.getWords();
+        int word = catalog.pick(difficulty);
+        String answer = catalog.word(word);
+        Log.info("The answer for the new player in {} is: {}", room.getName(), answer);
+        Hangman hangman = new Hangman(answer,10,username,room.getLeaderboard());
+        hangman.setWord(catalog, word);
+        return hangman;
+    }
+
+    /**
+     * @return the options the server was started with
+     */
+    ServerOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return the executor the games are run on
+     */
+    ExecutorService getExecutor() {
+        return executorService;
+    }
+
+    /**
+     * @return the counters and latencies of this server
+     */
+    ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the stats of the games and the toplist as text, one metric per line
+     */
+    String stats() {
+        return metrics.report(leaderboard)
+                + String.format("sessions open=%d expired=%d saved=%d%n", sessions.size(), sessions.getExpired(), savedGames.size())
+                + (admission != null ? admission.report() : "")
+                + rateLimiter.report()
+                + (gossip != null ? gossip.report() : "")
+                + analytics.report()
+                + rooms.report()
+                + races.report()
+                + Log.report();
+    }
+
+    /**
+     * @return the connection and message rates per remote address
+     */
+    RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @return decides which connections may start a game
+     */
+    AdmissionControl<?> getAdmission() {
+        return admission;
+    }
+
+    /**
+     * @return the line a rejected client gets
+     */
+    private byte[] busyLine() {
+        return (Frames.BUSY + " retry after " + options.getRetryAfter() + " ms\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tells a client that the server is too busy and closes his connection
+     * @param socket the blocking socket of the client
+     */
+    private void reject(Socket socket) {
+        try (Socket closing = socket) {
+            closing.getOutputStream().write(busyLine());
+        } catch (IOException e) {
+            // the client is gone anyways
+        }
+    }
+
+    /**
+     * Tells a client that the server is too busy and closes his connection
+     * @param channel the channel of the client, still in blocking mode
+     */
+    void reject(SocketChannel channel) {
+        try (SocketChannel closing = channel) {
+            closing.write(ByteBuffer.wrap(busyLine()));
+        } catch (IOException e) {
+            // the client is gone anyways
+        }
+    }
+
+    /**
+     * Starts the game of an admitted client on the executor
+     * @param socket the socket of the client
+     */
+    private void startGame(Socket socket) {
+        try {
+            Game game = new Game(socket,this);
+            sessions.register(game);
+            executorService.execute(game);
+        } catch (IOException e) {
+            Log.error("Can't start the game of a new player", e);
+            admission.closed(false);
+        }
+    }
+
+    /**
+     * @return every open connection of this server
+     */
+    SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * @return the toplist of this server
+     */
+    Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Starts the server in the mode given by the {@link ServerOptions}.
+     * A thread is started aswell, waiting for an exit command, and one watching the wordlist
      */
     public void run() {
-        try (ServerSocket serverSocket = new ServerSocket(port);
+        try {
+            dictionaryWatcher = new DictionaryWatcher(wordsPath, words -> {
+                this.words = new WordCatalog(words);
+                analytics.setCatalog(this.words);
+            });
+            Thread watcher = new Thread(dictionaryWatcher, "dictionary-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            Log.warn("Can't watch the wordlist, changes need a restart: {}", e.getMessage());
+        }
+        if (options.getStatsPort() != 0) {
+            try {
+                statsEndpoint = new StatsEndpoint(this, options.getStatsPort());
+                Log.info("Stats on http://127.0.0.1:{}/stats", statsEndpoint.getPort());
+            } catch (IOException e) {
+                Log.warn("Can't serve the stats: {}", e.getMessage());
+            }
+        }
+        if (options.getClusterPort() != 0) {
+            try {
+                gossip = new LeaderboardGossip(leaderboard, options.getClusterPort(), options.getClusterPeers(), options.getGossipInterval());
+                Log.info("Gossiping the toplist on udp port {} with {} peers", gossip.getPort(), options.getClusterPeers().size());
+            } catch (IOException e) {
+                Log.warn("Can't join the cluster: {}", e.getMessage());
+            }
+        }
+        if (options.getMode() == ServerOptions.Mode.NIO) {
+            runNio();
+        } else {
+            runThreads();
+        }
+    }
+
+    /**
+     * Initiating a ServerSocketChannel with already defined Parameters and hands every
+     * incoming player to the event loops of a {@link NioServer}
+     */
+    private void runNio() {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+             BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(System.in))){
+            serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+            this.serverSocket = serverChannel.socket();
+            this.nioServer = new NioServer(this, options.getEventLoops());
+            AdmissionControl<SocketChannel> admission = new AdmissionControl<>(options, sessions.getWheel(), nioServer::start, this::reject);
+            this.admission = admission;
+            listening = true;
+            Log.info("Running on localhost:{} with {} event loops", this.getPort(), options.getEventLoops());
+            if(console){
+                System.out.println("Exit with !exit, show the stats with !stats");
+                ReadInput ri = new ReadInput(bufferedReader,this);
+                executorService.execute(ri);
+            }
+            nioServer.run(serverChannel, admission);
+        } catch(IOException e){
+            Log.error("The server failed", e);
+        }
+    }
+
+    /**
+     * Initiating the ServerSocket with already defined Parameters and starts accepting incoming
+     * requests. If client connects to the ServerSocket and the {@link AdmissionControl} lets him in,
+     * a new Game will be created and passed to the ExecutorService for immediate concurrent action.
+     */
+    private void runThreads() {
+        try (ServerSocket serverSocket = new ServerSocket(port, BACKLOG);
              BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(System.in))){
             this.serverSocket = serverSocket;
+            AdmissionControl<Socket> admission = new AdmissionControl<>(options, sessions.getWheel(), this::startGame, this::reject);
+            this.admission = admission;
             listening = true;
-            System.out.println("Running on localhost:"+this.getPort());
-            System.out.println("Exit with !exit");
-            ReadInput ri = new ReadInput(bufferedReader,this);
-            executorService.execute(ri);
+            Log.info("Running on localhost:{}", this.getPort());
+            if(console){
+                System.out.println("Exit with !exit, show the stats with !stats");
+                ReadInput ri = new ReadInput(bufferedReader,this);
+                executorService.execute(ri);
+            }
             Socket clientsocket = null;
             while (listening) {
-                System.out.println("Waiting for new player...");
+                Log.debug("Waiting for new player...");
                 try{
                     clientsocket = serverSocket.accept();
                 }catch (SocketException e){
                     break;
                 }
 
-                int index = randomGenerator.nextInt(words.size());
-                Game game = new Game(clientsocket,words.get(index),lock);
-                executorService.execute(game);
-                this.games.add(game);
-                System.out.println("Accepted a new player...");
+                metrics.accepted();
+                if (!rateLimiter.allowConnection(clientsocket.getInetAddress())) {
+                    reject(clientsocket);
+                    continue;
+                }
+                admission.offer(clientsocket);
+                Log.debug("Accepted a new player...");
             }
         } catch(IOException e){
-            e.printStackTrace();
+            Log.error("The server failed", e);
         }
     }
 
     /**
-     * Start the Server with the given port number
-     * @param args the port number on which the server should listen on in the format [port]
+     * Start the Server with the given port number and options
+     * @param args the port number on which the server should listen on and optional settings in the format [port, --name=value...]
      */
     public static void main(String[] args) {
-        int port = 0;
-        if(args.length!=1){
-            System.out.println("Usage: gradle server --args=\"[portNumber]\"");
-            System.exit(1);
-        }
+        ServerOptions options = null;
         try{
-            port = Integer.parseInt(args[0]);
-        } catch (NumberFormatException e) {
-            System.out.println("Error while parsing your port");
+            options = ServerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(ServerOptions.usage());
             System.exit(1);
         }
-        Server miep = new Server(port);
+        Server miep = new Server(options);
         miep.run();
     }
 
@@ -116,33 +586,55 @@ public class Server {
      * Return the Port on which the server is listening
      * @return Port on which the server is listening
      */
-    private int getPort() {
+    int getPort() {
         return this.serverSocket.getLocalPort();
     }
 
     /**
      * Clean shutdown of Server
      * <br>
+     * Every open game is closed and the unfinished ones are saved, together with an image of the
+     * wordlist, so a restart is quick and nobody loses his game.
      * Finally we are closing all open resources.
      */
     public void shutdown() {
         listening = false;
-        for (Game game:this.games) {
-            game.shutdown();
+        if(admission!=null)
+            admission.rejectQueue();
+        if(dictionaryWatcher!=null)
+            dictionaryWatcher.close();
+        if(statsEndpoint!=null)
+            statsEndpoint.close();
+        sessions.expireAll(5000);
+        sessions.close();
+        try {
+            savedGames.write();
+        } catch (IOException e) {
+            Log.error("Can't save the running games: {}", e.getMessage());
         }
+        saveDictionaryImage(wordsPath, dictionaryImage());
+        races.close();
+        rooms.close();
+        if(gossip!=null)
+            gossip.close();
+        if(nioServer!=null)
+            nioServer.shutdown();
         try {
             serverSocket.close();
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Can't close the server socket", e);
         }
+        leaderboard.close();
+        analytics.close();
         if(executorService!=null)
             executorService.shutdownNow();
+        Log.flush(1000);
     }
 
 }
 /**
  * Reads the input, if it is an exit command it shuts the
- * given server down
+ * given server down, !stats prints the stats of the server
  * @author Moritz Welsch
  * @date 2019-11-26
  */
@@ -172,13 +664,16 @@ class ReadInput implements Runnable{
                     if(s.equals("!exit")){
                         break;
                     }
+                    else if(s.equals("!stats")){
+                        System.out.print(server.stats());
+                    }
                     else{
-                        System.out.println("Available commands: !exit");
+                        System.out.println("Available commands: !exit, !stats");
                     }
                 }
                 server.shutdown();
             } catch (IOException e) {
-                e.printStackTrace();
+                Log.error("Can't read the console", e);
             }
 
 
@@ -187,85 +682,201 @@ class ReadInput implements Runnable{
 /**
  * Thread for client socket connection.<br>
  * Every client has to be handled by an own Thread.
+ * It is registered at the {@link SessionRegistry} of the server until it is shut down.
  */
-class Game implements Runnable {
+class Game implements Runnable, SessionRegistry.Session {
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private OutputStream out;
+    private InputStream in;
+    private DataInputStream frames;
 
     private boolean listening = true;
+    private long accepted = System.nanoTime();
+    private RateLimiter.Bucket messages;
+    private volatile long lastActivity = accepted;
+    private volatile boolean started = false;
+
+    private Protocol protocol;
+    private Server server;
 
-    private Hangman hangman;
     /**
-     * Init of ClientWorker-Thread for socket intercommunication
+     * Init of ClientWorker-Thread for socket intercommunication.
+     * Nothing is read here, so the accept loop never waits for a client.
      *
      * @param socket   Socket got from ServerSocket.accept()
+     * @param server the server which provides the words and the toplist
      * @throws IOException will be throwed if the init of Input- or OutputStream fails
      */
-    Game(Socket socket, String answer,Lock lock) throws IOException {
+    Game(Socket socket, Server server) throws IOException {
         this.socket = socket;
+        this.server = server;
+        out = new BufferedOutputStream(socket.getOutputStream());
+        in = new BufferedInputStream(socket.getInputStream());
+        messages = server.getRateLimiter().messages(socket.getInetAddress());
+    }
 
-        System.out.println("The answer for the new player is: " + answer);
-        out = new PrintWriter(socket.getOutputStream(),true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        String username = in.readLine();
-        username = username.substring(10);
-        this.hangman = new Hangman(answer,10,username,lock);
+    /**
+     * Reads the username and the settings of the client. If he doesn't send them within the
+     * handshake timeout the connection is closed. Afterwards either lines or frames are read,
+     * depending on the protocol the client asked for.
+     * @return true if the game can start
+     * @throws IOException if reading the username fails
+     */
+    private boolean handshake() throws IOException {
+        socket.setSoTimeout(server.getOptions().getHandshakeTimeout());
+        try {
+            Handshake handshake = new Handshake(readLine(in));
+            // the thread of the client may wait until his room is loaded
+            this.protocol = server.startGame(handshake, out).join();
+            if (protocol.isRace()) {
+                ((RaceProtocol) protocol).join(new StreamSeat(handshake.isBinary(), out, server.getExecutor(), socket));
+            }
+            if (handshake.isBinary()) {
+                frames = new DataInputStream(in);
+            }
+        } catch (SocketTimeoutException | IllegalArgumentException | CompletionException e) {
+            return false;
+        }
+        socket.setSoTimeout(0);
+        return true;
+    }
+
+    /**
+     * Reads a line byte by byte, so nothing after the handshake is taken from the stream before
+     * it is known if lines or frames follow. Lines are capped like in {@link LineDecoder}.
+     * @param in the buffered stream of the socket
+     * @return the line without the line break, null if the client left before sending one
+     * @throws IOException if reading fails or the line is too long
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                return null;
+            }
+            if (line.size() >= LineDecoder.MAX_LINE_LENGTH) {
+                throw new IOException("Line longer than " + LineDecoder.MAX_LINE_LENGTH + " bytes");
+            }
+            line.write(b);
+        }
+        String msg = new String(line.toByteArray(), StandardCharsets.UTF_8);
+        return msg.endsWith("\r") ? msg.substring(0, msg.length() - 1) : msg;
+    }
+
+    /**
+     * @return true if the client already sent another message, so the answers can wait for it
+     * @throws IOException if the stream is closed
+     */
+    private boolean pipelined() throws IOException {
+        return in.available() > 0;
+    }
+
+    /**
+     * @return the next message of the client, null if he left
+     * @throws IOException if reading fails, the message is too long or the client sends something else than a guess
+     */
+    private String nextMessage() throws IOException {
+        if (frames == null) {
+            return readLine(in);
+        }
+        Frames.Frame frame;
+        try {
+            frame = Frames.read(frames);
+        } catch (EOFException e) {
+            return null;
+        }
+        if (frame.getOpcode() != Frames.GUESS) {
+            throw new IOException("Unexpected frame " + frame.getOpcode());
+        }
+        return frame.getText();
     }
 
     /**
      * MessageHandler for incoming Messages on Client Socket
      * <br>
-     * Incoming messages first will be checked if they are a single character or a whole word
+     * After the handshake incoming messages first will be checked if they are a single character or a whole word.
+     * The answers are only flushed when the client didn't pipeline any further message.
+     * A client which sends faster than its message rate has to wait for every further answer.
      */
     @Override
     public void run() {
         String msg;
         try{
-            out.println(this.hangman.showObscuredAnswer());
-            while(listening && (msg = in.readLine())!= null){
-                if(msg.length()==1){
-                    char c = msg.charAt(0);
-                    this.hangman.guess(c);
-                    if(this.hangman.isWon()){
-                        out.println("You won!");
-                        break;
-                    }
-                    else if(this.hangman.outOfTries()){
-                        out.println("You lost!");
-                        break;
-                    }
+            if(!handshake()){
+                this.shutdown();
+                return;
+            }
+            this.protocol.start();
+            this.protocol.flush();
+            started = true;
+            server.getAdmission().started();
+            server.getMetrics().handshake(System.nanoTime() - accepted);
+            while(listening && (msg = nextMessage())!= null){
+                lastActivity = System.nanoTime();
+                long delay = messages.delay(true);
+                if(delay > 0){
+                    server.getRateLimiter().throttledMessage();
+                    this.protocol.flush();
+                    TimeUnit.NANOSECONDS.sleep(delay);
                 }
-                else if(msg.length()>=1){
-                    this.hangman.aufloesen(msg);
-                    boolean b = this.hangman.isWon();
-                    if(b){
-                        out.println("You won!");
-                    }
-                    else if(!b){
-                        out.println("You lost!");
-                    }
+                if(this.protocol.handle(msg)){
                     break;
                 }
-                out.println("Remaining tries: " + this.hangman.getRemainingTries());
-                out.println(this.hangman.showObscuredAnswer());
-
+                if(!pipelined()){
+                    this.protocol.flush();
+                }
             }
-            this.shutdown();
         }catch(IOException e){
-            e.printStackTrace();
+            Log.warn("The game ended with an error", e);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        this.shutdown();
+    }
+
+    @Override
+    public long getCreated() {
+        return accepted;
+    }
+
+    @Override
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Ends the input of the socket, so the blocking read of the game thread returns
+     * and it shuts the game down itself, telling the player that he is disconnected
+     */
+    @Override
+    public void expire() {
+        try {
+            socket.shutdownInput();
+        } catch (IOException e) {
+            // the socket is already closed
         }
     }
 
     /**
-     * Clean shutdown of Game
+     * Clean shutdown of Game, only called by the thread of the game
      * Finally we are closing all open resources.
      */
     void shutdown() {
-        hangman.addToHighscore();
         listening = false;
-        out.println("[EXITING NOW]");
-
+        server.getSessions().deregister(this);
+        server.getAdmission().closed(started);
+        try {
+            if(protocol!=null)
+                server.endGame(protocol);
+        } catch (IOException e) {
+            // the player is gone anyways
+        }
 
         try {
             if(in!=null)
@@ -275,7 +886,7 @@ class Game implements Runnable {
             }
 
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Can't close the connection of a player", e);
         }
 
     }
@@ -0,0 +1,125 @@
+package hangman.server;
+
+import hangman.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of a running {@link Server}, cheap enough to be updated on every guess.
+ * <br>
+ * The counters are {@link LongAdder}s and the latencies striped {@link LatencyHistogram}s, so the
+ * threads of the games hardly ever contend on a single variable. Everything is only summed up
+ * when the stats are read with {@link #report(Leaderboard)}.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class ServerMetrics {
+
+    private long startedAt = System.nanoTime();
+
+    private LongAdder accepted = new LongAdder();
+    private LongAdder started = new LongAdder();
+    private LongAdder won = new LongAdder();
+    private LongAdder lost = new LongAdder();
+    private LongAdder abandoned = new LongAdder();
+    private LongAdder suspended = new LongAdder();
+    private LongAdder resumed = new LongAdder();
+    private LongAdder hints = new LongAdder();
+
+    private LatencyHistogram handshakes = new LatencyHistogram();
+    private LatencyHistogram guesses = new LatencyHistogram();
+
+    /**
+     * Counts an accepted connection
+     */
+    void accepted() {
+        accepted.increment();
+    }
+
+    /**
+     * @param nanos the time from accepting the connection until the first mask was written
+     */
+    void handshake(long nanos) {
+        handshakes.record(nanos);
+    }
+
+    /**
+     * Counts a new game, also every further round of a connection
+     */
+    void gameStarted() {
+        started.increment();
+    }
+
+    /**
+     * Counts a game which ended with a result
+     * @param won true if the player found the answer
+     */
+    void gameOver(boolean won) {
+        (won ? this.won : this.lost).increment();
+    }
+
+    /**
+     * Counts a game whose player left before it was over
+     */
+    void gameAbandoned() {
+        abandoned.increment();
+    }
+
+    /**
+     * Counts a game which was saved on shutdown, so its player can resume it after the restart
+     */
+    void gameSuspended() {
+        suspended.increment();
+    }
+
+    /**
+     * Counts a saved game a player resumed, it is counted as started as well
+     */
+    void gameResumed() {
+        resumed.increment();
+    }
+
+    /**
+     * Counts a hint a player asked for
+     */
+    void hint() {
+        hints.increment();
+    }
+
+    /**
+     * @param nanos the time the server needed to handle a message of a player, without the network
+     */
+    void guess(long nanos) {
+        guesses.record(nanos);
+    }
+
+    /**
+     * @return the number of games which are still running
+     */
+    long getActiveGames() {
+        return started.sum() - won.sum() - lost.sum() - abandoned.sum() - suspended.sum();
+    }
+
+    /**
+     * Sums up all counters, may be called from any thread while the games go on
+     * @param leaderboard the toplist whose lock and flush times are reported as well
+     * @return the stats as text, one metric per line
+     */
+    String report(Leaderboard leaderboard) {
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        long accepts = accepted.sum();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("uptime %.1fs%n", seconds));
+        report.append(String.format("accepted %d (%.1f/s)%n", accepts, accepts / seconds));
+        report.append(String.format("games active=%d started=%d won=%d lost=%d abandoned=%d suspended=%d resumed=%d hints=%d%n",
+                getActiveGames(), started.sum(), won.sum(), lost.sum(), abandoned.sum(), suspended.sum(), resumed.sum(), hints.sum()));
+        report.append("handshake ").append(handshakes.summary()).append(System.lineSeparator());
+        report.append("guess ").append(guesses.summary()).append(System.lineSeparator());
+        if (leaderboard != null) {
+            report.append("toplist lock wait ").append(leaderboard.getLockWait().summary()).append(System.lineSeparator());
+            report.append("toplist lock hold ").append(leaderboard.getLockHold().summary()).append(System.lineSeparator());
+            report.append("toplist flush ").append(leaderboard.getFlushTime().summary()).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+}
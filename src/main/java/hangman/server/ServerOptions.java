@@ -0,0 +1,476 @@
+package hangman.server;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Startup options of the {@link Server}, parsed from the command line.
+ * <br>
+ * The first argument is always the port, every further argument has the
+ * form --name=value, e.g. <code>5050 --mode=nio --loops=4</code>
+ * <br>
+ * The files of the server are kept in its data directory: the toplist, the saved games, the stats of the words
+ * and the image of the wordlist. It is taken from --data-dir, otherwise from the system property {@link #DATA_DIR},
+ * which the start script of the distribution sets, otherwise it is the sources of the project, for gradle server.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class ServerOptions {
+
+    /**
+     * The different ways the server can run its games
+     */
+    public enum Mode {
+        /** one platform thread per game, blocking sockets */
+        THREADS,
+        /** one virtual thread per game, blocking sockets */
+        VIRTUAL,
+        /** a few selector threads handling every game with non blocking channels */
+        NIO
+    }
+
+    /**
+     * The system property with the default data directory
+     */
+    public static final String DATA_DIR = "hangman.data";
+
+    private int port = 0;
+    private Path dataDir = Paths.get(System.getProperty(DATA_DIR, "src/main/java/hangman"));
+    private Path wordsPath;
+    private Mode mode = Mode.THREADS;
+    private int eventLoops = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private int handshakeTimeout = 5000;
+    private int statsPort = 0;
+    private int maxGames = 10000;
+    private int maxHandshakes = 1000;
+    private int acceptQueue = 1000;
+    private int retryAfter = 1000;
+    private int connectionRate = 20;
+    private int connectionBurst = 50;
+    private int messageRate = 50;
+    private int messageBurst = 100;
+    private int rateLimitAddresses = 65536;
+    private int idleTimeout = 300000;
+    private int sessionTimeout = 3600000;
+    private int clusterPort = 0;
+    private List<InetSocketAddress> clusterPeers = new ArrayList<>();
+    private int gossipInterval = 1000;
+    private Log.Level logLevel = Log.Level.INFO;
+    private double minWinRate = 0;
+    private double maxWinRate = 0;
+    private int maxRooms = 100;
+    private int roomIdle = 600000;
+    private int raceTick = 50;
+    private int raceStall = 10000;
+
+    /**
+     * Initialize with the defaults and the given port
+     * @param port the port on which the server should listen on
+     */
+    public ServerOptions(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Parses the command line arguments
+     * @param args the arguments in the format [port, --name=value, ...]
+     * @return the parsed options
+     * @throws IllegalArgumentException if an argument is unknown or can't be parsed
+     */
+    public static ServerOptions parse(String[] args) {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Missing port");
+        }
+        ServerOptions options;
+        try {
+            options = new ServerOptions(Integer.parseInt(args[0]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error while parsing your port");
+        }
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            int split = arg.indexOf('=');
+            if (!arg.startsWith("--") || split == -1) {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+            options.set(arg.substring(2, split), arg.substring(split + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Sets a single option
+     * @param name the name of the option without the leading dashes
+     * @param value the value of the option
+     */
+    private void set(String name, String value) {
+        try {
+            switch (name) {
+                case "data-dir":
+                    this.dataDir = Paths.get(value);
+                    break;
+                case "words":
+                    this.wordsPath = Paths.get(value);
+                    break;
+                case "mode":
+                    this.mode = Mode.valueOf(value.toUpperCase());
+                    break;
+                case "loops":
+                    this.eventLoops = Integer.parseInt(value);
+                    if (this.eventLoops < 1) {
+                        throw new IllegalArgumentException("There has to be at least one event loop");
+                    }
+                    break;
+                case "handshake-timeout":
+                    this.handshakeTimeout = Integer.parseInt(value);
+                    if (this.handshakeTimeout < 0) {
+                        throw new IllegalArgumentException("The handshake timeout can't be negative");
+                    }
+                    break;
+                case "idle-timeout":
+                    this.idleTimeout = Integer.parseInt(value);
+                    if (this.idleTimeout < 0) {
+                        throw new IllegalArgumentException("The idle timeout can't be negative");
+                    }
+                    break;
+                case "session-timeout":
+                    this.sessionTimeout = Integer.parseInt(value);
+                    if (this.sessionTimeout < 0) {
+                        throw new IllegalArgumentException("The session timeout can't be negative");
+                    }
+                    break;
+                case "max-games":
+                    this.maxGames = nonNegative(name, value);
+                    break;
+                case "max-handshakes":
+                    this.maxHandshakes = nonNegative(name, value);
+                    break;
+                case "accept-queue":
+                    this.acceptQueue = nonNegative(name, value);
+                    break;
+                case "retry-after":
+                    this.retryAfter = nonNegative(name, value);
+                    break;
+                case "connection-rate":
+                    this.connectionRate = nonNegative(name, value);
+                    break;
+                case "connection-burst":
+                    this.connectionBurst = nonNegative(name, value);
+                    break;
+                case "message-rate":
+                    this.messageRate = nonNegative(name, value);
+                    break;
+                case "message-burst":
+                    this.messageBurst = nonNegative(name, value);
+                    break;
+                case "rate-limit-addresses":
+                    this.rateLimitAddresses = nonNegative(name, value);
+                    if (this.rateLimitAddresses == 0) {
+                        throw new IllegalArgumentException("At least one address has to be remembered");
+                    }
+                    break;
+                case "cluster-port":
+                    this.clusterPort = Integer.parseInt(value);
+                    if (this.clusterPort < 0 || this.clusterPort > 65535) {
+                        throw new IllegalArgumentException("The cluster port has to be between 1 and 65535, or 0 to turn it off");
+                    }
+                    break;
+                case "cluster-peers":
+                    this.clusterPeers = peers(value);
+                    break;
+                case "gossip-interval":
+                    this.gossipInterval = Integer.parseInt(value);
+                    if (this.gossipInterval < 1) {
+                        throw new IllegalArgumentException("The gossip interval has to be at least 1 ms");
+                    }
+                    break;
+                case "win-rate":
+                    int dash = value.indexOf('-');
+                    if (dash == -1) {
+                        throw new IllegalArgumentException("The win rate has to be a band like 0.4-0.7");
+                    }
+                    this.minWinRate = Double.parseDouble(value.substring(0, dash));
+                    this.maxWinRate = Double.parseDouble(value.substring(dash + 1));
+                    if (minWinRate < 0 || maxWinRate > 1 || minWinRate > maxWinRate) {
+                        throw new IllegalArgumentException("The win rate band has to be within 0-1");
+                    }
+                    break;
+                case "max-rooms":
+                    this.maxRooms = nonNegative(name, value);
+                    break;
+                case "room-idle":
+                    this.roomIdle = Integer.parseInt(value);
+                    if (this.roomIdle < 1) {
+                        throw new IllegalArgumentException("The room idle time has to be at least 1 ms");
+                    }
+                    break;
+                case "race-tick":
+                    this.raceTick = Integer.parseInt(value);
+                    if (this.raceTick < 1) {
+                        throw new IllegalArgumentException("The race tick has to be at least 1 ms");
+                    }
+                    break;
+                case "race-stall":
+                    this.raceStall = Integer.parseInt(value);
+                    if (this.raceStall < 1) {
+                        throw new IllegalArgumentException("The race stall time has to be at least 1 ms");
+                    }
+                    break;
+                case "log-level":
+                    this.logLevel = Log.Level.valueOf(value.toUpperCase());
+                    break;
+                case "stats-port":
+                    this.statsPort = Integer.parseInt(value);
+                    if (this.statsPort < 0 || this.statsPort > 65535) {
+                        throw new IllegalArgumentException("The stats port has to be between 1 and 65535, or 0 to turn it off");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error while parsing --" + name + ": " + value);
+        }
+    }
+
+    /**
+     * @param name the name of the option
+     * @param value the value of the option
+     * @return the parsed value
+     * @throws IllegalArgumentException if the value is negative
+     */
+    private static int nonNegative(String name, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed < 0) {
+            throw new IllegalArgumentException("--" + name + " can't be negative");
+        }
+        return parsed;
+    }
+
+    /**
+     * @param value the addresses in the format host:port,host:port
+     * @return the resolved addresses
+     * @throws IllegalArgumentException if an address has no port
+     */
+    private static List<InetSocketAddress> peers(String value) {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : value.split(",")) {
+            int split = peer.lastIndexOf(':');
+            if (split == -1) {
+                throw new IllegalArgumentException("Missing port of the peer " + peer);
+            }
+            InetSocketAddress address = new InetSocketAddress(peer.substring(0, split).trim(), Integer.parseInt(peer.substring(split + 1).trim()));
+            if (address.isUnresolved()) {
+                throw new IllegalArgumentException("Unknown host of the peer " + peer);
+            }
+            peers.add(address);
+        }
+        return peers;
+    }
+
+    /**
+     * @return the port on which the server should listen on
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return the directory with the toplist, the saved games and the other files the server writes
+     */
+    public Path getDataDir() {
+        return dataDir;
+    }
+
+    /**
+     * @return the wordlist, words.txt in the data directory unless another one was given
+     */
+    public Path getWordsPath() {
+        return wordsPath != null ? wordsPath : dataDir.resolve("words.txt");
+    }
+
+    /**
+     * @return how the games are executed
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the number of selector threads in {@link Mode#NIO}
+     */
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    /**
+     * @return milliseconds a client has to send his username, 0 waits forever
+     */
+    public int getHandshakeTimeout() {
+        return handshakeTimeout;
+    }
+
+    /**
+     * @return milliseconds a player may not send anything before his connection is closed, 0 waits forever
+     */
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @return milliseconds a connection may be open at most, 0 for no limit
+     */
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * @return the number of connections which may play or shake hands at once, 0 for no limit
+     */
+    public int getMaxGames() {
+        return maxGames;
+    }
+
+    /**
+     * @return the number of connections which may wait for their handshake at once, 0 for no limit
+     */
+    public int getMaxHandshakes() {
+        return maxHandshakes;
+    }
+
+    /**
+     * @return the number of connections which may wait for a free game before they are rejected
+     */
+    public int getAcceptQueue() {
+        return acceptQueue;
+    }
+
+    /**
+     * @return milliseconds after which a rejected client should try again
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return new connections per second and remote address, 0 for no limit
+     */
+    public int getConnectionRate() {
+        return connectionRate;
+    }
+
+    /**
+     * @return new connections a remote address may open at once before the rate applies
+     */
+    public int getConnectionBurst() {
+        return connectionBurst;
+    }
+
+    /**
+     * @return messages per second and remote address, 0 for no limit
+     */
+    public int getMessageRate() {
+        return messageRate;
+    }
+
+    /**
+     * @return messages a remote address may send at once before the rate applies
+     */
+    public int getMessageBurst() {
+        return messageBurst;
+    }
+
+    /**
+     * @return the number of remote addresses whose rates are remembered
+     */
+    public int getRateLimitAddresses() {
+        return rateLimitAddresses;
+    }
+
+    /**
+     * @return the local port on which the stats are served over HTTP, 0 if they aren't
+     */
+    public int getStatsPort() {
+        return statsPort;
+    }
+
+    /**
+     * @return the local UDP port on which the toplist is gossiped with the peers, 0 if it isn't
+     */
+    public int getClusterPort() {
+        return clusterPort;
+    }
+
+    /**
+     * @return the UDP addresses of the other servers of the cluster
+     */
+    public List<InetSocketAddress> getClusterPeers() {
+        return clusterPeers;
+    }
+
+    /**
+     * @return milliseconds between two rounds of gossip
+     */
+    public int getGossipInterval() {
+        return gossipInterval;
+    }
+
+    /**
+     * @return the lowest win rate of the words which are picked, if there is a band
+     */
+    public double getMinWinRate() {
+        return minWinRate;
+    }
+
+    /**
+     * @return the highest win rate of the words which are picked, 0 if words aren't picked by their win rate
+     */
+    public double getMaxWinRate() {
+        return maxWinRate;
+    }
+
+    /**
+     * @return the number of rooms which may be open at once, 0 turns the rooms off
+     */
+    public int getMaxRooms() {
+        return maxRooms;
+    }
+
+    /**
+     * @return milliseconds a room without players stays open
+     */
+    public int getRoomIdle() {
+        return roomIdle;
+    }
+
+    /**
+     * @return milliseconds between two broadcasts of a race
+     */
+    public int getRaceTick() {
+        return raceTick;
+    }
+
+    /**
+     * @return milliseconds a racer may take to receive a state before he is dropped
+     */
+    public int getRaceStall() {
+        return raceStall;
+    }
+
+    /**
+     * @return the lowest level of the lines the server logs
+     */
+    Log.Level getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * @return the usage line printed if the arguments are wrong
+     */
+    public static String usage() {
+        return "Usage: gradle server --args=\"[portNumber] [--data-dir=path] [--words=path] [--mode=threads|virtual|nio] [--loops=n] [--handshake-timeout=ms] [--idle-timeout=ms] [--session-timeout=ms] [--max-games=n] [--max-handshakes=n] [--accept-queue=n] [--retry-after=ms] [--connection-rate=perSecond] [--connection-burst=n] [--message-rate=perSecond] [--message-burst=n] [--rate-limit-addresses=n] [--stats-port=n] [--cluster-port=n] [--cluster-peers=host:port,...] [--gossip-interval=ms] [--log-level=debug|info|warn|error] [--win-rate=min-max] [--max-rooms=n] [--room-idle=ms] [--race-tick=ms] [--race-stall=ms]\"";
+    }
+}
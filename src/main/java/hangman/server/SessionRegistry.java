@@ -0,0 +1,185 @@
+package hangman.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Every open connection of a {@link Server}, no matter if it is a {@link Game} or a {@link NioSession}.
+ * <br>
+ * A session registers itself when it is accepted and deregisters itself when it is closed,
+ * so a finished game isn't referenced anymore. Each session has one timeout in a
+ * {@link TimerWheel}. When it fires it checks when the session last received something:
+ * a session which was idle for too long, didn't finish its handshake in time or is open
+ * longer than the session timeout is expired, any other is checked again at its next deadline.
+ * So a message of a player only writes a timestamp instead of rescheduling a timer.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class SessionRegistry {
+
+    /**
+     * An open connection the registry can expire
+     */
+    interface Session {
+
+        /**
+         * @return when the session was accepted, in nanoseconds of {@link System#nanoTime()}
+         */
+        long getCreated();
+
+        /**
+         * @return when the session last received something, in nanoseconds of {@link System#nanoTime()}
+         */
+        long getLastActivity();
+
+        /**
+         * @return true if the handshake is done and a game was started
+         */
+        boolean isStarted();
+
+        /**
+         * Ends the session from another thread, the player is still told that the connection will be closed
+         */
+        void expire();
+    }
+
+    private Map<Session, TimerWheel.Timeout> sessions = new ConcurrentHashMap<>();
+    private TimerWheel wheel = new TimerWheel(100, 512, "session-timeouts");
+    private LongAdder expired = new LongAdder();
+
+    private long handshakeTimeout;
+    private long idleTimeout;
+    private long sessionTimeout;
+
+    /**
+     * Initialize the registry, a timeout of 0 is never enforced
+     * @param handshakeTimeout milliseconds a client has to send his handshake
+     * @param idleTimeout milliseconds a session may be idle
+     * @param sessionTimeout milliseconds a session may be open
+     */
+    SessionRegistry(long handshakeTimeout, long idleTimeout, long sessionTimeout) {
+        this.handshakeTimeout = TimeUnit.MILLISECONDS.toNanos(handshakeTimeout);
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        this.sessionTimeout = TimeUnit.MILLISECONDS.toNanos(sessionTimeout);
+    }
+
+    /**
+     * Adds a new session and schedules its first check
+     * @param session the accepted session
+     */
+    void register(Session session) {
+        sessions.put(session, schedule(session, System.nanoTime()));
+    }
+
+    /**
+     * Removes a closed session, it isn't checked anymore. Calling it twice does nothing.
+     * @param session the closed session
+     */
+    void deregister(Session session) {
+        TimerWheel.Timeout timeout = sessions.remove(session);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * @param session a registered session
+     * @param now the current time in nanoseconds
+     * @return the timeout for the next check of the session
+     */
+    private TimerWheel.Timeout schedule(Session session, long now) {
+        long deadline = deadline(session);
+        long delay = deadline == Long.MAX_VALUE ? TimeUnit.HOURS.toMillis(1) : TimeUnit.NANOSECONDS.toMillis(deadline - now) + 1;
+        return wheel.schedule(() -> check(session), delay);
+    }
+
+    /**
+     * @param session a registered session
+     * @return the earliest time at which the session has to be expired, Long.MAX_VALUE if never
+     */
+    private long deadline(Session session) {
+        long deadline = Long.MAX_VALUE;
+        if (sessionTimeout > 0) {
+            deadline = session.getCreated() + sessionTimeout;
+        }
+        long idle = idleTimeout;
+        if (!session.isStarted() && handshakeTimeout > 0) {
+            idle = idle > 0 ? Math.min(idle, handshakeTimeout) : handshakeTimeout;
+        }
+        if (idle > 0) {
+            deadline = Math.min(deadline, session.getLastActivity() + idle);
+        }
+        return deadline;
+    }
+
+    /**
+     * Expires the session if one of its deadlines passed, otherwise checks it again later.
+     * Runs on the thread of the timer wheel.
+     * @param session the session to check
+     */
+    private void check(Session session) {
+        if (!sessions.containsKey(session)) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - deadline(session) >= 0) {
+            sessions.remove(session);
+            expired.increment();
+            session.expire();
+        } else {
+            TimerWheel.Timeout next = schedule(session, now);
+            if (sessions.replace(session, next) == null) {
+                next.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return the timer wheel of the sessions, other short timeouts may use it as well
+     */
+    TimerWheel getWheel() {
+        return wheel;
+    }
+
+    /**
+     * @return the number of open sessions
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the number of sessions which were closed because of a timeout
+     */
+    long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Expires every open session and waits until they deregistered themselves
+     * @param timeoutMillis how long to wait at most
+     */
+    void expireAll(long timeoutMillis) {
+        for (Session session : sessions.keySet()) {
+            session.expire();
+        }
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!sessions.isEmpty() && System.nanoTime() - end < 0) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the timer wheel
+     */
+    void close() {
+        wheel.close();
+    }
+}
@@ -0,0 +1,72 @@
+package hangman.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the stats of a {@link Server} as plain text on <code>http://127.0.0.1:port/stats</code>,
+ * so a scraper can poll them. It only listens on the loopback address and answers
+ * on its own thread, the games never wait for it.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class StatsEndpoint {
+
+    private HttpServer httpServer;
+    private ExecutorService executorService;
+
+    /**
+     * Starts the endpoint
+     * @param server the server whose stats are served
+     * @param port the local port to listen on
+     * @throws IOException if the port can't be bound
+     */
+    StatsEndpoint(Server server, int port) throws IOException {
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executorService = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "stats-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.createContext("/stats", exchange -> respond(exchange, server.stats()));
+        httpServer.setExecutor(executorService);
+        httpServer.start();
+    }
+
+    /**
+     * @param exchange the request
+     * @param text the answer
+     * @throws IOException if the answer can't be sent
+     */
+    private static void respond(HttpExchange exchange, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return the port the endpoint listens on
+     */
+    int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Stops the endpoint
+     */
+    void close() {
+        httpServer.stop(0);
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,74 @@
+package hangman.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The seat of a blocking {@link Game}. The states are written by a task on the executor of the server, so the
+ * ticker never waits for a socket. Only one task writes at a time, it writes until no state is left.
+ * The answers of the game thread go to the same buffered stream, whose writes are synchronized.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class StreamSeat extends Races.Seat implements Runnable {
+
+    private OutputStream out;
+    private Executor executor;
+    private Closeable connection;
+    private AtomicBoolean writing = new AtomicBoolean(false);
+
+    /**
+     * @param binary true if the player gets frames instead of text lines
+     * @param out the stream of the connection
+     * @param executor runs the task writing the states
+     * @param connection closed if the player stalls, which also ends a write blocking on it
+     */
+    StreamSeat(boolean binary, OutputStream out, Executor executor, Closeable connection) {
+        super(binary);
+        this.out = out;
+        this.executor = executor;
+        this.connection = connection;
+    }
+
+    @Override
+    protected void wakeup() {
+        if (writing.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * Writes the latest state until there is none left
+     */
+    @Override
+    public void run() {
+        try {
+            byte[] state;
+            while ((state = take()) != null) {
+                out.write(state);
+                out.flush();
+            }
+            sent();
+        } catch (IOException e) {
+            // the player is gone, his game thread leaves the race
+            return;
+        }
+        writing.set(false);
+        // a state which arrived after the last take didn't wake anybody up
+        if (hasNext()) {
+            wakeup();
+        }
+    }
+
+    @Override
+    protected void drop() {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // the connection is closed anyways
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package hangman.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timer wheel for the many timeouts of the open sessions.
+ * <br>
+ * Time is cut into ticks and every timeout is put into the slot of the tick it expires in,
+ * a timeout further away than one turn of the wheel waits there for the missing turns.
+ * Scheduling and cancelling only add the timeout to a queue, the slots are only touched
+ * by the thread of the wheel. So both are cheap from any thread, and a cancelled timeout is
+ * unlinked with the next tick instead of staying in memory until it would have expired.
+ * The price is a precision of one tick, which is plenty for timeouts of seconds or minutes.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class TimerWheel implements Runnable {
+
+    private long tickNanos;
+    private Timeout[] slots;
+    private long tick = 0;
+    private long startedAt = System.nanoTime();
+
+    private Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /**
+     * Initialize the wheel and start its thread
+     * @param tickMillis the length of a tick in milliseconds
+     * @param size the number of slots, one turn of the wheel is size * tickMillis
+     * @param name the name of the thread
+     */
+    TimerWheel(long tickMillis, int size, String name) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.slots = new Timeout[size];
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs the task after the delay on the thread of the wheel, so it has to be short.
+     * May be called from any thread.
+     * @param task what to do when the timeout expires
+     * @param delayMillis milliseconds from now
+     * @return the timeout, which can still be cancelled
+     */
+    Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel tick by tick until {@link #close()} is called
+     */
+    @Override
+    public void run() {
+        while (running) {
+            long deadline = startedAt + (tick + 1) * tickNanos;
+            long sleep = deadline - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            Timeout timeout;
+            while ((timeout = cancelled.poll()) != null) {
+                unlink(timeout);
+            }
+            while ((timeout = scheduled.poll()) != null) {
+                if (!timeout.cancelled) {
+                    link(timeout);
+                }
+            }
+            expire(slots[(int) (tick % slots.length)]);
+            tick++;
+        }
+    }
+
+    /**
+     * Puts the timeout into the slot of the tick it expires in
+     * @param timeout a timeout which isn't in any slot yet
+     */
+    private void link(Timeout timeout) {
+        long ticks = Math.max(tick, (timeout.deadline - startedAt) / tickNanos);
+        timeout.rounds = (ticks - tick) / slots.length;
+        timeout.slot = (int) (ticks % slots.length);
+        timeout.next = slots[timeout.slot];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        slots[timeout.slot] = timeout;
+        timeout.linked = true;
+    }
+
+    /**
+     * Removes the timeout from its slot
+     * @param timeout a timeout, which may not be in a slot
+     */
+    private void unlink(Timeout timeout) {
+        if (!timeout.linked) {
+            return;
+        }
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.linked = false;
+    }
+
+    /**
+     * Runs every timeout of the slot which is due in this turn of the wheel
+     * @param first the first timeout of the slot
+     */
+    private void expire(Timeout first) {
+        Timeout timeout = first;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                unlink(timeout);
+                if (!timeout.cancelled) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        Log.error("A timeout failed", e);
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Stops the thread of the wheel, pending timeouts are dropped
+     */
+    void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    /**
+     * A task waiting in a {@link TimerWheel}
+     */
+    static class Timeout {
+        private TimerWheel wheel;
+        private Runnable task;
+        private long deadline;
+        private volatile boolean cancelled = false;
+
+        private long rounds;
+        private int slot;
+        private boolean linked = false;
+        private Timeout previous;
+        private Timeout next;
+
+        /**
+         * @param wheel the wheel the timeout is scheduled in
+         * @param task what to do when the timeout expires
+         * @param deadline when the timeout expires, in nanoseconds of {@link System#nanoTime()}
+         */
+        private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Makes sure the task isn't run anymore, may be called from any thread
+         */
+        void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                wheel.cancelled.add(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package hangman.server;
+
+import hangman.HintIndex;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link WordDictionary} together with everything the server precomputes about its words.
+ * A catalog never changes, a reloaded word list gets a new one.
+ * <br>
+ * Every word gets a hardness score and the words are split into thirds by it, one bucket per
+ * {@link Difficulty}. Picking a word of a difficulty is then a random index into its bucket.
+ * The {@link PackedDictionary} scores the words when it is packed, so a mapped dictionary file
+ * is split without reading its words. The hardness of a word is
+ * <pre>
+ * mean surprisal of its distinct letters * distinct letters / length
+ * </pre>
+ * where the surprisal of a letter is ln(words / words containing the letter). Short words
+ * made of many different rare letters are hard, long words repeating common letters are easy.
+ * <br>
+ * The {@link HintIndex} for the hints takes far more memory than the words, so it is only built once
+ * a player asks for the first hint of the catalog. It is built in the background on a single thread shared
+ * by all catalogs, so neither the loading thread nor a player waits for it. It belongs to the catalog and
+ * is dropped together with it when the word list is reloaded.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+class WordCatalog {
+
+    private static final ExecutorService INDEXER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hint-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WordDictionary dictionary;
+    private int[][] buckets = new int[Difficulty.values().length][];
+    private volatile HintIndex hints;
+    private AtomicBoolean indexing = new AtomicBoolean();
+
+    /**
+     * Builds the difficulty buckets out of the order the dictionary knows,
+     * only if it doesn't know it every word is read twice to score it.
+     * @param dictionary the words of the catalog
+     */
+    WordCatalog(WordDictionary dictionary) {
+        this.dictionary = dictionary;
+        int[] sorted = dictionary.byHardness();
+        if (sorted == null) {
+            sorted = sortByHardness(dictionary);
+        }
+        int size = sorted.length;
+        int third = size / 3;
+        buckets[Difficulty.EASY.ordinal()] = Arrays.copyOfRange(sorted, 0, third);
+        buckets[Difficulty.MEDIUM.ordinal()] = Arrays.copyOfRange(sorted, third, size - third);
+        buckets[Difficulty.HARD.ordinal()] = Arrays.copyOfRange(sorted, size - third, size);
+    }
+
+    /**
+     * Builds the index of the hints, runs on the indexer thread
+     */
+    private void buildHints() {
+        long begin = System.nanoTime();
+        hints = new HintIndex(dictionary.size(), dictionary::get);
+        Log.info("Built the hint index of {} words in {} ms", dictionary.size(), (System.nanoTime() - begin) / 1000000);
+    }
+
+    /**
+     * Scores every word, this reads every word twice
+     * @param dictionary the words
+     * @return the indices of the words sorted by their hardness, the easiest first
+     */
+    static int[] sortByHardness(WordDictionary dictionary) {
+        int size = dictionary.size();
+        int[] wordsWithLetter = new int[Character.MAX_VALUE + 1];
+        for (int i = 0; i < size; i++) {
+            for (char c : distinctLetters(dictionary.get(i))) {
+                wordsWithLetter[c]++;
+            }
+        }
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            String word = dictionary.get(i);
+            char[] letters = distinctLetters(word);
+            double surprisal = 0;
+            for (char c : letters) {
+                surprisal += Math.log((double) size / wordsWithLetter[c]);
+            }
+            float hardness = letters.length == 0 ? 0 : (float) (surprisal / word.length());
+            // positive floats sort like their bits, so score and index fit into one primitive long
+            sorted[i] = ((long) Float.floatToIntBits(hardness) << 32) | i;
+        }
+        Arrays.sort(sorted);
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = (int) sorted[i];
+        }
+        return indices;
+    }
+
+    /**
+     * @param word the word
+     * @return every letter of the word once, sorted
+     */
+    static char[] distinctLetters(String word) {
+        char[] letters = word.toCharArray();
+        Arrays.sort(letters);
+        int count = 0;
+        for (int i = 0; i < letters.length; i++) {
+            if (i == 0 || letters[i] != letters[i - 1]) {
+                letters[count++] = letters[i];
+            }
+        }
+        return Arrays.copyOf(letters, count);
+    }
+
+    /**
+     * @return the words of this catalog
+     */
+    WordDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * May be called from any thread, it never waits for the index. The first call starts building it.
+     * @return the index of the hints over the words of this catalog, null while it is still built
+     */
+    HintIndex getHints() {
+        HintIndex index = hints;
+        if (index == null && indexing.compareAndSet(false, true)) {
+            INDEXER.execute(this::buildHints);
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of words
+     */
+    int size() {
+        return dictionary.size();
+    }
+
+    /**
+     * Picks a random word of the difficulty, may be called from any thread.
+     * If there are too few words for the bucket, any word is picked.
+     * @param difficulty how hard the word should be
+     * @return the index of the word
+     */
+    int pick(Difficulty difficulty) {
+        int[] bucket = buckets[difficulty.ordinal()];
+        if (bucket == null || bucket.length == 0) {
+            return ThreadLocalRandom.current().nextInt(dictionary.size());
+        }
+        return bucket[ThreadLocalRandom.current().nextInt(bucket.length)];
+    }
+
+    /**
+     * @param index the index of the word
+     * @return the word at the given index
+     */
+    String word(int index) {
+        return dictionary.get(index);
+    }
+}
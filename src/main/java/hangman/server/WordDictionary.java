@@ -0,0 +1,30 @@
+package hangman.server;
+
+/**
+ * The words a {@link Server} picks its answers from.
+ * Every word is addressed by its index, so picking a random word
+ * is just a random index.
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public interface WordDictionary {
+
+    /**
+     * @return the number of words
+     */
+    int size();
+
+    /**
+     * @param index the index of the word, between 0 and {@link #size()} - 1
+     * @return the word at the given index
+     */
+    String get(int index);
+
+    /**
+     * @return the indices of the words sorted by their hardness, see {@link WordCatalog},
+     * null if the dictionary doesn't know them and the catalog has to score the words itself
+     */
+    default int[] byHardness() {
+        return null;
+    }
+}
@@ -0,0 +1,129 @@
+package hangman;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests writing and reading the {@link Frames} of the binary protocol
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class FramesTest {
+
+    /**
+     * @param bytes the frames
+     * @return a stream to read the frames from
+     */
+    private static DataInputStream in(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * A text frame is the length of opcode and payload, the opcode and the UTF-8 payload
+     * @throws IOException if the frame can't be encoded
+     */
+    @Test
+    public void encodesText() throws IOException {
+        assertArrayEquals(new byte[]{0, 3, Frames.GUESS, (byte) 0xc3, (byte) 0xa4}, Frames.encodeText(Frames.GUESS, "\u00e4"));
+    }
+
+    /**
+     * Every kind of frame reads back as it was written
+     * @throws IOException if the frames can't be written or read
+     */
+    @Test
+    public void roundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Frames.writeText(out, Frames.NOTICE, "[HINT]e");
+        Frames.writeState(out, 7, Frames.RUNNING, "_a_a_a");
+        Frames.writeState(out, 300, Frames.WON, "banana");
+        Frames.writeEmpty(out, Frames.EXIT);
+        DataInputStream in = in(out.toByteArray());
+
+        Frames.Frame notice = Frames.read(in);
+        assertEquals(Frames.NOTICE, notice.getOpcode());
+        assertEquals("[HINT]e", notice.getText());
+
+        Frames.Frame state = Frames.read(in);
+        assertEquals(Frames.STATE, state.getOpcode());
+        assertEquals(7, state.getRemainingTries());
+        assertEquals(Frames.RUNNING, state.getResult());
+        assertEquals("_a_a_a", state.getText());
+
+        Frames.Frame won = Frames.read(in);
+        assertEquals(255, won.getRemainingTries());
+        assertEquals(Frames.WON, won.getResult());
+
+        Frames.Frame exit = Frames.read(in);
+        assertEquals(Frames.EXIT, exit.getOpcode());
+        assertEquals("", exit.getText());
+        assertEquals(0, in.available());
+    }
+
+    /**
+     * The longest payload still fits, a longer one is rejected
+     * @throws IOException if the longest frame can't be encoded
+     */
+    @Test
+    public void longestFrame() throws IOException {
+        char[] text = new char[Frames.MAX_LENGTH - 1];
+        Arrays.fill(text, 'a');
+        assertEquals(Frames.MAX_LENGTH + 2, Frames.encodeText(Frames.NOTICE, new String(text)).length);
+        try {
+            Frames.encodeText(Frames.NOTICE, new String(text) + "a");
+            fail("The frame is too long");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A frame without opcode is rejected
+     * @throws IOException because the frame has no opcode
+     */
+    @Test(expected = IOException.class)
+    public void rejectsEmptyFrames() throws IOException {
+        Frames.read(in(new byte[]{0, 0}));
+    }
+
+    /**
+     * A frame longer than {@link Frames#MAX_LENGTH} is rejected before its payload is read,
+     * so the longest frame doesn't start with the byte '[' of {@link Frames#BUSY}
+     * @throws IOException because the frame is too long
+     */
+    @Test(expected = IOException.class)
+    public void rejectsTooLongFrames() throws IOException {
+        assertTrue(Frames.MAX_LENGTH >>> 8 < '[');
+        int length = Frames.MAX_LENGTH + 1;
+        Frames.read(in(new byte[]{(byte) (length >>> 8), (byte) length, Frames.GUESS}));
+    }
+
+    /**
+     * A state frame without tries and result is rejected
+     * @throws IOException because the frame is too short
+     */
+    @Test(expected = IOException.class)
+    public void rejectsShortStates() throws IOException {
+        Frames.read(in(new byte[]{0, 2, Frames.STATE, 3}));
+    }
+
+    /**
+     * A connection closed in the middle of a frame ends the stream
+     * @throws IOException because the frame is cut off
+     */
+    @Test(expected = EOFException.class)
+    public void rejectsCutOffFrames() throws IOException {
+        Frames.read(in(new byte[]{0, 5, Frames.GUESS, 'a'}));
+    }
+}
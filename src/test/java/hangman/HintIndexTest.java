@@ -0,0 +1,132 @@
+package hangman;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the hints given by the {@link HintIndex}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class HintIndexTest {
+
+    private static final List<String> WORDS = Arrays.asList("haus", "maus", "baum", "raus", "hund", "hand", "anna", "aaba");
+
+    /**
+     * @param words the words of the dictionary
+     * @return the index of the words
+     */
+    private static HintIndex index(List<String> words) {
+        return new HintIndex(words.size(), words::get);
+    }
+
+    /**
+     * Without any guess the hint is the letter most words of the length contain
+     */
+    @Test
+    public void mostCommonLetterFirst() {
+        HintIndex index = index(WORDS);
+        assertEquals(WORDS.size(), index.size());
+        assertEquals('a', index.hint("____", ""));
+    }
+
+    /**
+     * A missed letter rules out every word containing it
+     */
+    @Test
+    public void missRulesOutWords() {
+        assertEquals('d', index(WORDS).hint("____", "a"));
+    }
+
+    /**
+     * A revealed letter rules out words which have it at a hidden position as well
+     */
+    @Test
+    public void revealedLetterRulesOutHiddenPositions() {
+        assertEquals('n', index(WORDS).hint("a__a", "a"));
+    }
+
+    /**
+     * If no word matches, the best letter of all words of the length is taken
+     */
+    @Test
+    public void noMatchFallsBackToTheLength() {
+        char hint = index(WORDS).hint("x___", "x");
+        assertTrue(hint != 0 && hint != 'x');
+    }
+
+    /**
+     * There is no hint for an unknown length or once every letter is guessed
+     */
+    @Test
+    public void noHintLeft() {
+        HintIndex index = index(WORDS);
+        assertEquals(0, index.hint("__", ""));
+        assertEquals(0, index.hint("__________", ""));
+        assertEquals(0, index.hint("hand", "hand"));
+    }
+
+    /**
+     * Counting the letters of many words in parallel gives the same hint as counting them one by one
+     */
+    @Test
+    public void parallelCountMatchesSimpleCount() {
+        Random random = new Random(42);
+        String[] words = new String[HintIndex.PARALLEL_WORDS + 1000];
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[6];
+            for (int p = 0; p < word.length; p++) {
+                word[p] = (char) ('a' + random.nextInt(10));
+            }
+            words[i] = new String(word);
+        }
+        HintIndex index = new HintIndex(words.length, i -> words[i]);
+        assertEquals(expected(words, "______", ""), index.hint("______", ""));
+        assertEquals(expected(words, "______", "j"), index.hint("______", "j"));
+        assertEquals(expected(words, "a_____", "a"), index.hint("a_____", "a"));
+    }
+
+    /**
+     * @param words the words of the dictionary
+     * @param mask the mask of the game
+     * @param guessed every letter guessed so far
+     * @return the letter most matching words contain, the lowest one of a tie
+     */
+    private static char expected(String[] words, String mask, String guessed) {
+        int[] counts = new int[Character.MAX_VALUE + 1];
+        for (String word : words) {
+            if (matches(word, mask, guessed)) {
+                word.chars().distinct().forEach(c -> counts[c]++);
+            }
+        }
+        char best = 0;
+        for (int c = 0; c < counts.length; c++) {
+            if (guessed.indexOf(c) == -1 && counts[c] > counts[best]) {
+                best = (char) c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param word a word of the dictionary
+     * @param mask the mask of the game
+     * @param guessed every letter guessed so far
+     * @return true if the game could have the word as answer
+     */
+    private static boolean matches(String word, String mask, String guessed) {
+        for (int p = 0; p < mask.length(); p++) {
+            char c = mask.charAt(p);
+            if (c == HintIndex.HIDDEN ? guessed.indexOf(word.charAt(p)) != -1 : c != word.charAt(p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+package hangman;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the percentiles of the {@link LatencyHistogram}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * An empty histogram has no latency at all
+     */
+    @Test
+    public void emptyIsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    /**
+     * Small values are counted exactly
+     */
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(5.5, histogram.getMean(), 0.001);
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(9, histogram.getValueAtPercentile(90));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Large values are off by less than the width of their bucket, about three percent
+     */
+    @Test
+    public void largeValuesAreClose() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = {1000, 123456, 7654321, 3000000000L};
+        for (long value : values) {
+            LatencyHistogram single = new LatencyHistogram();
+            single.record(value);
+            long found = single.getValueAtPercentile(50);
+            assertTrue(found >= value && found <= value + value / 32);
+            histogram.record(value);
+        }
+        assertTrue(histogram.getValueAtPercentile(100) >= 3000000000L);
+        assertTrue(histogram.getValueAtPercentile(25) < 1100);
+    }
+
+    /**
+     * A negative latency counts as 0
+     */
+    @Test
+    public void negativeIsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(100));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    /**
+     * Adding another histogram gives the same percentiles as recording its values
+     */
+    @Test
+    public void addMergesTheCounts() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            first.record(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            second.record(20);
+        }
+        first.add(second);
+        assertEquals(100, first.getCount());
+        assertEquals(10, first.getValueAtPercentile(90));
+        assertEquals(20, first.getValueAtPercentile(91));
+        assertEquals(11, first.getMean(), 0.001);
+        assertTrue(first.summary().startsWith("count=100 "));
+    }
+
+    /**
+     * Values recorded by many threads at once are all counted, whatever stripe they land in
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void countsEveryThread() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            long value = i + 1;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    histogram.record(value);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8000, histogram.getCount());
+        assertEquals(1, histogram.getValueAtPercentile(12.5));
+        assertEquals(4, histogram.getValueAtPercentile(50));
+        assertEquals(8, histogram.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,109 @@
+package hangman.server;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests admitting, queueing and rejecting connections in the {@link AdmissionControl}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class AdmissionControlTest {
+
+    private TimerWheel wheel = new TimerWheel(10, 64, "test-timer");
+    private List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Stops the timer
+     */
+    @After
+    public void tearDown() {
+        wheel.close();
+    }
+
+    /**
+     * @param args the limits
+     * @return the admission control with these limits, writing down started and rejected connections
+     */
+    private AdmissionControl<String> control(String... args) {
+        String[] all = new String[args.length + 1];
+        all[0] = "8080";
+        System.arraycopy(args, 0, all, 1, args.length);
+        return new AdmissionControl<>(ServerOptions.parse(all), wheel, started::add, rejected::add);
+    }
+
+    /**
+     * Once every game is taken, connections wait in the queue and a full queue turns them away
+     */
+    @Test
+    public void fullServerQueuesThenRejects() {
+        AdmissionControl<String> control = control("--max-games=2", "--accept-queue=1", "--handshake-timeout=0");
+        control.offer("a");
+        control.offer("b");
+        control.offer("c");
+        control.offer("d");
+        assertEquals(Arrays.asList("a", "b"), started);
+        assertEquals(Arrays.asList("d"), rejected);
+        control.started();
+        control.closed(true);
+        assertEquals(Arrays.asList("a", "b", "c"), started);
+        assertTrue(control.report().contains("games=2 handshakes=2 waiting=0 admitted=3 queued=1 rejected=1"));
+    }
+
+    /**
+     * Too many unfinished handshakes turn away new connections even if games are free
+     */
+    @Test
+    public void tooManyHandshakesAreRejected() {
+        AdmissionControl<String> control = control("--max-games=0", "--max-handshakes=1");
+        control.offer("a");
+        control.offer("b");
+        assertEquals(Arrays.asList("b"), rejected);
+        control.started();
+        control.offer("c");
+        assertEquals(Arrays.asList("a", "c"), started);
+    }
+
+    /**
+     * A connection which waited longer than the handshake timeout is turned away
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void waitingConnectionTimesOut() throws InterruptedException {
+        AdmissionControl<String> control = control("--max-games=1", "--accept-queue=5", "--handshake-timeout=50");
+        control.offer("a");
+        control.offer("b");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rejected.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList("b"), rejected);
+        assertTrue(control.report().contains("timedOut=1"));
+        control.closed(false);
+        assertEquals(Arrays.asList("a"), started);
+    }
+
+    /**
+     * On shutdown every waiting connection is turned away
+     */
+    @Test
+    public void shutdownRejectsTheQueue() {
+        AdmissionControl<String> control = control("--max-games=1", "--accept-queue=5", "--handshake-timeout=0");
+        control.offer("a");
+        control.offer("b");
+        control.offer("c");
+        control.rejectQueue();
+        assertEquals(Arrays.asList("b", "c"), rejected);
+        assertTrue(control.report().contains("waiting=0"));
+    }
+}
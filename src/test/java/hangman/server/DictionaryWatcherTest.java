@@ -0,0 +1,85 @@
+package hangman.server;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests reloading the wordlist with the {@link DictionaryWatcher} when its file changes
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class DictionaryWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlockingQueue<WordDictionary> reloaded = new LinkedBlockingQueue<>();
+    private DictionaryWatcher watcher;
+
+    /**
+     * Stops watching
+     */
+    @After
+    public void tearDown() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Writes the wordlist and starts watching it
+     * @param words the first words
+     * @return the wordlist
+     * @throws IOException if the file can't be written or watched
+     */
+    private Path watch(String... words) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("words.txt");
+        Files.write(file, Arrays.asList(words), StandardCharsets.UTF_8);
+        watcher = new DictionaryWatcher(file, reloaded::add);
+        Thread thread = new Thread(watcher, "dictionary-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return file;
+    }
+
+    /**
+     * A changed wordlist is handed over once it stays untouched
+     * @throws Exception if the file can't be written or the test is interrupted
+     */
+    @Test
+    public void changedWordsAreReloaded() throws Exception {
+        Path file = watch("haus");
+        Files.write(file, Arrays.asList("baum", "rose", "tulpe"), StandardCharsets.UTF_8);
+        WordDictionary words = reloaded.poll(10, TimeUnit.SECONDS);
+        assertEquals(3, words.size());
+        assertEquals("tulpe", words.get(2));
+    }
+
+    /**
+     * An empty wordlist is ignored and the old words stay, other files of the directory aren't watched
+     * @throws Exception if the file can't be written or the test is interrupted
+     */
+    @Test
+    public void emptyAndOtherFilesAreIgnored() throws Exception {
+        Path file = watch("haus");
+        Files.write(file.resolveSibling("toplist.txt"), Arrays.asList("5 anna"), StandardCharsets.UTF_8);
+        Files.write(file, new byte[0]);
+        assertNull(reloaded.poll(1500, TimeUnit.MILLISECONDS));
+        Files.write(file, Arrays.asList("baum"), StandardCharsets.UTF_8);
+        assertEquals(1, reloaded.poll(10, TimeUnit.SECONDS).size());
+    }
+}
@@ -0,0 +1,93 @@
+package hangman.server;
+
+import hangman.Frames;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests collecting the bytes of a channel into guesses with the {@link FrameDecoder}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class FrameDecoderTest {
+
+    /**
+     * Several frames in one read are returned one after another
+     * @throws IOException if a frame is invalid
+     */
+    @Test
+    public void splitsFrames() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Frames.writeText(out, Frames.GUESS, "e");
+        Frames.writeText(out, Frames.GUESS, "+\u00e4nsr");
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        FrameDecoder decoder = new FrameDecoder();
+        assertEquals("e", decoder.next(buffer));
+        assertEquals("+\u00e4nsr", decoder.next(buffer));
+        assertNull(decoder.next(buffer));
+    }
+
+    /**
+     * A frame which arrives byte by byte, even its length, is kept until it is complete
+     * @throws IOException if a frame is invalid
+     */
+    @Test
+    public void keepsIncompleteFrames() throws IOException {
+        byte[] frame = Frames.encodeText(Frames.GUESS, "haus");
+        FrameDecoder decoder = new FrameDecoder();
+        for (int i = 0; i < frame.length - 1; i++) {
+            assertNull(decoder.next(ByteBuffer.wrap(frame, i, 1)));
+        }
+        assertEquals("haus", decoder.next(ByteBuffer.wrap(frame, frame.length - 1, 1)));
+    }
+
+    /**
+     * Only the bytes up to the returned frame are taken from the buffer
+     * @throws IOException if a frame is invalid
+     */
+    @Test
+    public void leavesTheRestInTheBuffer() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Frames.writeText(out, Frames.GUESS, "a");
+        Frames.writeText(out, Frames.GUESS, "b");
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        assertEquals("a", new FrameDecoder().next(buffer));
+        assertEquals(4, buffer.remaining());
+    }
+
+    /**
+     * A frame without opcode is rejected
+     * @throws IOException because the frame is empty
+     */
+    @Test(expected = IOException.class)
+    public void rejectsEmptyFrames() throws IOException {
+        new FrameDecoder().next(ByteBuffer.wrap(new byte[]{0, 0}));
+    }
+
+    /**
+     * A frame longer than {@link Frames#MAX_LENGTH} is rejected before its payload is read
+     * @throws IOException because the frame is too long
+     */
+    @Test(expected = IOException.class)
+    public void rejectsTooLongFrames() throws IOException {
+        int length = Frames.MAX_LENGTH + 1;
+        new FrameDecoder().next(ByteBuffer.wrap(new byte[]{(byte) (length >>> 8), (byte) length}));
+    }
+
+    /**
+     * A client may only send guesses
+     * @throws IOException because the frame is no guess
+     */
+    @Test(expected = IOException.class)
+    public void rejectsOtherFrames() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Frames.writeState(out, 3, Frames.WON, "haus");
+        new FrameDecoder().next(ByteBuffer.wrap(out.toByteArray()));
+    }
+}
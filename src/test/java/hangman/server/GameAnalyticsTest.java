@@ -0,0 +1,143 @@
+package hangman.server;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the stats of the played words and the band of words picked by their win rate in the {@link GameAnalytics}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class GameAnalyticsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private WordCatalog catalog = new WordCatalog(new WordCatalogTest.ArrayDictionary("haus", "baum", "rose"));
+    private GameAnalytics analytics;
+
+    /**
+     * Stops the thread of the analytics
+     */
+    @After
+    public void tearDown() {
+        if (analytics != null) {
+            analytics.close();
+        }
+    }
+
+    /**
+     * @return the file the stats are saved to
+     */
+    private Path file() {
+        return folder.getRoot().toPath().resolve("wordstats.snapshot");
+    }
+
+    /**
+     * Records a game of a word of the catalog
+     * @param word the index of the word
+     * @param won whether the player solves the word
+     */
+    private void play(int word, boolean won) {
+        String answer = catalog.word(word);
+        Hangman hangman = new Hangman(answer, 10, "moritz", null);
+        hangman.setWord(catalog, word);
+        hangman.aufloesen(won ? answer : "xxxx");
+        analytics.record(hangman);
+    }
+
+    /**
+     * Waits until the report of the analytics contains the text
+     * @param text the expected part of the report
+     * @throws InterruptedException if the test is interrupted
+     */
+    private void awaitReport(String text) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!analytics.report().contains(text) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(analytics.report(), analytics.report().contains(text));
+    }
+
+    /**
+     * Only words played often enough with a win rate in the band are picked
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void picksWordsInTheBand() throws InterruptedException {
+        analytics = new GameAnalytics(file(), catalog, 0.4, 0.7);
+        for (int i = 0; i < GameAnalytics.MIN_GAMES; i++) {
+            play(0, i % 2 == 0);
+            play(1, true);
+        }
+        play(2, true);
+        awaitReport("band=1");
+        int picked = 0;
+        for (int i = 0; i < 200; i++) {
+            int word = analytics.pick(catalog);
+            assertTrue(word == -1 || word == 0);
+            if (word == 0) {
+                picked++;
+            }
+        }
+        assertTrue(picked > 100);
+        assertEquals(-1, analytics.pick(new WordCatalog(new WordCatalogTest.ArrayDictionary("haus"))));
+    }
+
+    /**
+     * Without a band no word is picked by its win rate
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void noBandPicksNothing() throws InterruptedException {
+        analytics = new GameAnalytics(file(), catalog, 0, 0);
+        for (int i = 0; i < GameAnalytics.MIN_GAMES; i++) {
+            play(0, i % 2 == 0);
+        }
+        awaitReport("recorded=" + GameAnalytics.MIN_GAMES);
+        assertTrue(analytics.report().contains("band=0"));
+        assertEquals(-1, analytics.pick(catalog));
+    }
+
+    /**
+     * Games whose answer wasn't picked from a catalog aren't counted
+     */
+    @Test
+    public void gamesWithoutWordAreIgnored() {
+        analytics = new GameAnalytics(file(), catalog, 0.4, 0.7);
+        analytics.record(new Hangman("haus", 10, "moritz", null));
+        analytics.close();
+        assertTrue(analytics.report().contains("recorded=0 dropped=0 queued=0 words=0"));
+        analytics = null;
+    }
+
+    /**
+     * The stats are saved on close and restored for the same words
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void statsSurviveTheRestart() throws InterruptedException {
+        analytics = new GameAnalytics(file(), catalog, 0.4, 0.7);
+        for (int i = 0; i < GameAnalytics.MIN_GAMES; i++) {
+            play(0, i % 2 == 0);
+        }
+        play(1, true);
+        analytics.close();
+        assertTrue(analytics.report().contains("words=2"));
+
+        analytics = new GameAnalytics(file(), catalog, 0.4, 0.7);
+        awaitReport("words=2 band=1");
+
+        analytics.close();
+        analytics = new GameAnalytics(file(), new WordCatalog(new WordCatalogTest.ArrayDictionary("haus", "baum", "hund")), 0.4, 0.7);
+        awaitReport("words=0");
+    }
+}
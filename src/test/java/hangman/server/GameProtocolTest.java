@@ -0,0 +1,211 @@
+package hangman.server;
+
+import hangman.Frames;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the answers of the {@link GameProtocol} to the messages of a client
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class GameProtocolTest {
+
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    /**
+     * @return the text lines sent since the last call
+     */
+    private List<String> sent() {
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        out.reset();
+        return text.isEmpty() ? Arrays.<String>asList() : Arrays.asList(text.split("\n"));
+    }
+
+    /**
+     * @param answer the answer of the game
+     * @return the protocol of a single game with ten tries, answering in text lines
+     */
+    private GameProtocol single(String answer) {
+        return new GameProtocol(new Hangman(answer, 10, "moritz", null), Replies.create(false, out));
+    }
+
+    /**
+     * The game starts with the mask, every guess is answered with the tries and the mask
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void guessesAreAnsweredWithTheMask() throws IOException {
+        GameProtocol protocol = single("haus");
+        protocol.start();
+        assertFalse(protocol.handle("a"));
+        assertFalse(protocol.handle("x"));
+        protocol.flush();
+        assertEquals(Arrays.asList("____", "Remaining tries: 10", "_a__", "Remaining tries: 9", "_a__"), sent());
+    }
+
+    /**
+     * The last letter wins the game, the protocol tells the transport that it is over
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void lastLetterWins() throws IOException {
+        GameProtocol protocol = single("aha");
+        protocol.start();
+        protocol.handle("a");
+        sent();
+        assertTrue(protocol.handle("h"));
+        protocol.finish();
+        assertEquals(Arrays.asList("You won!", GameProtocol.EXIT), sent());
+    }
+
+    /**
+     * A wrong word ends the game at once
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void wrongWordLoses() throws IOException {
+        GameProtocol protocol = single("haus");
+        protocol.start();
+        sent();
+        assertTrue(protocol.handle("maus"));
+        assertEquals(Arrays.asList("You lost!"), sent());
+    }
+
+    /**
+     * @param rounds the number of games to play, 0 to play until the client leaves
+     * @param answers the answers of the games in the order they are played
+     * @return the protocol of several games with ten tries, answering in text lines
+     */
+    private GameProtocol rounds(int rounds, String... answers) {
+        Deque<String> words = new ArrayDeque<>(Arrays.asList(answers));
+        return new GameProtocol(() -> new Hangman(words.poll(), 10, "moritz", null), rounds, Replies.create(false, out), new ServerMetrics(), null);
+    }
+
+    /**
+     * After a game the mask of the next word follows the result right away
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void nextRoundStartsAfterTheResult() throws IOException {
+        GameProtocol protocol = rounds(2, "aa", "bb");
+        protocol.start();
+        sent();
+        assertFalse(protocol.handle("a"));
+        assertEquals(Arrays.asList("You won!", "__"), sent());
+        assertFalse(protocol.handle("x"));
+        assertTrue(protocol.handle("bb"));
+        assertEquals(Arrays.asList("Remaining tries: 9", "__", "You won!"), sent());
+    }
+
+    /**
+     * With 0 rounds the games go on until the client leaves
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void zeroRoundsPlayOn() throws IOException {
+        GameProtocol protocol = rounds(0, "a", "b", "c", "d");
+        protocol.start();
+        assertFalse(protocol.handle("a"));
+        assertFalse(protocol.handle("b"));
+        assertFalse(protocol.handle("c"));
+        sent();
+        protocol.finish();
+        assertEquals(Arrays.asList(GameProtocol.EXIT), sent());
+    }
+
+    /**
+     * A batch guesses all its letters and is answered once
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void batchIsAnsweredOnce() throws IOException {
+        GameProtocol protocol = single("haus");
+        protocol.start();
+        sent();
+        assertFalse(protocol.handle("+axs"));
+        assertEquals(Arrays.asList("Remaining tries: 9", "_a_s"), sent());
+    }
+
+    /**
+     * A batch stops at the letter that ends the game, the rest of it is ignored
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void batchStopsWhenTheGameIsOver() throws IOException {
+        GameProtocol protocol = single("aha");
+        protocol.start();
+        sent();
+        assertTrue(protocol.handle("+ahxyz"));
+        assertEquals(Arrays.asList("You won!"), sent());
+    }
+
+    /**
+     * Without an index of hints the answer is an empty hint and the game may still get into the toplist
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void noHintWithoutIndex() throws IOException {
+        Hangman hangman = new Hangman("haus", 10, "moritz", null);
+        GameProtocol protocol = new GameProtocol(hangman, Replies.create(false, out));
+        assertFalse(protocol.handle(GameProtocol.HINT));
+        assertEquals(Arrays.asList("[HINT]", "Remaining tries: 10", "____"), sent());
+        assertFalse(hangman.isHinted());
+    }
+
+    /**
+     * Nothing is sent before the protocol is flushed, then all answers go out together
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void answersWaitForTheFlush() throws IOException {
+        ByteArrayOutputStream socket = new ByteArrayOutputStream();
+        BufferedOutputStream buffered = new BufferedOutputStream(socket);
+        GameProtocol protocol = new GameProtocol(new Hangman("haus", 10, "moritz", null), Replies.create(false, buffered));
+        protocol.start();
+        protocol.handle("h");
+        protocol.handle("s");
+        assertEquals(0, socket.size());
+        protocol.flush();
+        assertEquals("____\nRemaining tries: 10\nh___\nRemaining tries: 10\nh__s\n", new String(socket.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * In the binary protocol every answer is a single state frame
+     * @throws IOException if writing or reading fails
+     */
+    @Test
+    public void binaryAnswersAreStateFrames() throws IOException {
+        GameProtocol protocol = new GameProtocol(new Hangman("haus", 10, "moritz", null), Replies.create(true, out));
+        protocol.start();
+        protocol.handle("x");
+        protocol.handle("haus");
+        protocol.finish();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        Frames.Frame start = Frames.read(in);
+        assertEquals("____", start.getText());
+        assertEquals(10, start.getRemainingTries());
+        Frames.Frame miss = Frames.read(in);
+        assertEquals(9, miss.getRemainingTries());
+        assertEquals(Frames.RUNNING, miss.getResult());
+        Frames.Frame won = Frames.read(in);
+        assertEquals(Frames.WON, won.getResult());
+        assertEquals("haus", won.getText());
+        assertEquals(Frames.EXIT, Frames.read(in).getOpcode());
+        assertEquals(0, in.available());
+    }
+}
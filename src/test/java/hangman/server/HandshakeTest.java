@@ -0,0 +1,120 @@
+package hangman.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests parsing the first line of a client into a {@link Handshake}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class HandshakeTest {
+
+    /**
+     * A handshake with only the username gets the defaults
+     */
+    @Test
+    public void usernameOnly() {
+        Handshake handshake = new Handshake("[USERNAME]moritz");
+        assertEquals("moritz", handshake.getUsername());
+        assertEquals(Difficulty.ANY, handshake.getDifficulty());
+        assertFalse(handshake.isBinary());
+        assertEquals(1, handshake.getRounds());
+        assertNull(handshake.getRoom());
+        assertFalse(handshake.isRace());
+        assertEquals("fallback", handshake.get(SavedGames.RESUME, "fallback"));
+    }
+
+    /**
+     * Every setting is read, the names of the settings are case insensitive
+     */
+    @Test
+    public void settings() {
+        Handshake handshake = new Handshake("[USERNAME]moritz [difficulty]hard [PROTOCOL]Binary [ROUNDS]5 [Room]Deutsch [MODE]race");
+        assertEquals("moritz", handshake.getUsername());
+        assertEquals(Difficulty.HARD, handshake.getDifficulty());
+        assertTrue(handshake.isBinary());
+        assertEquals(5, handshake.getRounds());
+        assertEquals("deutsch", handshake.getRoom());
+        assertTrue(handshake.isRace());
+    }
+
+    /**
+     * The username may contain spaces, only a bracket after whitespace starts a setting
+     */
+    @Test
+    public void usernameWithSpaces() {
+        Handshake handshake = new Handshake("[USERNAME]moritz welsch [ROUNDS]0");
+        assertEquals("moritz welsch", handshake.getUsername());
+        assertEquals(0, handshake.getRounds());
+    }
+
+    /**
+     * The token of a saved game is kept as it was sent
+     */
+    @Test
+    public void resumeToken() {
+        Handshake handshake = new Handshake("[USERNAME]moritz [RESUME]aB-_9");
+        assertEquals("aB-_9", handshake.get(SavedGames.RESUME, null));
+    }
+
+    /**
+     * A line without the username is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingUsername() {
+        new Handshake("moritz");
+    }
+
+    /**
+     * A client which left before his first line is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoLine() {
+        new Handshake(null);
+    }
+
+    /**
+     * A setting without a closing bracket is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBrokenSettings() {
+        new Handshake("[USERNAME]moritz [ROUNDS 5");
+    }
+
+    /**
+     * Negative rounds are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeRounds() {
+        new Handshake("[USERNAME]moritz [ROUNDS]-1").getRounds();
+    }
+
+    /**
+     * Rounds which are no number are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRoundsWhichAreNoNumber() {
+        new Handshake("[USERNAME]moritz [ROUNDS]many").getRounds();
+    }
+
+    /**
+     * An unknown protocol is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownProtocols() {
+        new Handshake("[USERNAME]moritz [PROTOCOL]morse").isBinary();
+    }
+
+    /**
+     * An unknown mode is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownModes() {
+        new Handshake("[USERNAME]moritz [MODE]team").isRace();
+    }
+}
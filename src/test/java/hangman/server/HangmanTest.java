@@ -0,0 +1,152 @@
+package hangman.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the state of a single {@link Hangman} game
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class HangmanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A hit reveals every position of the letter and costs no try
+     */
+    @Test
+    public void hitRevealsEveryPosition() {
+        Hangman hangman = new Hangman("banana", 5, "moritz", null);
+        assertEquals("______", hangman.showObscuredAnswer());
+        assertTrue(hangman.guess('a'));
+        assertEquals("_a_a_a", hangman.showObscuredAnswer());
+        assertEquals(5, hangman.getRemainingTries());
+        assertFalse(hangman.isOver());
+    }
+
+    /**
+     * A miss costs a try, the same miss again doesn't
+     */
+    @Test
+    public void missCostsOneTryOnce() {
+        Hangman hangman = new Hangman("banana", 5, "moritz", null);
+        assertFalse(hangman.guess('x'));
+        assertFalse(hangman.guess('x'));
+        assertEquals(4, hangman.getRemainingTries());
+        assertEquals("x", hangman.getGuessed());
+    }
+
+    /**
+     * Letters outside of Latin-1 are missed like every other letter
+     */
+    @Test
+    public void missOutsideLatin() {
+        Hangman hangman = new Hangman("banana", 3, "moritz", null);
+        hangman.guess('\u0436');
+        hangman.guess('\u0436');
+        hangman.guess('\u20ac');
+        assertEquals(1, hangman.getRemainingTries());
+    }
+
+    /**
+     * The game is won once every letter is revealed
+     */
+    @Test
+    public void wonWhenEveryLetterIsRevealed() {
+        Hangman hangman = new Hangman("banana", 5, "moritz", null);
+        hangman.guess('b');
+        hangman.guess('n');
+        assertFalse(hangman.isWon());
+        hangman.guess('a');
+        assertTrue(hangman.isWon());
+        assertTrue(hangman.isOver());
+        assertEquals("banana", hangman.showObscuredAnswer());
+    }
+
+    /**
+     * The game is lost once the player is out of tries
+     */
+    @Test
+    public void lostWhenOutOfTries() {
+        Hangman hangman = new Hangman("banana", 2, "moritz", null);
+        hangman.guess('x');
+        assertFalse(hangman.isOver());
+        hangman.guess('y');
+        assertTrue(hangman.outOfTries());
+        assertTrue(hangman.isOver());
+        assertFalse(hangman.isWon());
+    }
+
+    /**
+     * Trying to solve the word ends the game, even if it was wrong and tries are left
+     */
+    @Test
+    public void solvingEndsTheGame() {
+        Hangman hangman = new Hangman("banana", 10, "moritz", null);
+        hangman.aufloesen("bonbon");
+        assertTrue(hangman.isOver());
+        assertFalse(hangman.isWon());
+        assertEquals(9, hangman.getRemainingTries());
+
+        Hangman solved = new Hangman("banana", 10, "moritz", null);
+        solved.aufloesen("banana");
+        assertTrue(solved.isWon());
+    }
+
+    /**
+     * Replaying the guessed letters on a new game gives the same state
+     */
+    @Test
+    public void guessedLettersReplayTheGame() {
+        Hangman hangman = new Hangman("banana", 5, "moritz", null);
+        for (char c : "axnxqb".toCharArray()) {
+            hangman.guess(c);
+        }
+        assertEquals("axnqb", hangman.getGuessed());
+        Hangman replayed = new Hangman("banana", 5, "moritz", null);
+        for (char c : hangman.getGuessed().toCharArray()) {
+            replayed.guess(c);
+        }
+        assertEquals(hangman.showObscuredAnswer(), replayed.showObscuredAnswer());
+        assertEquals(hangman.getRemainingTries(), replayed.getRemainingTries());
+        assertEquals(hangman.isWon(), replayed.isWon());
+    }
+
+    /**
+     * Only a won game without a hint gets into the toplist
+     * @throws Exception if the toplist can't be written
+     */
+    @Test
+    public void onlyWinsWithoutHintGetIntoTheToplist() throws Exception {
+        Leaderboard leaderboard = new Leaderboard(new HighscoreJournal(folder.newFile("toplist.txt").toPath()), 10, 60000);
+        leaderboard.load();
+        try {
+            Hangman lost = new Hangman("ab", 1, "lost", leaderboard);
+            lost.guess('x');
+            lost.addToHighscore();
+
+            Hangman hinted = new Hangman("ab", 5, "hinted", leaderboard);
+            hinted.useHint();
+            hinted.aufloesen("ab");
+            hinted.addToHighscore();
+
+            Hangman won = new Hangman("ab", 5, "won", leaderboard);
+            won.guess('x');
+            won.aufloesen("ab");
+            won.addToHighscore();
+
+            assertEquals(1, leaderboard.getEntries().size());
+            assertEquals("won", leaderboard.getEntries().get(0).getUsername());
+            assertEquals(4, leaderboard.getEntries().get(0).getScore());
+        } finally {
+            leaderboard.close();
+        }
+    }
+}
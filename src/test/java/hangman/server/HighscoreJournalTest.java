@@ -0,0 +1,161 @@
+package hangman.server;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests replaying and compacting the {@link HighscoreJournal}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class HighscoreJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path toplist;
+    private Path journal;
+
+    /**
+     * Points to the files in the temporary folder, they don't exist yet
+     */
+    @Before
+    public void setUp() {
+        toplist = folder.getRoot().toPath().resolve("toplist.txt");
+        journal = folder.getRoot().toPath().resolve("toplist.txt.journal");
+    }
+
+    /**
+     * Reads the toplist like the next start of the server would
+     * @return the replayed lines
+     * @throws IOException if the files can't be read
+     */
+    private List<String> replay() throws IOException {
+        HighscoreJournal highscores = new HighscoreJournal(toplist);
+        try {
+            return highscores.replay();
+        } finally {
+            highscores.close();
+        }
+    }
+
+    /**
+     * Without any file the toplist is empty
+     * @throws IOException if the journal can't be created
+     */
+    @Test
+    public void replaysNothing() throws IOException {
+        HighscoreJournal highscores = new HighscoreJournal(toplist);
+        assertEquals(Collections.emptyList(), highscores.replay());
+        assertEquals(0, highscores.getJournalLines());
+        highscores.close();
+    }
+
+    /**
+     * The snapshot is replayed first, then the journal
+     * @throws IOException if the files can't be written or read
+     */
+    @Test
+    public void replaysSnapshotThenJournal() throws IOException {
+        Files.write(toplist, Arrays.asList("9 anna", "5 bert"), StandardCharsets.UTF_8);
+        Files.write(journal, Arrays.asList("7 carl"), StandardCharsets.UTF_8);
+        HighscoreJournal highscores = new HighscoreJournal(toplist);
+        assertEquals(Arrays.asList("9 anna", "5 bert", "7 carl"), highscores.replay());
+        assertEquals(1, highscores.getJournalLines());
+        highscores.close();
+    }
+
+    /**
+     * A half written last line of the journal is cut off, the next line is appended after the last complete one
+     * @throws IOException if the files can't be written or read
+     */
+    @Test
+    public void cutsOffAHalfWrittenLine() throws IOException {
+        Files.write(journal, "7 carl\n4 do".getBytes(StandardCharsets.UTF_8));
+        HighscoreJournal highscores = new HighscoreJournal(toplist);
+        assertEquals(Arrays.asList("7 carl"), highscores.replay());
+        highscores.append(Arrays.asList("6 dora"));
+        highscores.sync();
+        highscores.close();
+        assertEquals(Arrays.asList("7 carl", "6 dora"), Files.readAllLines(journal, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appended lines are counted and replayed by the next start
+     * @throws IOException if the files can't be written or read
+     */
+    @Test
+    public void appendedLinesAreReplayed() throws IOException {
+        HighscoreJournal highscores = new HighscoreJournal(toplist);
+        highscores.replay();
+        highscores.append(Arrays.asList("3 anna", "5 bert"));
+        highscores.append(Collections.emptyList());
+        highscores.sync();
+        assertEquals(2, highscores.getJournalLines());
+        highscores.close();
+        assertEquals(Arrays.asList("3 anna", "5 bert"), replay());
+    }
+
+    /**
+     * Compacting replaces the snapshot and empties the journal, appending goes on in the empty journal
+     * @throws IOException if the files can't be written or read
+     */
+    @Test
+    public void compactReplacesTheSnapshot() throws IOException {
+        Files.write(toplist, Arrays.asList("1 emil"), StandardCharsets.UTF_8);
+        HighscoreJournal highscores = new HighscoreJournal(toplist);
+        highscores.replay();
+        highscores.append(Arrays.asList("3 anna", "5 bert"));
+        highscores.compact(Arrays.asList("5 bert", "3 anna"));
+        assertEquals(0, highscores.getJournalLines());
+        assertEquals(0, Files.size(journal));
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("toplist.txt.tmp")));
+        highscores.append(Arrays.asList("4 carl"));
+        highscores.close();
+        assertEquals(Arrays.asList("5 bert", "3 anna"), Files.readAllLines(toplist, StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList("5 bert", "3 anna", "4 carl"), replay());
+    }
+
+    /**
+     * A journal which couldn't be replayed stays closed, writing fails with an IOException instead of a NullPointerException
+     * @throws IOException if the files can't be written
+     */
+    @Test
+    public void writingWithoutReplayFails() throws IOException {
+        Files.createDirectory(journal);
+        HighscoreJournal highscores = new HighscoreJournal(toplist);
+        try {
+            highscores.replay();
+            fail("A directory can't be replayed as the journal");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            highscores.append(Arrays.asList("3 anna"));
+            fail("The journal isn't open");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            highscores.compact(Arrays.asList("3 anna"));
+            fail("The journal isn't open");
+        } catch (IOException e) {
+            // expected
+        }
+        highscores.close();
+    }
+}
@@ -0,0 +1,168 @@
+package hangman.server;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the datagrams of the {@link LeaderboardGossip} and that two nodes end up with the same toplist
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class LeaderboardGossipTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Leaderboard> leaderboards = new ArrayList<>();
+    private List<LeaderboardGossip> nodes = new ArrayList<>();
+
+    /**
+     * Stops every node and closes its toplist
+     */
+    @After
+    public void tearDown() {
+        for (LeaderboardGossip node : nodes) {
+            node.close();
+        }
+        for (Leaderboard leaderboard : leaderboards) {
+            leaderboard.close();
+        }
+    }
+
+    /**
+     * @param name the name of the file of the toplist
+     * @return a loaded toplist in the temporary folder
+     */
+    private Leaderboard leaderboard(String name) {
+        Leaderboard leaderboard = new Leaderboard(new HighscoreJournal(folder.getRoot().toPath().resolve(name)), 10, 60000);
+        leaderboard.load();
+        leaderboards.add(leaderboard);
+        return leaderboard;
+    }
+
+    /**
+     * @return a UDP port which was free a moment ago
+     * @throws IOException if no port can be bound
+     */
+    private static int freePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * @param datagram a datagram of the gossip
+     * @return the entries in it
+     * @throws IOException if the datagram is broken
+     */
+    private static List<String> decode(byte[] datagram) throws IOException {
+        List<String> entries = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(datagram));
+        assertEquals(0x48474F53, in.readInt());
+        while (in.available() > 0) {
+            int score = in.readInt();
+            entries.add(score + " " + in.readUTF());
+        }
+        return entries;
+    }
+
+    /**
+     * Waits until the condition holds
+     * @param condition what has to be true
+     * @throws InterruptedException if the test is interrupted
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * A few entries fit into a single datagram
+     * @throws IOException if encoding fails
+     */
+    @Test
+    public void fewEntriesInOneDatagram() throws IOException {
+        List<byte[]> datagrams = LeaderboardGossip.encode(Arrays.asList(new Leaderboard.Entry("anna", 5), new Leaderboard.Entry("bert", 3)));
+        assertEquals(1, datagrams.size());
+        assertEquals(Arrays.asList("5 anna", "3 bert"), decode(datagrams.get(0)));
+        assertTrue(LeaderboardGossip.encode(Collections.<Leaderboard.Entry>emptyList()).isEmpty());
+    }
+
+    /**
+     * Many entries are cut into datagrams which fit into a packet, none is lost or cut in half
+     * @throws IOException if encoding fails
+     */
+    @Test
+    public void manyEntriesAreCut() throws IOException {
+        List<Leaderboard.Entry> entries = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            entries.add(new Leaderboard.Entry("player-number-" + i, i));
+            expected.add(i + " player-number-" + i);
+        }
+        List<byte[]> datagrams = LeaderboardGossip.encode(entries);
+        assertTrue(datagrams.size() > 1);
+        List<String> found = new ArrayList<>();
+        for (byte[] datagram : datagrams) {
+            assertTrue(datagram.length <= LeaderboardGossip.MAX_DATAGRAM);
+            found.addAll(decode(datagram));
+        }
+        assertEquals(expected, found);
+    }
+
+    /**
+     * A win on one node shows up in the toplist of the other, and the other way round
+     * @throws Exception if the ports can't be bound or the test is interrupted
+     */
+    @Test
+    public void nodesShareTheirToplists() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        Leaderboard a = leaderboard("a.txt");
+        Leaderboard b = leaderboard("b.txt");
+        nodes.add(new LeaderboardGossip(a, portA, Arrays.asList(new InetSocketAddress("127.0.0.1", portB)), 20));
+        nodes.add(new LeaderboardGossip(b, portB, Arrays.asList(new InetSocketAddress("127.0.0.1", portA)), 20));
+        a.offer("anna", 5);
+        b.offer("bert", 7);
+        b.offer("anna", 2);
+        await(() -> a.getEntries().toString().equals("[7 bert, 5 anna]") && b.getEntries().toString().equals("[7 bert, 5 anna]"));
+    }
+
+    /**
+     * Datagrams of addresses which aren't peers are ignored
+     * @throws Exception if the ports can't be bound or the test is interrupted
+     */
+    @Test
+    public void strangersAreIgnored() throws Exception {
+        Leaderboard leaderboard = leaderboard("a.txt");
+        LeaderboardGossip node = new LeaderboardGossip(leaderboard, freePort(), Arrays.asList(new InetSocketAddress("127.0.0.1", freePort())), 60000);
+        nodes.add(node);
+        byte[] datagram = LeaderboardGossip.encode(Arrays.asList(new Leaderboard.Entry("mallory", 99))).get(0);
+        try (DatagramSocket stranger = new DatagramSocket()) {
+            stranger.send(new DatagramPacket(datagram, datagram.length, new InetSocketAddress("127.0.0.1", node.getPort())));
+        }
+        await(() -> node.report().contains("ignored=1"));
+        assertTrue(leaderboard.getEntries().isEmpty());
+    }
+}
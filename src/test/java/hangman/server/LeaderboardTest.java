@@ -0,0 +1,156 @@
+package hangman.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the order of the {@link Leaderboard} and that it survives a restart
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class LeaderboardTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path toplist;
+    private Leaderboard leaderboard;
+
+    /**
+     * Opens an empty toplist of three players
+     */
+    @Before
+    public void setUp() {
+        toplist = folder.getRoot().toPath().resolve("toplist.txt");
+        leaderboard = open();
+    }
+
+    /**
+     * Closes the toplist of the test
+     */
+    @After
+    public void tearDown() {
+        leaderboard.close();
+    }
+
+    /**
+     * @return the toplist of three players in the temporary folder, loaded
+     */
+    private Leaderboard open() {
+        Leaderboard board = new Leaderboard(new HighscoreJournal(toplist), 3, 60000);
+        board.load();
+        return board;
+    }
+
+    /**
+     * @param board the toplist
+     * @return the toplist in the format of the file, best player first
+     */
+    private static List<String> lines(Leaderboard board) {
+        List<String> lines = new ArrayList<>();
+        for (Leaderboard.Entry entry : board.getEntries()) {
+            lines.add(entry.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Players are ordered by score and then by name, the worst one falls off a full list
+     */
+    @Test
+    public void keepsTheBestPlayers() {
+        assertTrue(leaderboard.offer("carl", 3));
+        assertTrue(leaderboard.offer("bert", 5));
+        assertTrue(leaderboard.offer("anna", 3));
+        assertTrue(leaderboard.offer("dora", 4));
+        assertFalse(leaderboard.offer("emil", 1));
+        assertEquals(Arrays.asList("5 bert", "4 dora", "3 anna"), lines(leaderboard));
+    }
+
+    /**
+     * A player is on the list once with his best score
+     */
+    @Test
+    public void keepsTheBestScoreOfAPlayer() {
+        assertTrue(leaderboard.offer("anna", 3));
+        assertFalse(leaderboard.offer("anna", 2));
+        assertTrue(leaderboard.offer("anna", 6));
+        assertEquals(Arrays.asList("6 anna"), lines(leaderboard));
+    }
+
+    /**
+     * The list only depends on which entries were offered, not on their order
+     */
+    @Test
+    public void orderOfOffersDoesNotMatter() {
+        Leaderboard other = new Leaderboard(new HighscoreJournal(folder.getRoot().toPath().resolve("other.txt")), 3, 60000);
+        other.load();
+        try {
+            String[] names = {"anna", "bert", "carl", "dora", "emil", "anna"};
+            int[] scores = {2, 7, 4, 4, 1, 9};
+            for (int i = 0; i < names.length; i++) {
+                leaderboard.offer(names[i], scores[i]);
+                other.offer(names[names.length - 1 - i], scores[names.length - 1 - i]);
+            }
+            assertEquals(lines(leaderboard), lines(other));
+        } finally {
+            other.close();
+        }
+    }
+
+    /**
+     * Listeners get every entry which changed the list
+     */
+    @Test
+    public void listenersGetChanges() {
+        List<String> changes = new ArrayList<>();
+        leaderboard.addListener(entry -> changes.add(entry.toString()));
+        leaderboard.offer("anna", 3);
+        leaderboard.offer("anna", 1);
+        leaderboard.offer("bert", 4);
+        assertEquals(Arrays.asList("3 anna", "4 bert"), changes);
+    }
+
+    /**
+     * Flushed changes are replayed from the journal by a new toplist
+     */
+    @Test
+    public void replaysTheJournal() {
+        leaderboard.offer("anna", 3);
+        leaderboard.offer("bert", 5);
+        leaderboard.flush();
+        List<String> flushed = lines(leaderboard);
+        leaderboard.close();
+        leaderboard = open();
+        assertEquals(flushed, lines(leaderboard));
+    }
+
+    /**
+     * Closing writes what wasn't flushed yet and compacts the journal into the toplist file
+     * @throws Exception if the files can't be read
+     */
+    @Test
+    public void closeCompactsTheJournal() throws Exception {
+        leaderboard.offer("anna", 3);
+        leaderboard.offer("bert", 5);
+        leaderboard.offer("carl", 4);
+        leaderboard.close();
+        assertEquals(Arrays.asList("5 bert", "4 carl", "3 anna"), Files.readAllLines(toplist));
+        assertEquals(0, Files.size(folder.getRoot().toPath().resolve("toplist.txt.journal")));
+        leaderboard = open();
+        assertEquals(Arrays.asList("5 bert", "4 carl", "3 anna"), lines(leaderboard));
+    }
+}
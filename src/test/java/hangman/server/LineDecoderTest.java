@@ -0,0 +1,99 @@
+package hangman.server;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests collecting the bytes of a channel into lines with the {@link LineDecoder}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class LineDecoderTest {
+
+    /**
+     * @param text the text
+     * @return a buffer with the UTF-8 bytes of the text, ready to be read
+     */
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Several lines in one read are returned one after another, with or without a carriage return
+     * @throws IOException if a line is too long
+     */
+    @Test
+    public void splitsLines() throws IOException {
+        LineDecoder decoder = new LineDecoder();
+        ByteBuffer buffer = bytes("e\r\n+ensr\n\nhaus\n");
+        assertEquals("e", decoder.next(buffer));
+        assertEquals("+ensr", decoder.next(buffer));
+        assertEquals("", decoder.next(buffer));
+        assertEquals("haus", decoder.next(buffer));
+        assertNull(decoder.next(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    /**
+     * A line which arrives in several reads is kept until its line break is there,
+     * also if a UTF-8 character is split between two reads
+     * @throws IOException if a line is too long
+     */
+    @Test
+    public void keepsIncompleteLines() throws IOException {
+        LineDecoder decoder = new LineDecoder();
+        byte[] line = "[USERNAME]m\u00f6ritz\n".getBytes(StandardCharsets.UTF_8);
+        int split = "[USERNAME]m".length() + 1;
+        assertNull(decoder.next(ByteBuffer.wrap(Arrays.copyOfRange(line, 0, split))));
+        assertEquals("[USERNAME]m\u00f6ritz", decoder.next(ByteBuffer.wrap(Arrays.copyOfRange(line, split, line.length))));
+    }
+
+    /**
+     * Only the bytes up to the returned line are taken from the buffer
+     * @throws IOException if a line is too long
+     */
+    @Test
+    public void leavesTheRestInTheBuffer() throws IOException {
+        LineDecoder decoder = new LineDecoder();
+        ByteBuffer buffer = bytes("a\nb\n");
+        assertEquals("a", decoder.next(buffer));
+        assertEquals(2, buffer.remaining());
+    }
+
+    /**
+     * A line of the maximal length is fine
+     * @throws IOException if a line is too long
+     */
+    @Test
+    public void longestLine() throws IOException {
+        char[] line = new char[LineDecoder.MAX_LINE_LENGTH];
+        Arrays.fill(line, 'a');
+        assertEquals(new String(line), new LineDecoder().next(bytes(new String(line) + "\n")));
+    }
+
+    /**
+     * A longer line is rejected before it is complete
+     * @throws IOException because the line is too long
+     */
+    @Test(expected = IOException.class)
+    public void rejectsTooLongLines() throws IOException {
+        LineDecoder decoder = new LineDecoder();
+        ByteBuffer chunk = ByteBuffer.allocate(1024);
+        for (int i = 0; i <= LineDecoder.MAX_LINE_LENGTH / chunk.capacity(); i++) {
+            chunk.clear();
+            while (chunk.hasRemaining()) {
+                chunk.put((byte) 'a');
+            }
+            chunk.flip();
+            decoder.next(chunk);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package hangman.server;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests formatting and dropping the lines of a {@link Log}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class LogTest {
+
+    private ByteArrayOutputStream printed = new ByteArrayOutputStream();
+
+    /**
+     * @return every line printed so far
+     */
+    private String[] lines() {
+        return new String(printed.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+    }
+
+    /**
+     * The arguments are put into the template, the line starts with the time, the level and the thread
+     */
+    @Test
+    public void linesAreFormatted() {
+        Log log = new Log(16, new PrintStream(printed, true));
+        log.log(Log.Level.WARN, "Reloaded {} words in {} ms", 5, 10, null);
+        log.log(Log.Level.INFO, "{} more {} than {}", 1, "argument", null);
+        log.awaitWritten(5000);
+        String[] lines = lines();
+        assertEquals(2, lines.length);
+        String thread = "[" + Thread.currentThread().getName() + "] ";
+        assertTrue(lines[0], lines[0].matches("\\d\\d:\\d\\d:\\d\\d\\.\\d{3} WARN  \\Q" + thread + "\\EReloaded 5 words in 10 ms"));
+        assertTrue(lines[1], lines[1].endsWith("INFO  " + thread + "1 more argument than null"));
+    }
+
+    /**
+     * Lines below the level of the log are ignored
+     */
+    @Test
+    public void debugIsIgnoredByDefault() {
+        Log log = new Log(16, new PrintStream(printed, true));
+        log.log(Log.Level.DEBUG, "hidden", null, null, null);
+        log.log(Log.Level.ERROR, "shown", null, null, null);
+        log.awaitWritten(5000);
+        String[] lines = lines();
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].endsWith("shown"));
+    }
+
+    /**
+     * A Throwable the template has no place for is printed with its stack trace
+     */
+    @Test
+    public void unusedThrowableIsPrintedWithItsTrace() {
+        Log log = new Log(16, new PrintStream(printed, true));
+        log.log(Log.Level.ERROR, "Failed: {}", "reason", new IllegalStateException("expected by the test"), null);
+        log.awaitWritten(5000);
+        String text = new String(printed.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(text.contains("Failed: reason" + System.lineSeparator() + "java.lang.IllegalStateException: expected by the test"));
+        assertTrue(text.contains("at hangman.server.LogTest"));
+    }
+
+    /**
+     * While the output is stuck the buffer fills up, further lines are dropped instead of waiting
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void fullBufferDropsLines() throws InterruptedException {
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                stuck.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                printed.write(b, off, len);
+            }
+        };
+        Log log = new Log(4, new PrintStream(slow, true));
+        log.log(Log.Level.INFO, "first", null, null, null);
+        assertTrue(stuck.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            log.log(Log.Level.INFO, "line {}", i, null, null);
+        }
+        release.countDown();
+        log.awaitWritten(5000);
+        String[] lines = lines();
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].endsWith("first"));
+        assertTrue(lines[4].endsWith("line 3"));
+        assertFalse(new String(printed.toByteArray(), StandardCharsets.UTF_8).contains("line 4"));
+    }
+}
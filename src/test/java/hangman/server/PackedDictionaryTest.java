@@ -0,0 +1,141 @@
+package hangman.server;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests reading word lists and building and mapping the images of a {@link PackedDictionary}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class PackedDictionaryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path words;
+    private Path image;
+
+    /**
+     * Writes a word list with blank lines, whitespace, umlauts and no line break at the end
+     * @throws IOException if the list can't be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        words = folder.getRoot().toPath().resolve("words.txt");
+        image = folder.getRoot().toPath().resolve("words.dict");
+        Files.write(words, "haus\r\n\n  baum \nm\u00e4uschen\n\t\nzoo".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Every non empty line is a word, trimmed and decoded as UTF-8
+     * @throws IOException if the list can't be read
+     */
+    @Test
+    public void readsTrimmedWords() throws IOException {
+        PackedDictionary dictionary = PackedDictionary.read(words);
+        assertEquals(4, dictionary.size());
+        assertEquals(Arrays.asList("haus", "baum", "m\u00e4uschen", "zoo"),
+                Arrays.asList(dictionary.get(0), dictionary.get(1), dictionary.get(2), dictionary.get(3)));
+    }
+
+    /**
+     * The mapped image has the same words and the same order by hardness as the list it was built from
+     * @throws IOException if the image can't be built or mapped
+     */
+    @Test
+    public void mappedImageEqualsTheList() throws IOException {
+        PackedDictionary read = PackedDictionary.read(words);
+        PackedDictionary.build(words, image);
+        assertTrue(PackedDictionary.isCurrent(image));
+        PackedDictionary mapped = PackedDictionary.load(image);
+        assertEquals(read.size(), mapped.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(read.get(i), mapped.get(i));
+        }
+        assertArrayEquals(read.byHardness(), mapped.byHardness());
+        assertArrayEquals(WordCatalog.sortByHardness(read), mapped.byHardness());
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("words.dict.tmp")));
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("words.dict.data")));
+    }
+
+    /**
+     * An empty list gives an empty dictionary, also as an image
+     * @throws IOException if the image can't be built or mapped
+     */
+    @Test
+    public void emptyList() throws IOException {
+        Files.write(words, new byte[0]);
+        assertEquals(0, PackedDictionary.read(words).size());
+        PackedDictionary.build(words, image);
+        assertEquals(0, PackedDictionary.map(image).size());
+    }
+
+    /**
+     * A file which is no image or of another version is rejected
+     * @throws IOException if the files can't be written
+     */
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Files.write(image, "no dictionary at all".getBytes(StandardCharsets.UTF_8));
+        assertFalse(PackedDictionary.isCurrent(image));
+        assertMapFails();
+        Files.write(image, new byte[3]);
+        assertMapFails();
+        PackedDictionary.build(words, image);
+        byte[] bytes = Files.readAllBytes(image);
+        ByteBuffer.wrap(bytes).putInt(4, 1);
+        Files.write(image, bytes);
+        assertFalse(PackedDictionary.isCurrent(image));
+        assertMapFails();
+    }
+
+    /**
+     * A truncated image or one with a broken index is rejected with an IOException
+     * @throws IOException if the files can't be written
+     */
+    @Test
+    public void rejectsTruncatedImages() throws IOException {
+        PackedDictionary.build(words, image);
+        byte[] bytes = Files.readAllBytes(image);
+        Files.write(image, Arrays.copyOf(bytes, 20));
+        assertMapFails();
+        Files.write(image, Arrays.copyOf(bytes, bytes.length - 1));
+        assertMapFails();
+        byte[] huge = bytes.clone();
+        ByteBuffer.wrap(huge).putInt(8, Integer.MAX_VALUE);
+        Files.write(image, huge);
+        assertMapFails();
+        byte[] negative = bytes.clone();
+        ByteBuffer.wrap(negative).putInt(8, -1);
+        Files.write(image, negative);
+        assertMapFails();
+    }
+
+    /**
+     * Expects mapping the image to fail with an IOException
+     */
+    private void assertMapFails() {
+        try {
+            PackedDictionary.map(image);
+            fail("Mapped a broken image");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
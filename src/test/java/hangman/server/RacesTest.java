@@ -0,0 +1,177 @@
+package hangman.server;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests guessing one word together in the {@link Races} and broadcasting its state to the seats
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class RacesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private WordCatalog catalog = new WordCatalog(new WordCatalogTest.ArrayDictionary("haus"));
+    private Races races = new Races(10, 200);
+
+    /**
+     * Stops the ticker
+     */
+    @After
+    public void tearDown() {
+        races.close();
+    }
+
+    /**
+     * A seat writing every state right away into memory
+     */
+    private static class MemorySeat extends StreamSeat {
+        private ByteArrayOutputStream out;
+
+        /**
+         * @param out where the states are written to
+         */
+        private MemorySeat(ByteArrayOutputStream out) {
+            super(false, out, Runnable::run, () -> { });
+            this.out = out;
+        }
+
+        /**
+         * @param line the expected state
+         * @return true once the state was written
+         */
+        private boolean got(String line) {
+            return new String(out.toByteArray(), StandardCharsets.UTF_8).contains(line + "\n");
+        }
+    }
+
+    /**
+     * A seat taking the states but never done writing them
+     */
+    private static class StalledSeat extends Races.Seat {
+        private volatile boolean dropped = false;
+
+        /**
+         * Initialize a seat for text lines
+         */
+        private StalledSeat() {
+            super(false);
+        }
+
+        @Override
+        protected void wakeup() {
+            take();
+        }
+
+        @Override
+        protected void drop() {
+            dropped = true;
+        }
+    }
+
+    /**
+     * Waits until the condition holds
+     * @param condition what has to be true
+     * @throws InterruptedException if the test is interrupted
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * A letter is guessed for everybody, only the player who missed loses a try
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void lettersAreShared() throws InterruptedException {
+        MemorySeat anna = new MemorySeat(new ByteArrayOutputStream());
+        MemorySeat bert = new MemorySeat(new ByteArrayOutputStream());
+        Races.Race race = races.join("", catalog, null, "anna", anna);
+        assertEquals(race, races.join("", catalog, null, "bert", bert));
+        assertEquals(Races.MAX_TRIES, race.guess(anna, "h"));
+        assertEquals(Races.MAX_TRIES, race.guess(bert, "h"));
+        assertEquals(Races.MAX_TRIES - 1, race.guess(bert, "x"));
+        await(() -> anna.got(Races.RUNNING + "h___ 2 hx") && bert.got(Races.RUNNING + "h___ 2 hx"));
+    }
+
+    /**
+     * Whoever solves the word wins with his tries, then the next word follows
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void solvingWins() throws InterruptedException {
+        Leaderboard leaderboard = new Leaderboard(new HighscoreJournal(folder.getRoot().toPath().resolve("toplist.txt")), 10, 60000);
+        leaderboard.load();
+        try {
+            MemorySeat anna = new MemorySeat(new ByteArrayOutputStream());
+            Races.Race race = races.join("", catalog, leaderboard, "anna", anna);
+            race.guess(anna, "x");
+            race.guess(anna, "haus");
+            await(() -> anna.got(Races.WON + "haus anna"));
+            await(() -> anna.got(Races.RUNNING + "____ 1 "));
+            assertEquals(9, leaderboard.getEntries().get(0).getScore());
+            assertEquals(Races.MAX_TRIES, race.guess(anna, "a"));
+        } finally {
+            leaderboard.close();
+        }
+    }
+
+    /**
+     * The word is lost once every player is out of tries
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void lostWhenEverybodyIsOut() throws InterruptedException {
+        MemorySeat anna = new MemorySeat(new ByteArrayOutputStream());
+        Races.Race race = races.join("", catalog, null, "anna", anna);
+        assertEquals(0, race.guess(anna, "+bcdefgijklm"));
+        await(() -> anna.got(Races.LOST + "haus"));
+    }
+
+    /**
+     * A player who doesn't finish writing a state within the stall time is dropped
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void stalledPlayerIsDropped() throws InterruptedException {
+        StalledSeat seat = new StalledSeat();
+        races.join("", catalog, null, "anna", seat);
+        await(() -> seat.dropped);
+        assertTrue(races.report().contains("dropped=1"));
+    }
+
+    /**
+     * A player races through his protocol, he is only answered with his tries and the last one closes the race
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void protocolAnswersWithTheTries() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RaceProtocol protocol = new RaceProtocol(races, "kitchen", catalog, null, "anna", Replies.create(false, out), new ServerMetrics());
+        protocol.join(new MemorySeat(new ByteArrayOutputStream()));
+        protocol.start();
+        assertTrue(races.report().contains("open=1 players=1"));
+        protocol.handle("x");
+        protocol.handle(GameProtocol.HINT);
+        protocol.finish();
+        assertEquals("[TRIES]10\n[TRIES]9\n[HINT]\n" + GameProtocol.EXIT + "\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(races.report().contains("open=0 players=0"));
+    }
+}
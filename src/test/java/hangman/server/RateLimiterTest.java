@@ -0,0 +1,125 @@
+package hangman.server;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the token buckets of the {@link RateLimiter}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * @param args the rate options
+     * @return a rate limiter with these options
+     */
+    private static RateLimiter limiter(String... args) {
+        String[] all = new String[args.length + 1];
+        all[0] = "8080";
+        System.arraycopy(args, 0, all, 1, args.length);
+        return new RateLimiter(ServerOptions.parse(all));
+    }
+
+    /**
+     * A full bucket gives out its burst, then it is empty until the next token
+     */
+    @Test
+    public void burstThenEmpty() {
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket(SECOND, 2 * SECOND);
+        assertEquals(0, bucket.delay(false));
+        assertEquals(0, bucket.delay(false));
+        assertEquals(0, bucket.delay(false));
+        long delay = bucket.delay(false);
+        assertTrue(delay > 0 && delay <= SECOND);
+    }
+
+    /**
+     * Without reserving, an empty bucket stays empty, so the delay doesn't grow
+     */
+    @Test
+    public void checkWithoutReserveTakesNothing() {
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket(SECOND, 0);
+        assertEquals(0, bucket.delay(false));
+        long first = bucket.delay(false);
+        long second = bucket.delay(false);
+        assertTrue(first > 0);
+        assertTrue(second <= first);
+    }
+
+    /**
+     * Reserving takes the token anyway, so every message waits one interval longer than the one before
+     */
+    @Test
+    public void reserveQueuesUpTheMessages() {
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket(SECOND, 0);
+        assertEquals(0, bucket.delay(true));
+        long first = bucket.delay(true);
+        long second = bucket.delay(true);
+        assertTrue(first > SECOND / 2 && first <= SECOND);
+        assertTrue(second > first + SECOND / 2 && second <= 2 * SECOND);
+    }
+
+    /**
+     * A bucket with an interval of 0 is never limited
+     */
+    @Test
+    public void zeroIntervalIsUnlimited() {
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket(0, 0);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, bucket.delay(true));
+        }
+    }
+
+    /**
+     * Connections are counted per address, another address has its own bucket
+     * @throws Exception if the addresses can't be built
+     */
+    @Test
+    public void connectionsArePerAddress() throws Exception {
+        RateLimiter limiter = limiter("--connection-rate=1", "--connection-burst=2");
+        InetAddress first = InetAddress.getByAddress(new byte[]{10, 0, 0, 1});
+        InetAddress second = InetAddress.getByAddress(new byte[]{10, 0, 0, 2});
+        assertTrue(limiter.allowConnection(first));
+        assertTrue(limiter.allowConnection(first));
+        assertFalse(limiter.allowConnection(first));
+        assertTrue(limiter.allowConnection(second));
+        assertTrue(limiter.report().contains("throttledConnections=1"));
+    }
+
+    /**
+     * All connections of an address share the same message bucket
+     * @throws Exception if the address can't be built
+     */
+    @Test
+    public void messagesShareTheBucketOfTheAddress() throws Exception {
+        RateLimiter limiter = limiter("--message-rate=1", "--message-burst=1");
+        InetAddress address = InetAddress.getByAddress(new byte[]{10, 0, 0, 1});
+        assertEquals(0, limiter.messages(address).delay(true));
+        assertTrue(limiter.messages(address).delay(true) > 0);
+    }
+
+    /**
+     * Only the given number of addresses is remembered, the one seen longest ago is forgotten
+     * @throws Exception if the addresses can't be built
+     */
+    @Test
+    public void oldestAddressIsForgotten() throws Exception {
+        RateLimiter limiter = limiter("--connection-rate=1", "--connection-burst=1", "--rate-limit-addresses=2");
+        InetAddress first = InetAddress.getByAddress(new byte[]{10, 0, 0, 1});
+        assertTrue(limiter.allowConnection(first));
+        assertFalse(limiter.allowConnection(first));
+        limiter.allowConnection(InetAddress.getByAddress(new byte[]{10, 0, 0, 2}));
+        limiter.allowConnection(InetAddress.getByAddress(new byte[]{10, 0, 0, 3}));
+        assertTrue(limiter.report().contains("addresses=2"));
+        assertTrue(limiter.allowConnection(first));
+    }
+}
@@ -0,0 +1,148 @@
+package hangman.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests opening, sharing and evicting the {@link Rooms}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class RoomsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TimerWheel wheel;
+    private Rooms rooms;
+
+    /**
+     * Creates the rooms kitchen and garden
+     * @throws IOException if the words can't be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        room("kitchen", "pfanne", "teller", "gabel");
+        room("garden", "baum", "rose");
+        wheel = new TimerWheel(10, 64, "test-timer");
+    }
+
+    /**
+     * Closes the rooms and the timer
+     */
+    @After
+    public void tearDown() {
+        if (rooms != null) {
+            rooms.close();
+        }
+        wheel.close();
+    }
+
+    /**
+     * @param name the name of the room
+     * @param words the words of the room
+     * @throws IOException if the words can't be written
+     */
+    private void room(String name, String... words) throws IOException {
+        Path dir = Files.createDirectories(folder.getRoot().toPath().resolve(Rooms.DIRECTORY).resolve(name));
+        Files.write(dir.resolve("words.txt"), Arrays.asList(words), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param maxRooms the number of rooms which may be open at once
+     * @param idleMillis milliseconds a room without players stays open
+     * @return the rooms in the temporary folder
+     */
+    private Rooms open(int maxRooms, long idleMillis) {
+        rooms = new Rooms(folder.getRoot().toPath(), maxRooms, idleMillis, wheel);
+        return rooms;
+    }
+
+    /**
+     * A room is loaded with its own words and shared by its players
+     */
+    @Test
+    public void playersShareTheRoom() {
+        Rooms rooms = open(4, 60000);
+        Rooms.Room first = rooms.acquire("kitchen").join();
+        Rooms.Room second = rooms.acquire("kitchen").join();
+        assertSame(first, second);
+        assertEquals("kitchen", first.getName());
+        assertEquals(3, first.getWords().size());
+        assertTrue(rooms.report().contains("open=1 players=2 loaded=1"));
+    }
+
+    /**
+     * Names without a room and names which could leave the directory are turned away
+     */
+    @Test
+    public void unknownRoomsAreRejected() {
+        Rooms rooms = open(4, 60000);
+        for (String name : Arrays.asList("cellar", "../kitchen", "Kitchen", "")) {
+            try {
+                rooms.acquire(name);
+                fail("the room " + name + " was opened");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().startsWith("Unknown room"));
+            }
+        }
+    }
+
+    /**
+     * Without rooms every room is unknown
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void noRoomsAllowed() {
+        open(0, 60000).acquire("kitchen");
+    }
+
+    /**
+     * If every open room has players, a further room is rejected, an idle room makes way for it
+     */
+    @Test
+    public void idleRoomMakesWayForANewOne() {
+        Rooms rooms = open(1, 60000);
+        Rooms.Room kitchen = rooms.acquire("kitchen").join();
+        try {
+            rooms.acquire("garden");
+            fail("a second room was opened");
+        } catch (IllegalArgumentException e) {
+            assertTrue(rooms.report().contains("rejected=1"));
+        }
+        kitchen.release();
+        assertEquals(2, rooms.acquire("garden").join().getWords().size());
+        assertTrue(rooms.report().contains("open=1"));
+    }
+
+    /**
+     * A room without players is evicted after the idle time and its image is written
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void idleRoomIsEvicted() throws InterruptedException {
+        Rooms rooms = open(4, 50);
+        rooms.acquire("garden").join().release();
+        Path image = folder.getRoot().toPath().resolve(Rooms.DIRECTORY).resolve("garden").resolve("words.txt.dict");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!rooms.report().contains("evicted=1") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(rooms.report().contains("open=0 players=0 loaded=1 evicted=1"));
+        assertTrue(Files.isRegularFile(image));
+    }
+}
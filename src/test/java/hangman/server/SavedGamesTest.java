@@ -0,0 +1,198 @@
+package hangman.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests saving unfinished games on shutdown and resuming them after a restart with the {@link SavedGames}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class SavedGamesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @return the file the games are saved to, it doesn't exist yet
+     */
+    private Path file() {
+        return folder.getRoot().toPath().resolve("games.bin");
+    }
+
+    /**
+     * A game written on shutdown is restored after the restart in the state it was saved in
+     * @throws IOException if the file can't be written or read
+     */
+    @Test
+    public void gameSurvivesTheRestart() throws IOException {
+        Hangman hangman = new Hangman("banana", 5, "moritz", null);
+        hangman.guess('a');
+        hangman.guess('x');
+        hangman.useHint();
+        SavedGames before = new SavedGames(file());
+        String token = before.save(hangman, 3, "kitchen");
+        before.write();
+
+        SavedGames after = new SavedGames(file());
+        assertEquals(1, after.load());
+        SavedGames.Saved saved = after.take(token, "moritz");
+        assertNotNull(saved);
+        assertEquals(3, saved.getRounds());
+        assertEquals("kitchen", saved.getRoom());
+        Hangman restored = saved.restore(null);
+        assertEquals("_a_a_a", restored.showObscuredAnswer());
+        assertEquals(4, restored.getRemainingTries());
+        assertEquals("ax", restored.getGuessed());
+        assertTrue(restored.isHinted());
+    }
+
+    /**
+     * The file is deleted when it is read, so a token can't be used after another restart
+     * @throws IOException if the file can't be written or read
+     */
+    @Test
+    public void fileIsDeletedOnLoad() throws IOException {
+        SavedGames before = new SavedGames(file());
+        before.save(new Hangman("haus", 5, "moritz", null), 1, "");
+        before.write();
+        assertTrue(Files.exists(file()));
+        new SavedGames(file()).load();
+        assertFalse(Files.exists(file()));
+        assertEquals(0, new SavedGames(file()).load());
+    }
+
+    /**
+     * Without any saved game no file is written
+     * @throws IOException if the file can't be written
+     */
+    @Test
+    public void nothingToSaveWritesNoFile() throws IOException {
+        new SavedGames(file()).write();
+        assertFalse(Files.exists(file()));
+    }
+
+    /**
+     * A game can only be taken once and only by the player who saved it
+     */
+    @Test
+    public void takenOnceByItsPlayer() {
+        SavedGames games = new SavedGames(file());
+        String token = games.save(new Hangman("haus", 5, "moritz", null), 1, "");
+        assertNull(games.take(token, "mallory"));
+        assertNull(games.take("unknown", "moritz"));
+        assertNotNull(games.take(token, "moritz"));
+        assertNull(games.take(token, "moritz"));
+        assertEquals(0, games.size());
+    }
+
+    /**
+     * A game which couldn't be resumed is given back and can be taken with the same token again
+     */
+    @Test
+    public void givenBackAfterAFailedResume() {
+        SavedGames games = new SavedGames(file());
+        String token = games.save(new Hangman("haus", 5, "moritz", null), 1, "kitchen");
+        SavedGames.Saved saved = games.take(token, "moritz");
+        games.giveBack(token, saved);
+        assertEquals(1, games.size());
+        assertEquals("kitchen", games.take(token, "moritz").getRoom());
+    }
+
+    /**
+     * Games older than {@link SavedGames#MAX_AGE} are dropped when the file is read
+     * @throws IOException if the file can't be written or read
+     */
+    @Test
+    public void oldGamesAreDropped() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x48475356);
+        out.writeInt(1);
+        out.writeInt(2);
+        writeGame(out, "fresh", System.currentTimeMillis());
+        writeGame(out, "old", System.currentTimeMillis() - SavedGames.MAX_AGE - 1000);
+        out.flush();
+        Files.write(file(), bytes.toByteArray());
+
+        SavedGames games = new SavedGames(file());
+        assertEquals(1, games.load());
+        assertNull(games.take("old", "moritz"));
+        SavedGames.Saved saved = games.take("fresh", "moritz");
+        assertEquals("", saved.getRoom());
+        assertFalse(saved.restore(null).isHinted());
+    }
+
+    /**
+     * @param out the file of the saved games
+     * @param token the token of the game
+     * @param savedAt when the game was saved
+     * @throws IOException if writing fails
+     */
+    private static void writeGame(DataOutputStream out, String token, long savedAt) throws IOException {
+        out.writeUTF(token);
+        out.writeUTF("moritz");
+        out.writeUTF("haus");
+        out.writeInt(5);
+        out.writeUTF("h");
+        out.writeInt(1);
+        out.writeLong(savedAt);
+        out.writeBoolean(false);
+        out.writeUTF("");
+    }
+
+    /**
+     * A file which holds no saved games is rejected
+     * @throws IOException if the file can't be written
+     */
+    @Test
+    public void brokenFileIsRejected() throws IOException {
+        Files.write(file(), "no games".getBytes(StandardCharsets.UTF_8));
+        try {
+            new SavedGames(file()).load();
+            fail("a broken file was read");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("no saved games"));
+        }
+    }
+
+    /**
+     * A suspended game sends its token to the player, a finished one isn't saved
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void onlyUnfinishedGamesAreSuspended() throws IOException {
+        SavedGames games = new SavedGames(file());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameProtocol running = new GameProtocol(new Hangman("haus", 5, "moritz", null), Replies.create(false, out));
+        running.start();
+        running.handle("h");
+        out.reset();
+        running.suspend(games);
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertTrue(lines[0].startsWith("[" + SavedGames.RESUME + "]"));
+        assertEquals(GameProtocol.EXIT, lines[1]);
+        String token = lines[0].substring(SavedGames.RESUME.length() + 2);
+        assertEquals("h___", games.take(token, "moritz").restore(null).showObscuredAnswer());
+
+        GameProtocol over = new GameProtocol(new Hangman("haus", 5, "moritz", null), Replies.create(false, out));
+        over.handle("haus");
+        over.suspend(games);
+        assertEquals(0, games.size());
+    }
+}
@@ -0,0 +1,53 @@
+package hangman.server;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the counters of the {@link ServerMetrics} and how the games report to them
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class ServerMetricsTest {
+
+    /**
+     * A started game is active until it is won, lost, abandoned or suspended
+     */
+    @Test
+    public void activeGames() {
+        ServerMetrics metrics = new ServerMetrics();
+        for (int i = 0; i < 5; i++) {
+            metrics.gameStarted();
+        }
+        metrics.gameOver(true);
+        metrics.gameOver(false);
+        metrics.gameAbandoned();
+        metrics.gameSuspended();
+        assertEquals(1, metrics.getActiveGames());
+        assertTrue(metrics.report(null).contains("games active=1 started=5 won=1 lost=1 abandoned=1 suspended=1 resumed=0 hints=0"));
+    }
+
+    /**
+     * A game counts its start and times every guess, left early it counts as abandoned
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void gamesReportTheirGuesses() throws IOException {
+        ServerMetrics metrics = new ServerMetrics();
+        GameProtocol protocol = new GameProtocol(() -> new Hangman("haus", 10, "moritz", null), 1,
+                Replies.create(false, new ByteArrayOutputStream()), metrics, null);
+        protocol.handle("h");
+        protocol.handle("x");
+        protocol.finish();
+        String report = metrics.report(null);
+        assertTrue(report, report.contains("games active=0 started=1 won=0 lost=0 abandoned=1"));
+        assertTrue(report, report.contains("guess count=2 "));
+        assertTrue(report, report.contains("handshake count=0 "));
+        assertTrue(report, !report.contains("toplist"));
+    }
+}
@@ -0,0 +1,77 @@
+package hangman.server;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests parsing the command line of the server into {@link ServerOptions}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class ServerOptionsTest {
+
+    /**
+     * The wordlist is found in the data directory unless another one is given
+     */
+    @Test
+    public void wordsAreInTheDataDirectory() {
+        ServerOptions options = ServerOptions.parse(new String[]{"8080", "--data-dir=/var/lib/hangman"});
+        assertEquals(8080, options.getPort());
+        assertEquals(Paths.get("/var/lib/hangman"), options.getDataDir());
+        assertEquals(Paths.get("/var/lib/hangman/words.txt"), options.getWordsPath());
+
+        options = ServerOptions.parse(new String[]{"8080", "--data-dir=/var/lib/hangman", "--words=/usr/share/words.dict"});
+        assertEquals(Paths.get("/usr/share/words.dict"), options.getWordsPath());
+    }
+
+    /**
+     * Options are parsed into their types, other options keep their defaults
+     */
+    @Test
+    public void optionsAreParsed() {
+        ServerOptions options = ServerOptions.parse(new String[]{"8080", "--mode=nio", "--loops=3", "--win-rate=0.4-0.7",
+                "--cluster-peers=127.0.0.1:9001, 127.0.0.1:9002"});
+        assertEquals(ServerOptions.Mode.NIO, options.getMode());
+        assertEquals(3, options.getEventLoops());
+        assertEquals(0.4, options.getMinWinRate(), 0);
+        assertEquals(0.7, options.getMaxWinRate(), 0);
+        assertEquals(Arrays.asList(new InetSocketAddress("127.0.0.1", 9001), new InetSocketAddress("127.0.0.1", 9002)),
+                options.getClusterPeers());
+        assertEquals(5000, options.getHandshakeTimeout());
+    }
+
+    /**
+     * A missing port, an unknown option and values which don't make sense are rejected with a message
+     */
+    @Test
+    public void invalidArgumentsAreRejected() {
+        String[][] invalid = {
+                {},
+                {"port"},
+                {"8080", "data-dir=/tmp"},
+                {"8080", "--colour=red"},
+                {"8080", "--mode=fibers"},
+                {"8080", "--loops=0"},
+                {"8080", "--max-games=many"},
+                {"8080", "--max-rooms=-1"},
+                {"8080", "--win-rate=0.7-0.4"},
+                {"8080", "--cluster-peers=localhost"},
+                {"8080", "--stats-port=70000"}
+        };
+        for (String[] args : invalid) {
+            try {
+                ServerOptions.parse(args);
+                fail("accepted " + Arrays.toString(args));
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage() != null && !e.getMessage().isEmpty());
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package hangman.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests playing a whole game against a running {@link Server} in every mode
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class ServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Starts a server with the single word haus and waits until it listens
+     * @param mode the mode of the server
+     * @return the running server
+     * @throws Exception if the data dir can't be written or the test is interrupted
+     */
+    private Server start(ServerOptions.Mode mode) throws Exception {
+        Path dataDir = folder.newFolder(mode.name().toLowerCase()).toPath();
+        Files.write(dataDir.resolve("words.txt"), Arrays.asList("haus"), StandardCharsets.UTF_8);
+        Server server = new Server(ServerOptions.parse(new String[]{"0", "--mode=" + mode.name().toLowerCase(),
+                "--data-dir=" + dataDir, "--connection-rate=0", "--message-rate=0"}));
+        server.setConsole(false);
+        Thread thread = new Thread(server::run, "test-server");
+        thread.setDaemon(true);
+        thread.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!server.isListening() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return server;
+    }
+
+    /**
+     * Starts a server with the single word haus, plays it and shuts the server down again
+     * @param mode the mode of the server
+     * @throws Exception if the server can't be reached or the test is interrupted
+     */
+    private void play(ServerOptions.Mode mode) throws Exception {
+        Server server = start(mode);
+        try {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", server.getPort()), 5000);
+                socket.setSoTimeout(5000);
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                out.println(Handshake.USERNAME + "anna");
+                assertEquals("____", in.readLine());
+                out.println("h");
+                assertTrue(in.readLine().startsWith("Remaining tries: "));
+                assertEquals("h___", in.readLine());
+                out.println("haus");
+                assertEquals("You won!", in.readLine());
+                assertEquals(GameProtocol.EXIT, in.readLine());
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.getLeaderboard().getEntries().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("anna", server.getLeaderboard().getEntries().get(0).getUsername());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Every game runs on a thread of its own
+     * @throws Exception if the server can't be reached or the test is interrupted
+     */
+    @Test
+    public void playInThreads() throws Exception {
+        play(ServerOptions.Mode.THREADS);
+    }
+
+    /**
+     * Every game runs on a virtual thread, or on a thread of its own if the JVM has none
+     * @throws Exception if the server can't be reached or the test is interrupted
+     */
+    @Test
+    public void playInVirtualThreads() throws Exception {
+        play(ServerOptions.Mode.VIRTUAL);
+    }
+
+    /**
+     * The games share a few event loops
+     * @throws Exception if the server can't be reached or the test is interrupted
+     */
+    @Test
+    public void playOnEventLoops() throws Exception {
+        play(ServerOptions.Mode.NIO);
+    }
+
+    /**
+     * Sends a guess longer than {@link LineDecoder#MAX_LINE_LENGTH} and expects the server to close the connection
+     * @param mode the mode of the server
+     * @throws Exception if the server can't be reached or the test is interrupted
+     */
+    private void rejectTooLongLine(ServerOptions.Mode mode) throws Exception {
+        Server server = start(mode);
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", server.getPort()), 5000);
+            socket.setSoTimeout(5000);
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.println(Handshake.USERNAME + "anna");
+            assertEquals("____", in.readLine());
+            // a batch of the same right letter, which would leave the game running if it was read
+            char[] line = new char[LineDecoder.MAX_LINE_LENGTH + 1];
+            Arrays.fill(line, 'h');
+            line[0] = GameProtocol.BATCH;
+            out.println(line);
+            String answer;
+            try {
+                while ((answer = in.readLine()) != null) {
+                    assertTrue(answer, !answer.startsWith("Remaining tries: "));
+                }
+            } catch (SocketException e) {
+                // the server closed the connection before it read all of the line
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * A thread of its own reads no line longer than the event loops do
+     * @throws Exception if the server can't be reached or the test is interrupted
+     */
+    @Test
+    public void threadsRejectTooLongLines() throws Exception {
+        rejectTooLongLine(ServerOptions.Mode.THREADS);
+    }
+
+    /**
+     * The event loops close the connection of a client which sends a too long line
+     * @throws Exception if the server can't be reached or the test is interrupted
+     */
+    @Test
+    public void eventLoopsRejectTooLongLines() throws Exception {
+        rejectTooLongLine(ServerOptions.Mode.NIO);
+    }
+
+    /**
+     * The executor of every mode runs its tasks, even on a JVM without virtual threads
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void everyModeHasAnExecutor() throws InterruptedException {
+        for (ServerOptions.Mode mode : ServerOptions.Mode.values()) {
+            ExecutorService executor = Server.createExecutor(mode);
+            CountDownLatch ran = new CountDownLatch(1);
+            executor.execute(ran::countDown);
+            assertTrue(mode.name(), ran.await(5, TimeUnit.SECONDS));
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package hangman.server;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests when the timeouts of a {@link TimerWheel} run
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class TimerWheelTest {
+
+    private TimerWheel wheel = new TimerWheel(10, 8, "test-timer");
+
+    /**
+     * Stops the thread of the wheel
+     */
+    @After
+    public void tearDown() {
+        wheel.close();
+    }
+
+    /**
+     * A timeout runs on the thread of the wheel, not before its delay
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void runsAfterTheDelay() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicLong ranAt = new AtomicLong();
+        String[] thread = new String[1];
+        long scheduledAt = System.nanoTime();
+        wheel.schedule(() -> {
+            ranAt.set(System.nanoTime());
+            thread[0] = Thread.currentThread().getName();
+            done.countDown();
+        }, 50);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(ranAt.get() - scheduledAt) >= 40);
+        assertEquals("test-timer", thread[0]);
+    }
+
+    /**
+     * A delay longer than one turn of the wheel waits for the missing turns
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void longDelayWaitsForMoreTurns() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        wheel.schedule(done::countDown, 250);
+        assertFalse(done.await(150, TimeUnit.MILLISECONDS));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A cancelled timeout never runs, the others in its slot still do
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void cancelledTimeoutDoesNotRun() throws InterruptedException {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch kept = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(cancelled::countDown, 50);
+        wheel.schedule(kept::countDown, 50);
+        timeout.cancel();
+        assertTrue(kept.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelled.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * A failing task doesn't stop the wheel
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void failingTaskKeepsTheWheelRunning() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        wheel.schedule(() -> {
+            throw new IllegalStateException("expected by the test");
+        }, 0);
+        wheel.schedule(done::countDown, 30);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,180 @@
+package hangman.server;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests scoring the words of a {@link WordCatalog} and picking them by {@link Difficulty}
+ * @author Moritz Welsch
+ * @date 2019-11-26
+ */
+public class WordCatalogTest {
+
+    /**
+     * Words which are easy, in between and hard, in no particular order
+     */
+    private static final String[] WORDS = {
+            "jazz", "banana", "quiz", "mississippi", "lynx", "eee", "sphinx", "anna", "fjord",
+            "nana", "tatata", "waltz", "papa", "xylophon", "hannah", "mama", "gymnastik", "rhythm"
+    };
+
+    /**
+     * The words of a plain array, they are scored by the catalog
+     */
+    static class ArrayDictionary implements WordDictionary {
+        private String[] words;
+
+        /**
+         * @param words the words
+         */
+        ArrayDictionary(String... words) {
+            this.words = words;
+        }
+
+        @Override
+        public int size() {
+            return words.length;
+        }
+
+        @Override
+        public String get(int index) {
+            return words[index];
+        }
+    }
+
+    /**
+     * Every word is in the order once, long words repeating common letters come before short words of rare letters
+     */
+    @Test
+    public void sortsByHardness() {
+        int[] sorted = WordCatalog.sortByHardness(new ArrayDictionary(WORDS));
+        int[] indices = sorted.clone();
+        Arrays.sort(indices);
+        for (int i = 0; i < WORDS.length; i++) {
+            assertEquals(i, indices[i]);
+        }
+        int banana = position(sorted, "banana");
+        assertTrue(banana < position(sorted, "jazz"));
+        assertTrue(banana < position(sorted, "sphinx"));
+    }
+
+    /**
+     * @param sorted the order of the words
+     * @param word a word of {@link #WORDS}
+     * @return the position of the word in the order
+     */
+    private static int position(int[] sorted, String word) {
+        for (int i = 0; i < sorted.length; i++) {
+            if (WORDS[sorted[i]].equals(word)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(word);
+    }
+
+    /**
+     * A difficulty picks only the words of its third, any picks every word
+     */
+    @Test
+    public void picksFromTheThirdOfTheDifficulty() {
+        WordCatalog catalog = new WordCatalog(new ArrayDictionary(WORDS));
+        int[] sorted = WordCatalog.sortByHardness(catalog.getDictionary());
+        int third = WORDS.length / 3;
+        Set<Integer> easy = new HashSet<>();
+        Set<Integer> hard = new HashSet<>();
+        Set<Integer> any = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            easy.add(catalog.pick(Difficulty.EASY));
+            hard.add(catalog.pick(Difficulty.HARD));
+            any.add(catalog.pick(Difficulty.ANY));
+        }
+        Set<Integer> easiest = new HashSet<>();
+        Set<Integer> hardest = new HashSet<>();
+        for (int i = 0; i < third; i++) {
+            easiest.add(sorted[i]);
+            hardest.add(sorted[sorted.length - 1 - i]);
+        }
+        assertEquals(easiest, easy);
+        assertEquals(hardest, hard);
+        assertEquals(WORDS.length, any.size());
+    }
+
+    /**
+     * The order the dictionary knows is taken instead of scoring the words again
+     */
+    @Test
+    public void takesTheOrderOfTheDictionary() {
+        WordCatalog catalog = new WordCatalog(new ArrayDictionary("a", "b", "c") {
+            @Override
+            public int[] byHardness() {
+                return new int[]{2, 1, 0};
+            }
+        });
+        assertEquals(2, catalog.pick(Difficulty.EASY));
+        assertEquals(1, catalog.pick(Difficulty.MEDIUM));
+        assertEquals(0, catalog.pick(Difficulty.HARD));
+    }
+
+    /**
+     * With fewer words than difficulties every difficulty picks any word
+     */
+    @Test
+    public void tooFewWordsForTheBuckets() {
+        WordCatalog catalog = new WordCatalog(new ArrayDictionary("haus", "baum"));
+        for (Difficulty difficulty : Difficulty.values()) {
+            int word = catalog.pick(difficulty);
+            assertTrue(word == 0 || word == 1);
+        }
+    }
+
+    /**
+     * The index of the hints is only built in the background once it is asked for the first time
+     * @throws InterruptedException if waiting is interrupted
+     */
+    @Test
+    public void buildsTheHintsInTheBackground() throws InterruptedException {
+        WordCatalog catalog = new WordCatalog(new ArrayDictionary(WORDS));
+        Thread.sleep(50);
+        assertNull(catalog.getHints());
+        for (int i = 0; i < 500 && catalog.getHints() == null; i++) {
+            Thread.sleep(10);
+        }
+        assertNotNull(catalog.getHints());
+    }
+
+    /**
+     * Letters are sorted and kept once
+     */
+    @Test
+    public void distinctLetters() {
+        assertArrayEquals("abmnr".toCharArray(), WordCatalog.distinctLetters("bananarama"));
+        assertArrayEquals(new char[0], WordCatalog.distinctLetters(""));
+    }
+
+    /**
+     * Difficulties are parsed without regard to case, nothing means any word
+     */
+    @Test
+    public void parsesDifficulties() {
+        assertEquals(Difficulty.HARD, Difficulty.parse("hArD"));
+        assertEquals(Difficulty.ANY, Difficulty.parse(""));
+        assertEquals(Difficulty.ANY, Difficulty.parse(null));
+    }
+
+    /**
+     * An unknown difficulty is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownDifficulties() {
+        Difficulty.parse("impossible");
+    }
+}